@@ -0,0 +1,71 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.squareup.javapoet.ClassName;
+import io.toolforge.maven.com.google.common.base.CaseFormat;
+
+/**
+ * Measures name conversions one parameter name at a time. The gc.alloc.rate.norm column of the GC
+ * profiler shows the allocation per conversion, which should be near zero for the memoized
+ * conversions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CaseFormatBenchmark {
+  private static final String[] NAMES = {"exampleBoolean", "exampleInt", "exampleFloat",
+      "exampleEnumString", "examplePatternString", "exampleDate", "input", "outputFile"};
+
+  private CodeGenerator generator;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    generator = new CodeGenerator(ClassName.get("com.example", "Configuration"));
+  }
+
+  @Benchmark
+  public void convert(Blackhole blackhole) {
+    for (String name : NAMES)
+      blackhole.consume(CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, name));
+  }
+
+  @Benchmark
+  public void memoized(Blackhole blackhole) {
+    for (String name : NAMES)
+      blackhole.consume(generator.parameterNameToUpperUnderscore(name));
+  }
+}
@@ -0,0 +1,88 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+import io.toolforge.spi.model.ToolManifest;
+
+/**
+ * Measures configuration generation and rendering for manifests of increasing size. Run with the
+ * benchmarks profile, which enables the GC profiler to report allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodeGeneratorBenchmark {
+  private static final ClassName CLASS_NAME = ClassName.get("com.example", "Configuration");
+
+  @Param({"10", "1000", "50000"})
+  public int parameterCount;
+
+  private ToolManifest manifest;
+
+  private TypeSpec configurationType;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    manifest = SyntheticManifests.manifest(parameterCount);
+    configurationType = new CodeGenerator(CLASS_NAME).generateConfiguration(manifest);
+  }
+
+  @Benchmark
+  public TypeSpec generate() {
+    return new CodeGenerator(CLASS_NAME).generateConfiguration(manifest);
+  }
+
+  @Benchmark
+  public String render() throws IOException {
+    return render(configurationType);
+  }
+
+  @Benchmark
+  public String generateAndRender() throws IOException {
+    return render(new CodeGenerator(CLASS_NAME).generateConfiguration(manifest));
+  }
+
+  private static String render(TypeSpec configurationType) throws IOException {
+    StringWriter result = new StringWriter();
+    JavaFile.builder(CLASS_NAME.packageName(), configurationType).build().writeTo(result);
+    return result.toString();
+  }
+}
@@ -0,0 +1,131 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import io.toolforge.spi.model.Slot;
+import io.toolforge.spi.model.ToolManifest;
+
+/**
+ * Compares reading every field of a CSV input with the generated {@code CsvCursor} against the
+ * usual {@code BufferedReader.readLine} and {@code String.split}. Run with the GC profiler to
+ * compare allocation per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvCursorBenchmark {
+  private static final ClassName CLASS_NAME = ClassName.get("com.example", "Configuration");
+
+  private static final int ROW_COUNT = 200000;
+
+  private byte[] content;
+
+  private MethodHandle newCursor;
+
+  private MethodHandle next;
+
+  private MethodHandle getFieldCount;
+
+  private MethodHandle getField;
+
+  @Setup(Level.Trial)
+  public void setup() throws Throwable {
+    StringBuilder csv = new StringBuilder("id,name,amount,date\n");
+    for (int i = 0; i < ROW_COUNT; i++)
+      csv.append(i).append(",customer ").append(i % 997).append(',').append(i * 31 % 100000)
+          .append(".25,2024-01-").append(10 + i % 20).append('\n');
+    content = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+    ToolManifest manifest = new ToolManifest();
+    manifest.addInputsItem(
+        new Slot().name("input").description("An input.").addExtensionsItem("csv"));
+    Class<?> configurationClass = InMemoryCompiler
+        .compile(JavaFile.builder(CLASS_NAME.packageName(),
+            new CodeGenerator(CLASS_NAME, new GeneratorOptions().csvReaders(true))
+                .generateConfiguration(manifest))
+            .build())
+        .loadClass(CLASS_NAME.reflectionName());
+    Class<?> cursorClass = Arrays.stream(configurationClass.getDeclaredClasses())
+        .filter(c -> c.getSimpleName().equals("CsvCursor")).findFirst().get();
+    Class<?> fieldClass = Arrays.stream(cursorClass.getDeclaredClasses())
+        .filter(c -> c.getSimpleName().equals("Field")).findFirst().get();
+
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    newCursor = lookup.findConstructor(cursorClass,
+        MethodType.methodType(void.class, InputStream.class, char.class));
+    next = lookup.findVirtual(cursorClass, "next", MethodType.methodType(boolean.class));
+    getFieldCount =
+        lookup.findVirtual(cursorClass, "getFieldCount", MethodType.methodType(int.class));
+    getField = lookup.findVirtual(cursorClass, "getField",
+        MethodType.methodType(fieldClass, int.class))
+        .asType(MethodType.methodType(CharSequence.class, Object.class, int.class));
+  }
+
+  @Benchmark
+  public long cursor() throws Throwable {
+    long result = 0;
+    Object cursor = newCursor.invoke(new ByteArrayInputStream(content), ',');
+    while ((boolean) next.invoke(cursor)) {
+      int fieldCount = (int) getFieldCount.invoke(cursor);
+      for (int i = 0; i < fieldCount; i++)
+        result = result + ((CharSequence) getField.invoke(cursor, i)).length();
+    }
+    return result;
+  }
+
+  @Benchmark
+  public long split() throws IOException {
+    long result = 0;
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8))) {
+      for (String line = reader.readLine(); line != null; line = reader.readLine())
+        for (String field : line.split(",", -1))
+          result = result + field.length();
+    }
+    return result;
+  }
+}
@@ -0,0 +1,121 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import io.toolforge.spi.model.EnumerationStringDomain;
+import io.toolforge.spi.model.ParameterType;
+import io.toolforge.spi.model.StringDomainType;
+import io.toolforge.spi.model.StringParameterDefinition;
+import io.toolforge.spi.model.ToolManifest;
+
+/**
+ * Compares validation of a large enumeration parameter between the generated {@code HashSet} and
+ * the enumeration table resource. The domain is about as large as the {@code HashSet} path
+ * can compile; beyond that only the table works.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnumerationTableBenchmark {
+  private static final ClassName CLASS_NAME = ClassName.get("com.example", "Configuration");
+
+  private static final int VALUE_COUNT = 5000;
+
+  private MethodHandle setValidate;
+
+  private MethodHandle tableValidate;
+
+  private Object setConfiguration;
+
+  private Object tableConfiguration;
+
+  @Setup(Level.Trial)
+  public void setup() throws Throwable {
+    EnumerationStringDomain domain =
+        new EnumerationStringDomain().type(StringDomainType.ENUMERATION);
+    for (int i = 0; i < VALUE_COUNT; i++)
+      domain.addValuesItem("SYM" + Integer.toString(i * 7919, 36).toUpperCase());
+    ToolManifest manifest = new ToolManifest();
+    manifest.addParametersItem(new StringParameterDefinition().domain(domain)
+        .type(ParameterType.STRING).name("symbol").description("A ticker symbol.")
+        .required(true));
+    String value = domain.getValues().get(VALUE_COUNT / 3);
+
+    Class<?> setClass = compile(manifest, new GeneratorOptions());
+    setValidate = MethodHandles.publicLookup().findVirtual(setClass, "validate",
+        MethodType.methodType(setClass));
+    setConfiguration = newConfiguration(setClass, value);
+
+    Class<?> tableClass =
+        compile(manifest, new GeneratorOptions().enumerationTableThreshold(VALUE_COUNT / 2));
+    tableValidate = MethodHandles.publicLookup().findVirtual(tableClass, "validate",
+        MethodType.methodType(tableClass));
+    tableConfiguration = newConfiguration(tableClass, value);
+  }
+
+  @Benchmark
+  public Object set() throws Throwable {
+    return setValidate.invoke(setConfiguration);
+  }
+
+  @Benchmark
+  public Object table() throws Throwable {
+    return tableValidate.invoke(tableConfiguration);
+  }
+
+  private static Class<?> compile(ToolManifest manifest, GeneratorOptions options)
+      throws ClassNotFoundException {
+    CodeGenerator generator = new CodeGenerator(CLASS_NAME, options);
+    Map<String, byte[]> resources = generator.generateResources(manifest);
+    return InMemoryCompiler
+        .compile(resources,
+            JavaFile.builder(CLASS_NAME.packageName(), generator.generateConfiguration(manifest))
+                .build())
+        .loadClass(CLASS_NAME.reflectionName());
+  }
+
+  private static Object newConfiguration(Class<?> configurationClass, String value)
+      throws Exception {
+    Object result = configurationClass.getConstructor().newInstance();
+    configurationClass.getField("symbol").set(result, value);
+    return result;
+  }
+}
@@ -0,0 +1,109 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import io.toolforge.spi.model.BooleanParameterDefinition;
+import io.toolforge.spi.model.IntParameterDefinition;
+import io.toolforge.spi.model.ParameterType;
+import io.toolforge.spi.model.ToolManifest;
+
+/**
+ * Times generating and compiling a configuration with thousands of parameters, and validating
+ * it once its validation has been split into helper methods small enough for the JIT.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class HugeManifestBenchmark {
+  private static final ClassName CLASS_NAME = ClassName.get("com.example", "Configuration");
+
+  @Param({"10000"})
+  public int parameterCount;
+
+  private ToolManifest manifest;
+
+  private Object configuration;
+
+  private MethodHandle validate;
+
+  @Setup(Level.Trial)
+  public void setup() throws Throwable {
+    manifest = new ToolManifest();
+    for (int i = 0; i < parameterCount; i++) {
+      // Mostly booleans, with shared descriptions and bounds, to stay under the 65,535-entry
+      // constant pool limit, which would otherwise bound the class before its method sizes do
+      if (i % 4 == 0)
+        manifest.addParametersItem(new IntParameterDefinition().minimum(0L).maximum(100L)
+            .type(ParameterType.INT).name("parameter" + i).description("An int.")
+            .required(false));
+      else
+        manifest.addParametersItem(new BooleanParameterDefinition().type(ParameterType.BOOLEAN)
+            .name("parameter" + i).description("A boolean.").required(false));
+    }
+
+    Class<?> configurationClass = compile();
+    configuration = configurationClass.getConstructor().newInstance();
+    validate = MethodHandles.publicLookup()
+        .findVirtual(configurationClass, "validate", MethodType.methodType(configurationClass))
+        .asType(MethodType.methodType(Object.class, Object.class));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public Class<?> generateAndCompile() throws Exception {
+    return compile();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 3, time = 2)
+  @Measurement(iterations = 5, time = 2)
+  public Object validate() throws Throwable {
+    return validate.invoke(configuration);
+  }
+
+  private Class<?> compile() throws Exception {
+    return InMemoryCompiler
+        .compile(JavaFile.builder(CLASS_NAME.packageName(),
+            new CodeGenerator(CLASS_NAME).generateConfiguration(manifest)).build())
+        .loadClass(CLASS_NAME.reflectionName());
+  }
+}
@@ -0,0 +1,174 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.sigpwned.discourse.core.annotation.EnvironmentParameter;
+import com.sigpwned.discourse.core.annotation.OptionParameter;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import io.toolforge.spi.model.EnumerationStringDomain;
+import io.toolforge.spi.model.ParameterDefinition;
+import io.toolforge.spi.model.StringParameterDefinition;
+import io.toolforge.spi.model.ToolManifest;
+
+/**
+ * Compares the time to a validated configuration between the generated parse method and reflective
+ * binding. The reflective path scans the annotated fields of the class on every invocation and
+ * converts and assigns values through reflection, the way a discourse-style binder does at startup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+  private static final ClassName CLASS_NAME = ClassName.get("com.example", "Configuration");
+
+  @Param({"10", "100"})
+  public int parameterCount;
+
+  private Class<?> configurationClass;
+
+  private MethodHandle parse;
+
+  private MethodHandle validate;
+
+  private String[] args;
+
+  private Map<String, String> env;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    ToolManifest manifest = SyntheticManifests.manifest(parameterCount);
+    manifest.getInputs().clear();
+    manifest.getOutputs().clear();
+
+    configurationClass = InMemoryCompiler
+        .compile(JavaFile.builder(CLASS_NAME.packageName(),
+            new CodeGenerator(CLASS_NAME, new GeneratorOptions().parser(true))
+                .generateConfiguration(manifest))
+            .build())
+        .loadClass(CLASS_NAME.reflectionName());
+
+    parse = MethodHandles.publicLookup().findStatic(configurationClass, "parse",
+        MethodType.methodType(configurationClass, String[].class, Map.class, Function.class,
+            Function.class));
+    validate = MethodHandles.publicLookup().findVirtual(configurationClass, "validate",
+        MethodType.methodType(configurationClass));
+
+    List<String> args = new ArrayList<>();
+    for (ParameterDefinition parameter : manifest.getParameters()) {
+      args.add("--" + parameter.getName());
+      args.add(validValue(parameter));
+    }
+    this.args = args.toArray(new String[0]);
+    this.env = Collections.emptyMap();
+  }
+
+  @Benchmark
+  public Object generated() throws Throwable {
+    Object configuration = parse.invoke(args, env, (Function<String, ?>) null,
+        (Function<String, ?>) null);
+    return validate.invoke(configuration);
+  }
+
+  @Benchmark
+  public Object reflective() throws Throwable {
+    Map<String, Field> fields = new HashMap<>();
+    for (Field field : configurationClass.getFields()) {
+      OptionParameter option = field.getAnnotation(OptionParameter.class);
+      if (option != null)
+        fields.put(option.longName(), field);
+      EnvironmentParameter variable = field.getAnnotation(EnvironmentParameter.class);
+      if (variable != null && env.containsKey(variable.variableName()))
+        field.set(null, env.get(variable.variableName()));
+    }
+
+    Object configuration = configurationClass.getConstructor().newInstance();
+    for (int i = 0; i < args.length; i += 2) {
+      Field field = fields.get(args[i].substring(2));
+      field.set(configuration, convert(field.getType(), args[i + 1]));
+    }
+
+    return validate.invoke(configuration);
+  }
+
+  private static Object convert(Class<?> type, String value) {
+    if (type == Boolean.class)
+      return Boolean.valueOf(value);
+    if (type == Long.class)
+      return Long.valueOf(value);
+    if (type == Double.class)
+      return Double.valueOf(value);
+    if (type == LocalDate.class)
+      return LocalDate.parse(value);
+    return value;
+  }
+
+  private static String validValue(ParameterDefinition parameter) {
+    switch (parameter.getType()) {
+      case BOOLEAN:
+        return "true";
+      case DATE:
+        return LocalDate.now(ZoneOffset.UTC).toString();
+      case FLOAT:
+      case INT:
+        return "1";
+      case STRING:
+        StringParameterDefinition stringParameter = (StringParameterDefinition) parameter;
+        switch (stringParameter.getDomain().getType()) {
+          case ENUMERATION:
+            return ((EnumerationStringDomain) stringParameter.getDomain()).getValues().get(0);
+          case PATTERN:
+            return "a";
+          default:
+            throw new AssertionError(stringParameter.getDomain().getType());
+        }
+      default:
+        throw new AssertionError(parameter.getType());
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import io.toolforge.spi.model.ParameterType;
+import io.toolforge.spi.model.PatternStringDomain;
+import io.toolforge.spi.model.StringDomainType;
+import io.toolforge.spi.model.StringParameterDefinition;
+import io.toolforge.spi.model.ToolManifest;
+
+/**
+ * Compares validation of a corpus of typical manifest patterns between compiled regular expressions
+ * and the generated matchers, and measures the regex compilation that the generated matchers save
+ * from class initialization.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatternMatcherBenchmark {
+  private static final ClassName CLASS_NAME = ClassName.get("com.example", "Configuration");
+
+  /**
+   * Patterns and matching values in the style of real tool manifests
+   */
+  private static final String[][] CORPUS = {{"^[A-Z]{1,5}$", "MSFT"},
+      {"^\\d{4}-\\d{2}-\\d{2}$", "2022-06-30"}, {"^[a-zA-Z_][a-zA-Z0-9_]*$", "column_name_1"},
+      {"^v\\d+\\.\\d+\\.\\d+$", "v1.22.3"}, {"^[0-9a-f]{32}$", "0123456789abcdef0123456789abcdef"},
+      {"^s3://[a-z0-9.-]{3,63}/.*$", "s3://example-bucket/path/to/key.csv"},
+      {"^[A-Z]{2}$", "US"}, {"^[^,]+$", "a value without commas"},
+      {"^\\+?[0-9]{7,15}$", "+15555550100"}, {"^(csv|tsv|xlsx)$", "csv"}};
+
+  private MethodHandle regexValidate;
+
+  private MethodHandle matcherValidate;
+
+  private Object regexConfiguration;
+
+  private Object matcherConfiguration;
+
+  @Setup(Level.Trial)
+  public void setup() throws Throwable {
+    ToolManifest manifest = new ToolManifest();
+    for (int i = 0; i < CORPUS.length; i++)
+      manifest.addParametersItem(new StringParameterDefinition()
+          .domain(new PatternStringDomain().pattern(CORPUS[i][0]).type(StringDomainType.PATTERN))
+          .type(ParameterType.STRING).name("pattern" + i).description("Pattern " + i + ".")
+          .required(true));
+
+    Class<?> regexClass = compile(manifest, new GeneratorOptions());
+    regexValidate = MethodHandles.publicLookup().findVirtual(regexClass, "validate",
+        MethodType.methodType(regexClass));
+    regexConfiguration = newConfiguration(regexClass);
+
+    Class<?> matcherClass = compile(manifest, new GeneratorOptions().matchers(true));
+    matcherValidate = MethodHandles.publicLookup().findVirtual(matcherClass, "validate",
+        MethodType.methodType(matcherClass));
+    matcherConfiguration = newConfiguration(matcherClass);
+  }
+
+  @Benchmark
+  public Object regex() throws Throwable {
+    return regexValidate.invoke(regexConfiguration);
+  }
+
+  @Benchmark
+  public Object matchers() throws Throwable {
+    return matcherValidate.invoke(matcherConfiguration);
+  }
+
+  /**
+   * The regex work that the static initializer of a configuration class without matchers does
+   */
+  @Benchmark
+  public void compilePatterns(Blackhole blackhole) {
+    for (String[] entry : CORPUS)
+      blackhole.consume(Pattern.compile(entry[0]));
+  }
+
+  private static Class<?> compile(ToolManifest manifest, GeneratorOptions options)
+      throws ClassNotFoundException {
+    return InMemoryCompiler
+        .compile(JavaFile.builder(CLASS_NAME.packageName(),
+            new CodeGenerator(CLASS_NAME, options).generateConfiguration(manifest)).build())
+        .loadClass(CLASS_NAME.reflectionName());
+  }
+
+  private static Object newConfiguration(Class<?> configurationClass) throws Exception {
+    Object result = configurationClass.getConstructor().newInstance();
+    for (int i = 0; i < CORPUS.length; i++)
+      configurationClass.getField("pattern" + i).set(result, CORPUS[i][1]);
+    return result;
+  }
+}
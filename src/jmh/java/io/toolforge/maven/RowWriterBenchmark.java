@@ -0,0 +1,158 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import io.toolforge.spi.model.Slot;
+import io.toolforge.spi.model.ToolManifest;
+
+/**
+ * Writes 10 million rows through the generated {@code CsvWriter} and {@code XlsxWriter} into a
+ * stream that discards them. The fork's heap is capped at 64 MiB, far below the size of the
+ * output, so the benchmark only completes if memory use is independent of the row count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx64m")
+public class RowWriterBenchmark {
+  private static final ClassName CLASS_NAME = ClassName.get("com.example", "Configuration");
+
+  @Param({"10000000"})
+  public int rowCount;
+
+  private MethodHandle newCsvWriter;
+
+  private MethodHandle newXlsxWriter;
+
+  private MethodHandle writeString;
+
+  private MethodHandle writeLong;
+
+  private MethodHandle writeDouble;
+
+  private MethodHandle endRow;
+
+  private MethodHandle close;
+
+  @Setup(Level.Trial)
+  public void setup() throws Throwable {
+    ToolManifest manifest = new ToolManifest();
+    manifest.addOutputsItem(new Slot().name("output").description("An output.")
+        .addExtensionsItem("csv").addExtensionsItem("xlsx"));
+    Class<?> configurationClass = InMemoryCompiler
+        .compile(JavaFile.builder(CLASS_NAME.packageName(),
+            new CodeGenerator(CLASS_NAME, new GeneratorOptions().rowWriters(true))
+                .generateConfiguration(manifest))
+            .build())
+        .loadClass(CLASS_NAME.reflectionName());
+    Class<?> rowWriterClass = nestedClass(configurationClass, "RowWriter");
+
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    newCsvWriter = lookup
+        .findConstructor(nestedClass(configurationClass, "CsvWriter"),
+            MethodType.methodType(void.class, OutputStream.class, char.class))
+        .asType(MethodType.methodType(Object.class, OutputStream.class, char.class));
+    newXlsxWriter = lookup
+        .findConstructor(nestedClass(configurationClass, "XlsxWriter"),
+            MethodType.methodType(void.class, OutputStream.class))
+        .asType(MethodType.methodType(Object.class, OutputStream.class));
+    writeString = lookup.findVirtual(rowWriterClass, "writeField",
+        MethodType.methodType(rowWriterClass, CharSequence.class))
+        .asType(MethodType.methodType(Object.class, Object.class, CharSequence.class));
+    writeLong = lookup
+        .findVirtual(rowWriterClass, "writeField",
+            MethodType.methodType(rowWriterClass, long.class))
+        .asType(MethodType.methodType(Object.class, Object.class, long.class));
+    writeDouble = lookup
+        .findVirtual(rowWriterClass, "writeField",
+            MethodType.methodType(rowWriterClass, double.class))
+        .asType(MethodType.methodType(Object.class, Object.class, double.class));
+    endRow = lookup.findVirtual(rowWriterClass, "endRow", MethodType.methodType(rowWriterClass))
+        .asType(MethodType.methodType(Object.class, Object.class));
+    close = lookup.findVirtual(rowWriterClass, "close", MethodType.methodType(void.class))
+        .asType(MethodType.methodType(void.class, Object.class));
+  }
+
+  @Benchmark
+  public long csv() throws Throwable {
+    CountingOutputStream out = new CountingOutputStream();
+    write(newCsvWriter.invoke(out, ','));
+    return out.count;
+  }
+
+  @Benchmark
+  public long xlsx() throws Throwable {
+    CountingOutputStream out = new CountingOutputStream();
+    write(newXlsxWriter.invoke(out));
+    return out.count;
+  }
+
+  private void write(Object writer) throws Throwable {
+    Object unused;
+    for (int i = 0; i < rowCount; i++) {
+      unused = writeLong.invoke(writer, (long) i);
+      unused = writeString.invoke(writer, "customer");
+      unused = writeDouble.invoke(writer, i * 0.25);
+      unused = endRow.invoke(writer);
+    }
+    close.invoke(writer);
+  }
+
+  private static Class<?> nestedClass(Class<?> type, String simpleName) {
+    return Arrays.stream(type.getDeclaredClasses())
+        .filter(c -> c.getSimpleName().equals(simpleName)).findFirst().get();
+  }
+
+  private static class CountingOutputStream extends OutputStream {
+    public long count;
+
+    @Override
+    public void write(int b) {
+      count = count + 1;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count = count + len;
+    }
+  }
+}
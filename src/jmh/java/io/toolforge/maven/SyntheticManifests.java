@@ -0,0 +1,107 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import io.toolforge.spi.model.BooleanParameterDefinition;
+import io.toolforge.spi.model.DateParameterDefinition;
+import io.toolforge.spi.model.EnumerationStringDomain;
+import io.toolforge.spi.model.FloatParameterDefinition;
+import io.toolforge.spi.model.IntParameterDefinition;
+import io.toolforge.spi.model.ParameterType;
+import io.toolforge.spi.model.PatternStringDomain;
+import io.toolforge.spi.model.Slot;
+import io.toolforge.spi.model.StringDomainType;
+import io.toolforge.spi.model.StringParameterDefinition;
+import io.toolforge.spi.model.ToolManifest;
+import io.toolforge.spi.model.expr.date.RelativeDateExpr;
+import io.toolforge.spi.model.expr.date.RelativeDateExpr.DateUnit;
+import io.toolforge.spi.model.expr.date.TodayDateExpr;
+
+/**
+ * Builds machine-style manifests of arbitrary size for benchmarks
+ */
+public final class SyntheticManifests {
+  private SyntheticManifests() {}
+
+  /**
+   * Returns a manifest with the given number of parameters, cycling through every parameter type
+   * and string domain, plus one input and one output slot for every 20 parameters.
+   */
+  public static ToolManifest manifest(int parameterCount) {
+    ToolManifest result = new ToolManifest();
+
+    for (int i = 0; i < parameterCount; i++) {
+      String name = "parameter" + i;
+      String description = "This is synthetic parameter " + i + ".";
+      boolean required = i % 3 == 0;
+      switch (i % 6) {
+        case 0:
+          result.addParametersItem(new BooleanParameterDefinition()._default(i % 4 == 0)
+              .type(ParameterType.BOOLEAN).name(name).description(description)
+              .required(required));
+          break;
+        case 1:
+          result.addParametersItem(new IntParameterDefinition()._default((long) i).minimum(0L)
+              .maximum(10L * i).type(ParameterType.INT).name(name).description(description)
+              .required(required));
+          break;
+        case 2:
+          result.addParametersItem(new FloatParameterDefinition()._default(1.0 * i).minimum(0.0)
+              .maximum(10.0 * i).type(ParameterType.FLOAT).name(name).description(description)
+              .required(required));
+          break;
+        case 3:
+          EnumerationStringDomain domain =
+              new EnumerationStringDomain().type(StringDomainType.ENUMERATION);
+          for (int j = 0; j < 8; j++)
+            domain.addValuesItem("value" + i + "_" + j);
+          result.addParametersItem(new StringParameterDefinition().domain(domain)
+              ._default("value" + i + "_0").type(ParameterType.STRING).name(name)
+              .description(description).required(required));
+          break;
+        case 4:
+          result.addParametersItem(new StringParameterDefinition()
+              .domain(new PatternStringDomain().pattern("^[a-z]{1," + (i % 50 + 1) + "}$")
+                  .type(StringDomainType.PATTERN))
+              .type(ParameterType.STRING).name(name).description(description)
+              .required(required));
+          break;
+        case 5:
+          result.addParametersItem(new DateParameterDefinition()._default(TodayDateExpr.INSTANCE)
+              .minimum(RelativeDateExpr.of(-(i % 52 + 1), DateUnit.WEEK))
+              .maximum(RelativeDateExpr.of(i % 12 + 1, DateUnit.MONTH)).type(ParameterType.DATE)
+              .name(name).description(description).required(required));
+          break;
+        default:
+          throw new AssertionError(i % 6);
+      }
+    }
+
+    for (int i = 0; i < Math.max(1, parameterCount / 20); i++) {
+      result.addInputsItem(new Slot().name("input" + i)
+          .description("This is synthetic input " + i + ".").addExtensionsItem("csv"));
+      result.addOutputsItem(new Slot().name("output" + i)
+          .description("This is synthetic output " + i + ".").addExtensionsItem("csv")
+          .addExtensionsItem("xlsx"));
+    }
+
+    return result;
+  }
+}
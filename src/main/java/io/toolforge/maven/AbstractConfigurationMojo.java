@@ -0,0 +1,678 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.sonatype.plexus.build.incremental.BuildContext;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+import io.toolforge.spi.model.ContainerSize;
+import io.toolforge.spi.model.Manifest;
+import io.toolforge.spi.model.ManifestType;
+import io.toolforge.spi.model.ToolManifest;
+
+/**
+ * Shared logic for goals that generate discourse configuration classes from tool manifests.
+ * Generation of each class is skipped when the fingerprint of its manifest, its target class name,
+ * and the plugin version matches the one recorded by the previous execution.
+ *
+ * <p>
+ * Subclasses must be safe to run in parallel reactor builds. All per-module state must come from
+ * the injected {@link #project}, not the session, since the session's current project belongs to
+ * whichever module the calling thread happens to be building. The shared {@link #YAML} mapper is
+ * never reconfigured after construction, so it is safe for concurrent use.
+ *
+ * <p>
+ * In incremental IDE builds, e.g. m2e, a class is only regenerated when its manifest is part of the
+ * build delta, generated files are written through the {@link BuildContext} so the IDE picks them
+ * up, and manifest errors are reported as markers on the manifest itself.
+ */
+public abstract class AbstractConfigurationMojo extends AbstractMojo {
+  protected static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+
+  protected static final ObjectMapper JSON = new ObjectMapper();
+
+  // Current maven project
+  @Parameter(defaultValue = "${project}", readonly = true)
+  protected MavenProject project;
+
+  // Current mojo execution
+  @Parameter(property = "mojoExecution")
+  protected MojoExecution execution;
+
+  // Incremental build support for IDEs
+  @Component
+  protected BuildContext buildContext;
+
+  @Parameter(property = "toolforge.target.directory", defaultValue = "target/generated-sources")
+  protected String outputDirectory;
+
+  /**
+   * Regenerate the configuration class even if the fingerprint has not changed.
+   */
+  @Parameter(property = "toolforge.force", defaultValue = "false")
+  protected boolean force;
+
+  /**
+   * Write per-phase timings and sizes for each generated class as JSON to the metrics directory.
+   */
+  @Parameter(property = "toolforge.metrics", defaultValue = "false")
+  protected boolean writeMetrics;
+
+  @Parameter(property = "toolforge.location.metrics", defaultValue = "target/toolforge/metrics")
+  protected String metricsDirectory;
+
+  /**
+   * Generate a static, reflection-free {@code parse(args, env, inputs, outputs)} factory method on
+   * the configuration class.
+   */
+  @Parameter(property = "toolforge.generate.parser", defaultValue = "false")
+  protected boolean generateParser;
+
+  /**
+   * Generate primitive fields for boolean, int, and float parameters, with {@code hasX()} methods
+   * backed by a presence bitmask instead of null checks.
+   */
+  @Parameter(property = "toolforge.generate.primitives", defaultValue = "false")
+  protected boolean generatePrimitives;
+
+  /**
+   * Generate a nested enum for each enumeration string parameter and type its field as that enum.
+   */
+  @Parameter(property = "toolforge.generate.enums", defaultValue = "false")
+  protected boolean generateEnums;
+
+  /**
+   * Generate allocation-free matcher methods for simple pattern string domains, and compile the
+   * remaining patterns lazily.
+   */
+  @Parameter(property = "toolforge.generate.matchers", defaultValue = "false")
+  protected boolean generateMatchers;
+
+  /**
+   * Generate constructors that take the {@link java.time.Clock} that relative date bounds are
+   * computed from, instead of computing them from the system clock when the class is loaded.
+   */
+  @Parameter(property = "toolforge.generate.clock", defaultValue = "false")
+  protected boolean generateClock;
+
+  /**
+   * Generate a {@code <class>Worker} entrypoint that serves newline-delimited JSON job requests
+   * from standard input or a loopback socket. Implies {@code generateParser}, and the generated
+   * worker needs jackson-databind at runtime.
+   */
+  @Parameter(property = "toolforge.generate.worker", defaultValue = "false")
+  protected boolean generateWorker;
+
+  /**
+   * Generate initialization-on-demand holder classes for enumeration sets, patterns, and date
+   * bounds, so that loading the configuration class computes none of them.
+   */
+  @Parameter(property = "toolforge.generate.lazyConstants", defaultValue = "false")
+  protected boolean generateLazyConstants;
+
+  /**
+   * Store enumeration domains with more than this many values as binary hash tables in the
+   * generated resources directory, which the generated class loads when first used, instead of as
+   * sets in the generated source. Zero, the default, never does so.
+   */
+  @Parameter(property = "toolforge.generate.enumerationTableThreshold", defaultValue = "0")
+  protected int enumerationTableThreshold;
+
+  /**
+   * Generate a {@code validateInto(ValidationResult)} method that records violations instead of
+   * throwing them, so validating a valid configuration neither throws nor allocates. The
+   * {@code validate} method remains as a wrapper that throws the first violation.
+   */
+  @Parameter(property = "toolforge.generate.validationResult", defaultValue = "false")
+  protected boolean generateValidationResult;
+
+  /**
+   * Generate {@code fingerprint()} and {@code fingerprintWithInputs()} methods that return a
+   * stable 128-bit hash of the parameter values, and of the content of the inputs, which tools can
+   * use as a key for caching results.
+   */
+  @Parameter(property = "toolforge.generate.configurationFingerprint", defaultValue = "false")
+  protected boolean generateConfigurationFingerprint;
+
+  /**
+   * Generate JDK Flight Recorder events that time static initialization, {@code parse},
+   * {@code validate} and opening the input and output slots. The generated code requires a JDK
+   * with the {@code jdk.jfr} module, and the events cost almost nothing unless recording is on.
+   */
+  @Parameter(property = "toolforge.generate.flightRecorder", defaultValue = "false")
+  protected boolean generateFlightRecorder;
+
+  /**
+   * Generate a nested {@code Runtime} class with the CPU and memory budget of the container size
+   * declared in the manifest and the recommended pool sizes, and write the matching JVM options
+   * (heap, processor count, GC) to the JVM options directory, one option per line.
+   */
+  @Parameter(property = "toolforge.generate.runtime", defaultValue = "false")
+  protected boolean generateRuntime;
+
+  @Parameter(property = "toolforge.location.jvmOptions", defaultValue = "target/toolforge/jvm")
+  protected String jvmOptionsDirectory;
+
+  /**
+   * Generate a nested {@code CsvCursor} class and a {@code readXCsv()} or {@code readXTsv()}
+   * method for each input slot with a csv or tsv extension, which streams its rows in constant
+   * memory.
+   */
+  @Parameter(property = "toolforge.generate.csvReaders", defaultValue = "false")
+  protected boolean generateCsvReaders;
+
+  /**
+   * Generate {@code CsvWriter} and {@code XlsxWriter} classes and a {@code writeXCsv()},
+   * {@code writeXTsv()} or {@code writeXXlsx()} method for each output slot extension, which
+   * stream rows to the output in constant memory.
+   */
+  @Parameter(property = "toolforge.generate.rowWriters", defaultValue = "false")
+  protected boolean generateRowWriters;
+
+  /**
+   * Generate GraalVM native-image reflection metadata for the configuration class into the
+   * generated resources directory, and add that directory to the project resources.
+   */
+  @Parameter(property = "toolforge.generate.nativeImage", defaultValue = "false")
+  protected boolean generateNativeImageConfig;
+
+  @Parameter(property = "toolforge.target.resources",
+      defaultValue = "target/generated-resources/toolforge")
+  protected String resourcesDirectory;
+
+  /**
+   * Whether any configuration generated by this execution has resources, e.g. enumeration tables,
+   * that must be packaged with it. Configurations may be generated in parallel.
+   */
+  private final AtomicBoolean hasResources = new AtomicBoolean();
+
+  /**
+   * Generates the configuration class with the given name from the manifest at the given location,
+   * unless its manifest is not in the build delta, or the fingerprint stored at the given location
+   * shows that nothing has changed. Must run on the mojo's own thread, since an IDE binds the
+   * {@link BuildContext} to it.
+   */
+  protected void generateConfiguration(String manifestLocation, ClassName configurationName,
+      String fingerprintLocation) throws MojoExecutionException {
+    if (!isInDelta(manifestLocation, configurationName))
+      return;
+
+    Rendering rendering;
+    try {
+      rendering = renderConfiguration(manifestLocation, configurationName, fingerprintLocation);
+    } catch (MojoExecutionException e) {
+      throw reportFailure(manifestLocation, e);
+    }
+
+    writeConfiguration(rendering);
+  }
+
+  /**
+   * Returns false if this is an incremental build whose delta does not include the manifest at the
+   * given location, and the configuration class has already been generated from it. Must run on
+   * the mojo's own thread.
+   */
+  protected boolean isInDelta(String manifestLocation, ClassName configurationName)
+      throws MojoExecutionException {
+    File manifestFile = new File(getBasedir(), manifestLocation);
+
+    if (buildContext.isIncremental() && !buildContext.hasDelta(manifestFile)
+        && getConfigurationSourceFile(configurationName).isFile()) {
+      getLog().debug("Manifest " + manifestLocation + " is not in the build delta, skipping");
+      // Any resources from the previous generation are still there, and must still be packaged
+      if (new File(getBasedir(), resourcesDirectory).isDirectory())
+        hasResources.set(true);
+      GenerationMetrics metrics = new GenerationMetrics(manifestLocation,
+          configurationName.reflectionName(), getPluginVersion());
+      metrics.setSkipped(true);
+      reportMetrics(metrics);
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Renders the configuration class with the given name from the manifest at the given location,
+   * without writing it. Rendering never touches the {@link BuildContext}, so it may run on any
+   * thread.
+   */
+  protected Rendering renderConfiguration(String manifestLocation, ClassName configurationName,
+      String fingerprintLocation) throws MojoExecutionException {
+    File basedir = getBasedir();
+
+    File manifestFile = new File(basedir, manifestLocation);
+
+    File fingerprintFile = new File(basedir, fingerprintLocation);
+
+    File configurationSourceFile = getConfigurationSourceFile(configurationName);
+
+    GenerationMetrics metrics =
+        new GenerationMetrics(manifestLocation, configurationName.reflectionName(),
+            getPluginVersion());
+
+    byte[] manifestBytes;
+    try {
+      manifestBytes = Files.readAllBytes(manifestFile.toPath());
+    } catch (IOException e) {
+      throw new MojoExecutionException("Failed to read manifest from " + manifestLocation, e);
+    }
+
+    metrics.setManifestBytes(manifestBytes.length);
+
+    String fingerprint = fingerprint(manifestBytes, configurationName);
+
+    metrics.phase(GenerationMetrics.READ);
+
+    if (!force && configurationSourceFile.isFile() && isUpToDate(fingerprintFile, fingerprint)) {
+      getLog().info("Manifest " + manifestLocation + " is unchanged, skipping generation");
+      // Any resources from the previous generation are still there, and must still be packaged
+      if (new File(basedir, resourcesDirectory).isDirectory())
+        hasResources.set(true);
+      metrics.setSkipped(true);
+      return new Rendering(manifestFile, fingerprintFile, fingerprint, null, metrics);
+    }
+
+    Manifest m;
+    try {
+      m = YAML.readValue(manifestBytes, Manifest.class);
+    } catch (IOException e) {
+      JsonLocation location =
+          e instanceof JsonProcessingException ? ((JsonProcessingException) e).getLocation() : null;
+      throw new ManifestException("Failed to read manifest from " + manifestLocation,
+          location != null ? location.getLineNr() : 0,
+          location != null ? location.getColumnNr() : 0,
+          "Failed to read manifest: " + e.getMessage(), e);
+    }
+
+    if (m.getType() != ManifestType.TOOL) {
+      throw new ManifestException("Expected manifest with type tool, found " + m.getType(), 0, 0,
+          "Expected manifest with type tool, found " + m.getType(), null);
+    }
+
+    ToolManifest manifest = (ToolManifest) m;
+
+    RuntimeTuning tuning = null;
+    if (generateRuntime && manifest.getEnvironment() != null
+        && manifest.getEnvironment().getSize() != null) {
+      ContainerSize size = manifest.getEnvironment().getSize();
+      try {
+        tuning = RuntimeTuning.forSize(size);
+      } catch (IllegalArgumentException e) {
+        throw new ManifestException(
+            "Unsupported container size " + size + " in manifest " + manifestLocation, 0, 0,
+            "Unsupported container size " + size, e);
+      }
+    }
+
+    metrics.setParameterCount(manifest.getParameters().size());
+    metrics.setInputSlotCount(manifest.getInputs().size());
+    metrics.setOutputSlotCount(manifest.getOutputs().size());
+    metrics.phase(GenerationMetrics.PARSE);
+
+    CodeGenerator generator = new CodeGenerator(configurationName, getGeneratorOptions());
+
+    TypeSpec configurationType = generator.generateConfiguration(manifest);
+
+    Map<String, byte[]> resources = generator.generateResources(manifest);
+    if (!resources.isEmpty())
+      hasResources.set(true);
+
+    metrics.phase(GenerationMetrics.GENERATE);
+
+    byte[] configurationBytes = JavaFile
+        .builder(configurationName.packageName(), configurationType).build().toString()
+        .getBytes(StandardCharsets.UTF_8);
+
+    metrics.setGeneratedSourceBytes(configurationBytes.length);
+
+    Map<File, byte[]> outputs = new LinkedHashMap<>();
+    outputs.put(configurationSourceFile, configurationBytes);
+    if (generateWorker) {
+      WorkerGenerator workerGenerator = new WorkerGenerator(configurationName);
+      ClassName workerName = workerGenerator.getWorkerName();
+      outputs.put(
+          new File(outputDirectory,
+              workerName.packageName().replace('.', File.separatorChar) + File.separator
+                  + workerName.simpleName() + ".java"),
+          JavaFile.builder(workerName.packageName(), workerGenerator.generateWorker()).build()
+              .toString().getBytes(StandardCharsets.UTF_8));
+    }
+    for (Map.Entry<String, byte[]> resource : resources.entrySet()) {
+      outputs.put(new File(new File(basedir, resourcesDirectory),
+          resource.getKey().replace('/', File.separatorChar)), resource.getValue());
+    }
+    if (generateNativeImageConfig) {
+      File nativeImageDirectory =
+          new File(new File(basedir, resourcesDirectory),
+              getNativeImageConfigPath(configurationName));
+      try {
+        for (Map.Entry<String, JsonNode> config : new NativeImageConfigGenerator(configurationName)
+            .generateConfigs(configurationType, resources.keySet()).entrySet()) {
+          outputs.put(new File(nativeImageDirectory, config.getKey()),
+              JSON.writerWithDefaultPrettyPrinter().writeValueAsBytes(config.getValue()));
+        }
+      } catch (IOException e) {
+        throw new MojoExecutionException("Failed to generate native image configuration", e);
+      }
+    }
+
+    if (tuning != null) {
+      outputs.put(
+          new File(new File(basedir, jvmOptionsDirectory),
+              configurationName.reflectionName() + ".jvm.config"),
+          (String.join("\n", tuning.getJvmOptions()) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    metrics.phase(GenerationMetrics.RENDER);
+
+    return new Rendering(manifestFile, fingerprintFile, fingerprint, outputs, metrics);
+  }
+
+  /**
+   * Writes the given rendering through the {@link BuildContext}, and clears any markers left on its
+   * manifest by earlier failures. Must run on the mojo's own thread.
+   */
+  protected void writeConfiguration(Rendering rendering) throws MojoExecutionException {
+    GenerationMetrics metrics = rendering.metrics;
+    if (rendering.outputs == null) {
+      reportMetrics(metrics);
+      return;
+    }
+
+    // Do not count the time the rendering waited for this thread
+    metrics.resume();
+
+    buildContext.removeMessages(rendering.manifestFile);
+
+    for (Map.Entry<File, byte[]> output : rendering.outputs.entrySet()) {
+      try {
+        if (writeIfChanged(output.getKey(), output.getValue())) {
+          metrics.setWritten(true);
+          getLog().info("Wrote " + output.getKey());
+        } else {
+          getLog().info("Generated file " + output.getKey() + " is up to date");
+        }
+      } catch (IOException e) {
+        throw new MojoExecutionException("Failed to write generated file " + output.getKey(), e);
+      }
+    }
+
+    writeFingerprint(rendering.fingerprintFile, rendering.fingerprint,
+        rendering.outputs.keySet());
+
+    metrics.phase(GenerationMetrics.WRITE);
+
+    reportMetrics(metrics);
+  }
+
+  /**
+   * Logs the timings of one generation, and writes them to the metrics directory if enabled.
+   */
+  private void reportMetrics(GenerationMetrics metrics) throws MojoExecutionException {
+    getLog().info("Processed " + metrics.getManifest() + " in " + metrics.summary());
+    if (getLog().isDebugEnabled()) {
+      getLog().debug("Manifest " + metrics.getManifest() + ": " + metrics.getManifestBytes()
+          + " bytes, " + metrics.getParameterCount() + " parameters, "
+          + metrics.getInputSlotCount() + " inputs, " + metrics.getOutputSlotCount()
+          + " outputs, " + metrics.getGeneratedSourceBytes() + " bytes of generated source");
+    }
+
+    if (writeMetrics) {
+      File metricsFile = new File(new File(getBasedir(), metricsDirectory),
+          metrics.getConfigurationClass() + ".json");
+      try {
+        Files.createDirectories(metricsFile.getParentFile().toPath());
+        JSON.writerWithDefaultPrettyPrinter().writeValue(metricsFile, metrics);
+      } catch (IOException e) {
+        throw new MojoExecutionException("Failed to write metrics to " + metricsFile, e);
+      }
+    }
+  }
+
+  /**
+   * Reports the given failure to render the manifest at the given location as a marker on the
+   * manifest, if it is a problem with the manifest itself. Must run on the mojo's own thread.
+   *
+   * @return the given failure, for the caller to throw
+   */
+  protected MojoExecutionException reportFailure(String manifestLocation,
+      MojoExecutionException failure) {
+    if (failure instanceof ManifestException) {
+      ManifestException problem = (ManifestException) failure;
+      File manifestFile = new File(getBasedir(), manifestLocation);
+      buildContext.removeMessages(manifestFile);
+      buildContext.addMessage(manifestFile, problem.line, problem.column, problem.markerMessage,
+          BuildContext.SEVERITY_ERROR, problem.getCause());
+    }
+    return failure;
+  }
+
+  private File getConfigurationSourceFile(ClassName configurationName) {
+    return new File(new File(getBasedir(), this.outputDirectory),
+        configurationName.packageName().replace('.', File.separatorChar) + File.separator
+            + configurationName.simpleName() + ".java");
+  }
+
+  /**
+   * A configuration class rendered from its manifest, but not yet written. The generated files are
+   * null if the fingerprint shows that they are up to date.
+   */
+  protected static final class Rendering {
+    private final File manifestFile;
+    private final File fingerprintFile;
+    private final String fingerprint;
+    private final Map<File, byte[]> outputs;
+    private final GenerationMetrics metrics;
+
+    private Rendering(File manifestFile, File fingerprintFile, String fingerprint,
+        Map<File, byte[]> outputs, GenerationMetrics metrics) {
+      this.manifestFile = manifestFile;
+      this.fingerprintFile = fingerprintFile;
+      this.fingerprint = fingerprint;
+      this.outputs = outputs;
+      this.metrics = metrics;
+    }
+  }
+
+  /**
+   * A problem with a manifest's contents, reported as a marker on the manifest in IDE builds
+   */
+  private static final class ManifestException extends MojoExecutionException {
+    private static final long serialVersionUID = 1L;
+
+    private final int line;
+    private final int column;
+    private final String markerMessage;
+
+    private ManifestException(String message, int line, int column, String markerMessage,
+        Throwable cause) {
+      super(message, cause);
+      this.line = line;
+      this.column = column;
+      this.markerMessage = markerMessage;
+    }
+  }
+
+  /**
+   * Adds the generated resources directory to the project resources, if any resources are
+   * generated, i.e. native image metadata or enumeration tables.
+   */
+  protected void addResourceRoot() {
+    if (!generateNativeImageConfig && !hasResources.get())
+      return;
+
+    String directory = new File(getBasedir(), resourcesDirectory).getAbsolutePath();
+    if (project.getResources().stream().noneMatch(r -> directory.equals(r.getDirectory()))) {
+      Resource resource = new Resource();
+      resource.setDirectory(directory);
+      project.addResource(resource);
+    }
+  }
+
+  /**
+   * Returns the directory, relative to the generated resources directory, that holds the native
+   * image configuration of the given class. By default, this is the conventional
+   * {@code META-INF/native-image/<groupId>/<artifactId>} directory of the project.
+   */
+  protected String getNativeImageConfigPath(ClassName configurationName) {
+    return "META-INF/native-image/" + project.getGroupId() + "/" + project.getArtifactId();
+  }
+
+  /**
+   * @return the code generation features selected by the plugin parameters
+   */
+  protected GeneratorOptions getGeneratorOptions() {
+    return new GeneratorOptions().parser(generateParser).primitives(generatePrimitives)
+        .enums(generateEnums).matchers(generateMatchers).clock(generateClock)
+        .worker(generateWorker).lazyConstants(generateLazyConstants)
+        .enumerationTableThreshold(enumerationTableThreshold)
+        .validationResult(generateValidationResult)
+        .configurationFingerprint(generateConfigurationFingerprint)
+        .flightRecorder(generateFlightRecorder).runtime(generateRuntime)
+        .csvReaders(generateCsvReaders).rowWriters(generateRowWriters);
+  }
+
+  /**
+   * @return the base directory of the current project
+   */
+  protected File getBasedir() {
+    return project.getBasedir();
+  }
+
+  /**
+   * Writes the given generated file only if its contents differ from the file already on disk, so
+   * that an unchanged file keeps its modification time and does not trigger recompilation.
+   *
+   * @return true if the file was written, false if it was already up to date
+   */
+  private boolean writeIfChanged(File file, byte[] bytes) throws IOException {
+    if (file.isFile() && file.length() == bytes.length
+        && Arrays.equals(Files.readAllBytes(file.toPath()), bytes))
+      return false;
+
+    Files.createDirectories(file.getParentFile().toPath());
+    try (OutputStream out = buildContext.newFileOutputStream(file)) {
+      out.write(bytes);
+    }
+
+    return true;
+  }
+
+  /**
+   * Computes a content hash of everything that determines the generated source: the manifest, the
+   * target class name, the generator options, the generated file types, and the plugin version.
+   */
+  private String fingerprint(byte[] manifestBytes, ClassName configurationName) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // Every JVM is required to support SHA-256
+      throw new AssertionError(e);
+    }
+
+    digest.update(manifestBytes);
+    for (String value : new String[] {configurationName.packageName(),
+        configurationName.simpleName(), getGeneratorOptions().toString(),
+        "nativeImage=" + generateNativeImageConfig, getPluginVersion()}) {
+      // Separate the values so that different splits of the same characters hash differently
+      digest.update((byte) 0);
+      digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    StringBuilder result = new StringBuilder();
+    for (byte b : digest.digest())
+      result.append(String.format("%02x", b & 0xFF));
+
+    return result.toString();
+  }
+
+  private String getPluginVersion() {
+    if (execution == null || execution.getMojoDescriptor() == null
+        || execution.getMojoDescriptor().getPluginDescriptor() == null)
+      return null;
+    return execution.getMojoDescriptor().getPluginDescriptor().getVersion();
+  }
+
+  /**
+   * Returns true if the fingerprint file holds the given fingerprint and every file it lists as
+   * generated with that fingerprint still exists.
+   */
+  private boolean isUpToDate(File fingerprintFile, String fingerprint) {
+    if (!fingerprintFile.isFile())
+      return false;
+
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(fingerprintFile.toPath(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      getLog().debug("Failed to read fingerprint from " + fingerprintFile, e);
+      return false;
+    }
+
+    return !lines.isEmpty() && lines.get(0).trim().equals(fingerprint) && lines.stream().skip(1)
+        .filter(line -> !line.trim().isEmpty()).allMatch(line -> new File(line.trim()).isFile());
+  }
+
+  /**
+   * Writes the given fingerprint on the first line of the fingerprint file, followed by the files
+   * generated with it, one per line.
+   */
+  private void writeFingerprint(File fingerprintFile, String fingerprint, Collection<File> outputs)
+      throws MojoExecutionException {
+    StringBuilder contents = new StringBuilder(fingerprint).append('\n');
+    for (File output : outputs)
+      contents.append(output.getAbsolutePath()).append('\n');
+
+    try {
+      Files.createDirectories(fingerprintFile.getParentFile().toPath());
+      Files.write(fingerprintFile.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new MojoExecutionException("Failed to write fingerprint to " + fingerprintFile, e);
+    }
+  }
+}
@@ -21,23 +21,61 @@ package io.toolforge.maven;
 
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import javax.lang.model.element.Modifier;
 import com.sigpwned.discourse.core.annotation.Configurable;
 import com.sigpwned.discourse.core.annotation.EnvironmentParameter;
 import com.sigpwned.discourse.core.annotation.OptionParameter;
 import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 import io.toolforge.maven.com.google.common.base.CaseFormat;
 import io.toolforge.spi.model.BooleanParameterDefinition;
@@ -50,8 +88,10 @@ import io.toolforge.spi.model.FloatParameterDefinition;
 import io.toolforge.spi.model.IntParameterDefinition;
 import io.toolforge.spi.model.Manifest;
 import io.toolforge.spi.model.ParameterDefinition;
+import io.toolforge.spi.model.ParameterType;
 import io.toolforge.spi.model.PatternStringDomain;
 import io.toolforge.spi.model.Slot;
+import io.toolforge.spi.model.StringDomainType;
 import io.toolforge.spi.model.StringParameterDefinition;
 import io.toolforge.spi.model.ToolManifest;
 import io.toolforge.spi.model.expr.date.AbsoluteDateExpr;
@@ -60,13 +100,139 @@ import io.toolforge.spi.model.expr.date.TodayDateExpr;
 import io.toolforge.toolforge4j.io.InputSource;
 import io.toolforge.toolforge4j.io.OutputSink;
 
+/**
+ * Generates discourse configuration classes from tool manifests. The only state an instance keeps
+ * besides its class name is a concurrent memo of name conversions, so one generator may be shared
+ * by many threads.
+ */
 public class CodeGenerator {
-  public static CodeBlock TODAY = CodeBlock.of("$T.now($T.UTC)", LocalDate.class, ZoneOffset.class);
+  public static final CodeBlock TODAY =
+      CodeBlock.of("$T.now($T.UTC)", LocalDate.class, ZoneOffset.class);
+
+  /**
+   * The simple name of the nested class that holds the date bounds in clock mode
+   */
+  private static final String DATE_BOUNDS = "DateBounds";
+
+  /**
+   * The simple name of the nested class that holds today's date in lazy constants mode
+   */
+  private static final String TODAY_HOLDER = "TodayHolder";
+
+  /**
+   * The simple name of the nested class that looks values up in large enumeration domains
+   */
+  private static final String ENUMERATION_TABLE = "EnumerationTable";
+
+  /**
+   * The number of parameters whose values one generated fingerprint helper method hashes, which
+   * keeps each helper far below the JIT limit
+   */
+  public static final int FINGERPRINT_CHUNK_SIZE = 128;
+
+  /**
+   * The simple name of the nested class that collects violations in validation result mode
+   */
+  private static final String VALIDATION_RESULT = "ValidationResult";
+
+  /**
+   * The simple names of the nested JDK Flight Recorder event classes in flight recorder mode
+   */
+  private static final String CONFIGURATION_INITIALIZE = "ConfigurationInitialize";
+  private static final String CONFIGURATION_PARSE = "ConfigurationParse";
+  private static final String CONFIGURATION_VALIDATE = "ConfigurationValidate";
+  private static final String SLOT_OPEN = "SlotOpen";
+
+  /**
+   * The simple name of the nested class that holds the container budget in runtime mode
+   */
+  private static final String RUNTIME = "Runtime";
+
+  /**
+   * The simple name of the nested class that streams delimited text inputs in CSV reader mode
+   */
+  private static final String CSV_CURSOR = "CsvCursor";
+
+  /**
+   * The simple names of the nested writer types in row writer mode
+   */
+  private static final String ROW_WRITER = "RowWriter";
+  private static final String CSV_WRITER = "CsvWriter";
+  private static final String XLSX_WRITER = "XlsxWriter";
+
+  private static final String XML_DECLARATION =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+  private static final String SPREADSHEETML_NAMESPACE =
+      "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+  private static final String OFFICE_RELATIONSHIPS_NAMESPACE =
+      "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+  private static final String PACKAGE_RELATIONSHIPS_NAMESPACE =
+      "http://schemas.openxmlformats.org/package/2006/relationships";
+
+  /**
+   * The field delimiters of the delimited text extensions that get CSV readers
+   */
+  private static final Map<String, Character> CSV_DELIMITERS;
+  static {
+    Map<String, Character> csvDelimiters = new LinkedHashMap<>();
+    csvDelimiters.put("csv", ',');
+    csvDelimiters.put("tsv", '\t');
+    CSV_DELIMITERS = Collections.unmodifiableMap(csvDelimiters);
+  }
+
+  /**
+   * The JDK Flight Recorder API is referenced by name so that the plugin itself still runs on
+   * JDKs without the {@code jdk.jfr} module
+   */
+  private static final ClassName JFR_EVENT = ClassName.get("jdk.jfr", "Event");
+  private static final ClassName JFR_CATEGORY = ClassName.get("jdk.jfr", "Category");
+  private static final ClassName JFR_DESCRIPTION = ClassName.get("jdk.jfr", "Description");
+  private static final ClassName JFR_LABEL = ClassName.get("jdk.jfr", "Label");
+  private static final ClassName JFR_STACK_TRACE = ClassName.get("jdk.jfr", "StackTrace");
+
+  /**
+   * The simple names of the nested classes other than enums, which enums must not take
+   */
+  private static final Set<String> NESTED_CLASS_NAMES =
+      Collections.unmodifiableSet(new HashSet<>(Arrays.asList(DATE_BOUNDS, TODAY_HOLDER,
+          ENUMERATION_TABLE, VALIDATION_RESULT, CONFIGURATION_INITIALIZE, CONFIGURATION_PARSE,
+          CONFIGURATION_VALIDATE, SLOT_OPEN, RUNTIME, CSV_CURSOR, ROW_WRITER, CSV_WRITER,
+          XLSX_WRITER)));
+
+  private static final boolean MINIMUM = true;
+
+  private static final boolean MAXIMUM = false;
+
+  /**
+   * The most bytecode the generator puts into one validation method. HotSpot will not JIT-compile
+   * methods larger than 8000 bytes of bytecode, so validation is split into helper methods that
+   * each stay well under that limit.
+   */
+  public static final int VALIDATE_METHOD_BYTECODE_LIMIT = 4000;
 
   private final ClassName className;
 
+  private final GeneratorOptions options;
+
+  /**
+   * Memo of manifest name conversions. Every name is converted several times per class, e.g. for
+   * its field, its preparation, and its validation, so each conversion is only done once. Lookups
+   * go through get before put so that a hit allocates nothing. Racing threads may both convert a
+   * name, but they always store the same result.
+   */
+  private final Map<String, String> lowerCamelNames = new ConcurrentHashMap<>();
+  private final Map<String, String> upperCamelNames = new ConcurrentHashMap<>();
+  private final Map<String, String> upperCamelExtensions = new ConcurrentHashMap<>();
+  private final Map<String, String> upperUnderscoreNames = new ConcurrentHashMap<>();
+  private final Map<String, String> variableNames = new ConcurrentHashMap<>();
+
   public CodeGenerator(ClassName className) {
+    this(className, new GeneratorOptions());
+  }
+
+  public CodeGenerator(ClassName className, GeneratorOptions options) {
     this.className = requireNonNull(className);
+    this.options = new GeneratorOptions(options);
   }
 
   /**
@@ -76,12 +242,40 @@ public class CodeGenerator {
     TypeSpec.Builder configurationBuilder = TypeSpec.classBuilder(getClassName().simpleName())
         .addModifiers(Modifier.PUBLIC, Modifier.FINAL).addAnnotation(Configurable.class);
 
-    configurationBuilder.addField(FieldSpec
-        .builder(LocalDate.class, "TODAY", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
-        .initializer(TODAY).build());
+    if (getOptions().isFlightRecorder()) {
+      // Static fields are initialized in order, so this must be the first static field
+      ClassName initializeEvent = getClassName().nestedClass(CONFIGURATION_INITIALIZE);
+      configurationBuilder.addField(FieldSpec
+          .builder(initializeEvent, "INITIALIZE_EVENT", Modifier.PRIVATE, Modifier.STATIC,
+              Modifier.FINAL)
+          .initializer("$T.started()", initializeEvent).build());
+    }
 
-    for (ParameterDefinition parameter : manifest.getParameters())
+    if (getOptions().isClock()) {
+      configurationBuilder.addType(generateDateBoundsType(manifest));
+      configurationBuilder.addField(FieldSpec
+          .builder(getClassName().nestedClass(DATE_BOUNDS), "dateBounds", Modifier.PRIVATE,
+              Modifier.FINAL)
+          .build());
+      configurationBuilder.addMethods(generateDateBoundsConstructors(manifest));
+    } else if (getOptions().isLazyConstants()) {
+      configurationBuilder.addType(generateTodayHolder());
+    } else {
+      configurationBuilder.addField(FieldSpec
+          .builder(LocalDate.class, "TODAY", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+          .initializer(TODAY).build());
+    }
+
+    for (ParameterDefinition parameter : manifest.getParameters()) {
+      if (getOptions().isLazyConstants()) {
+        generatePreparationHolder(parameter).ifPresent(configurationBuilder::addType);
+        continue;
+      }
       generatePreparation(parameter).ifPresent(configurationBuilder::addField);
+      if (parameter.getType() == ParameterType.DATE && !getOptions().isClock())
+        configurationBuilder
+            .addFields(generateDateBoundFields((DateParameterDefinition) parameter));
+    }
 
     if (manifest.getEnvironment() != null && manifest.getEnvironment().getVariables() != null) {
       for (ContainerVersionVariable variable : manifest.getEnvironment().getVariables()) {
@@ -98,6 +292,11 @@ public class CodeGenerator {
     for (ParameterDefinition parameter : manifest.getParameters())
       configurationBuilder.addField(generateParameterField(parameter));
 
+    List<ParameterDefinition> primitiveParameters = manifest.getParameters().stream()
+        .filter(this::isPrimitiveParameter).collect(toList());
+    for (int word = 0; word < presenceWordCount(primitiveParameters.size()); word++)
+      configurationBuilder.addField(generatePresenceField(primitiveParameters, word));
+
     for (Slot input : manifest.getInputs())
       configurationBuilder.addField(generateInputField(input));
 
@@ -105,7 +304,93 @@ public class CodeGenerator {
       for (String extension : output.getExtensions())
         configurationBuilder.addField(generateOutputExtensionField(output, extension));
 
-    configurationBuilder.addMethod(generateValidateMethod(manifest));
+    for (int bit = 0; bit < primitiveParameters.size(); bit++)
+      configurationBuilder
+          .addMethods(generatePrimitiveAccessors(primitiveParameters.get(bit), bit));
+
+    for (ParameterDefinition parameter : manifest.getParameters()) {
+      if (isMatcherParameter(parameter)) {
+        StringParameterDefinition stringParameter = (StringParameterDefinition) parameter;
+        Optional<List<PatternAnalyzer.Term>> terms = analyzePattern(stringParameter);
+        if (terms.isPresent())
+          configurationBuilder.addMethod(generatePatternMatcher(stringParameter, terms.get()));
+        else
+          configurationBuilder.addType(generatePatternHolder(stringParameter));
+      }
+      if (isEnumParameter(parameter)) {
+        configurationBuilder.addMethod(generateEnumSetter((StringParameterDefinition) parameter));
+        configurationBuilder.addType(generateEnum((StringParameterDefinition) parameter));
+      }
+      if (isEnumerationTableParameter(parameter))
+        configurationBuilder.addType(
+            generateEnumerationTableHolder((StringParameterDefinition) parameter));
+    }
+
+    if (manifest.getParameters().stream().anyMatch(this::isEnumerationTableParameter))
+      configurationBuilder.addType(generateEnumerationTableType());
+
+    if (getOptions().isValidationResult())
+      configurationBuilder.addType(generateValidationResultType());
+
+    if (getOptions().isRuntime() && manifest.getEnvironment() != null
+        && manifest.getEnvironment().getSize() != null)
+      configurationBuilder.addType(
+          generateRuntimeType(RuntimeTuning.forSize(manifest.getEnvironment().getSize())));
+
+    List<MethodSpec> validateMethods = generateValidateMethods(manifest);
+    if (getOptions().isFlightRecorder())
+      validateMethods = generateRecordedMethods(validateMethods,
+          getOptions().isValidationResult() ? "validateInto" : "validate",
+          getClassName().nestedClass(CONFIGURATION_VALIDATE),
+          CodeBlock.builder().addStatement("flightRecorderEvent.parameterCount = $L",
+              manifest.getParameters().size()).build());
+    configurationBuilder.addMethods(validateMethods);
+
+    if (getOptions().isConfigurationFingerprint())
+      configurationBuilder.addMethods(generateFingerprintMethods(manifest));
+
+    if (getOptions().isParser() || getOptions().isWorker()) {
+      List<MethodSpec> parseMethods = Collections.singletonList(generateParseMethod(manifest));
+      if (getOptions().isFlightRecorder())
+        parseMethods = generateRecordedMethods(parseMethods, "parse",
+            getClassName().nestedClass(CONFIGURATION_PARSE),
+            CodeBlock.builder().addStatement("flightRecorderEvent.argumentCount = args.length")
+                .addStatement("flightRecorderEvent.parameterCount = $L",
+                    manifest.getParameters().size())
+                .build());
+      configurationBuilder.addMethods(parseMethods);
+      configurationBuilder.addMethod(generateParseBooleanMethod());
+    }
+
+    if (getOptions().isCsvReaders()) {
+      for (Slot input : manifest.getInputs())
+        configurationBuilder.addMethods(generateCsvReaders(input));
+      if (manifest.getInputs().stream().flatMap(input -> input.getExtensions().stream())
+          .anyMatch(extension -> CSV_DELIMITERS.containsKey(extension.toLowerCase(Locale.ROOT))))
+        configurationBuilder.addType(generateCsvCursorType());
+    }
+
+    if (getOptions().isRowWriters()) {
+      List<String> extensions = manifest.getOutputs().stream()
+          .flatMap(output -> output.getExtensions().stream()).map(String::toLowerCase)
+          .collect(toList());
+      boolean csv = extensions.stream().anyMatch(CSV_DELIMITERS::containsKey);
+      boolean xlsx = extensions.contains("xlsx");
+      for (Slot output : manifest.getOutputs())
+        configurationBuilder.addMethods(generateRowWriters(output));
+      if (csv || xlsx)
+        configurationBuilder.addType(generateRowWriterType());
+      if (csv)
+        configurationBuilder.addType(generateCsvWriterType());
+      if (xlsx)
+        configurationBuilder.addType(generateXlsxWriterType());
+    }
+
+    if (getOptions().isFlightRecorder()) {
+      configurationBuilder.addMethods(generateSlotOpenMethods(manifest));
+      configurationBuilder.addStaticBlock(generateRecordedInitializeBlock());
+      configurationBuilder.addTypes(generateFlightRecorderEventTypes());
+    }
 
     return configurationBuilder.build();
   }
@@ -123,8 +408,7 @@ public class CodeGenerator {
   protected FieldSpec generateOutputExtensionField(Slot output, String extension) {
     return FieldSpec
         .builder(OutputSink.class,
-            parameterNameToLowerCamel(output.getName())
-                + CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_CAMEL, extension),
+            parameterNameToLowerCamel(output.getName()) + extensionToUpperCamel(extension),
             Modifier.PUBLIC)
         .addAnnotation(AnnotationSpec.builder(OptionParameter.class)
             .addMember("longName", "$S", output.getName() + "." + extension)
@@ -135,8 +419,8 @@ public class CodeGenerator {
   }
 
   protected FieldSpec generateVariableField(ContainerVersionVariable variable) {
-    return FieldSpec.builder(String.class,
-        CaseFormat.UPPER_UNDERSCORE.to(CaseFormat.LOWER_CAMEL, variable.getName()), Modifier.PUBLIC)
+    return FieldSpec.builder(String.class, variableNameToLowerCamel(variable.getName()),
+        Modifier.PUBLIC)
         .initializer(CodeBlock.of("$S", variable.getDefault()))
         .addAnnotation(AnnotationSpec.builder(EnvironmentParameter.class)
             .addMember("variableName", "$S", variable.getName())
@@ -146,8 +430,8 @@ public class CodeGenerator {
   }
 
   protected FieldSpec generateSecretField(ContainerVersionSecret variable) {
-    return FieldSpec.builder(String.class,
-        CaseFormat.UPPER_UNDERSCORE.to(CaseFormat.LOWER_CAMEL, variable.getName()), Modifier.PUBLIC)
+    return FieldSpec.builder(String.class, variableNameToLowerCamel(variable.getName()),
+        Modifier.PUBLIC)
         .addAnnotation(AnnotationSpec.builder(EnvironmentParameter.class)
             .addMember("variableName", "$S", variable.getName())
             .addMember("required", "$L", variable.getRequired())
@@ -157,6 +441,11 @@ public class CodeGenerator {
   }
 
   protected FieldSpec generateParameterField(ParameterDefinition parameter) {
+    if (isPrimitiveParameter(parameter))
+      return generatePrimitiveParameterField(parameter);
+    if (isEnumParameter(parameter))
+      return generateEnumParameterField((StringParameterDefinition) parameter);
+
     FieldSpec.Builder fieldBuilder;
     switch (parameter.getType()) {
       case BOOLEAN:
@@ -171,7 +460,8 @@ public class CodeGenerator {
         DateParameterDefinition dateParameter = (DateParameterDefinition) parameter;
         fieldBuilder = FieldSpec.builder(LocalDate.class,
             parameterNameToLowerCamel(dateParameter.getName()), Modifier.PUBLIC);
-        if (dateParameter.getDefault() != null)
+        // In clock mode, the constructor assigns the default once the date bounds are known
+        if (dateParameter.getDefault() != null && !getOptions().isClock())
           fieldBuilder = fieldBuilder.initializer(generateDateExpr(dateParameter.getDefault()));
         break;
       case FLOAT:
@@ -206,6 +496,543 @@ public class CodeGenerator {
 
   }
 
+  /**
+   * Generates the constants that hold the bounds of a date parameter, computed once from
+   * {@code TODAY} when the class is loaded instead of on every validation.
+   */
+  protected List<FieldSpec> generateDateBoundFields(DateParameterDefinition parameter) {
+    List<FieldSpec> result = new ArrayList<>(2);
+    for (boolean minimum : new boolean[] {MINIMUM, MAXIMUM})
+      result.add(FieldSpec
+          .builder(LocalDate.class, dateBoundConstantName(parameter, minimum), Modifier.PRIVATE,
+              Modifier.STATIC, Modifier.FINAL)
+          .initializer(generateDateExpr(
+              minimum ? parameter.getMinimum() : parameter.getMaximum()))
+          .build());
+    return result;
+  }
+
+  /**
+   * Generates the nested class that holds today and the bounds of every date parameter as computed
+   * from a given clock. The system instance is computed from the system clock in UTC the first
+   * time it is used, which matches the {@code TODAY} constant of the default mode.
+   */
+  protected TypeSpec generateDateBoundsType(ToolManifest manifest) {
+    ClassName dateBoundsName = getClassName().nestedClass(DATE_BOUNDS);
+    TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(dateBoundsName)
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .addField(FieldSpec
+            .builder(dateBoundsName, "SYSTEM", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .initializer("new $T($T.systemUTC())", dateBoundsName, Clock.class).build())
+        .addField(LocalDate.class, "today", Modifier.PRIVATE, Modifier.FINAL);
+
+    MethodSpec.Builder constructorBuilder = MethodSpec.constructorBuilder()
+        .addModifiers(Modifier.PUBLIC).addParameter(Clock.class, "clock")
+        .addStatement("this.today = $T.now(clock)", LocalDate.class);
+    for (ParameterDefinition parameter : manifest.getParameters()) {
+      if (parameter.getType() != ParameterType.DATE)
+        continue;
+      DateParameterDefinition dateParameter = (DateParameterDefinition) parameter;
+      for (boolean minimum : new boolean[] {MINIMUM, MAXIMUM}) {
+        String fieldName = dateBoundFieldName(dateParameter, minimum);
+        typeBuilder.addField(LocalDate.class, fieldName, Modifier.PRIVATE, Modifier.FINAL);
+        constructorBuilder.addStatement("this.$L = $L", fieldName,
+            generateDateExpr(minimum ? dateParameter.getMinimum() : dateParameter.getMaximum(),
+                CodeBlock.of("today")));
+      }
+    }
+
+    return typeBuilder.addMethod(constructorBuilder.build())
+        .addMethod(MethodSpec.methodBuilder("getToday").addModifiers(Modifier.PUBLIC)
+            .returns(LocalDate.class).addStatement("return today").build())
+        .build();
+  }
+
+  /**
+   * Generates the constructors of clock mode. The default constructor uses the system date bounds,
+   * and callers that validate many configurations can compute one {@code DateBounds} and share it.
+   */
+  protected List<MethodSpec> generateDateBoundsConstructors(ToolManifest manifest) {
+    ClassName dateBoundsName = getClassName().nestedClass(DATE_BOUNDS);
+    MethodSpec.Builder dateBoundsConstructorBuilder = MethodSpec.constructorBuilder()
+        .addModifiers(Modifier.PUBLIC).addParameter(dateBoundsName, "dateBounds")
+        .addStatement("this.dateBounds = $T.requireNonNull(dateBounds)", Objects.class);
+    for (ParameterDefinition parameter : manifest.getParameters()) {
+      if (parameter.getType() != ParameterType.DATE)
+        continue;
+      DateParameterDefinition dateParameter = (DateParameterDefinition) parameter;
+      if (dateParameter.getDefault() != null)
+        dateBoundsConstructorBuilder.addStatement("this.$L = $L",
+            parameterNameToLowerCamel(dateParameter.getName()),
+            generateDateExpr(dateParameter.getDefault(), CodeBlock.of("dateBounds.today")));
+    }
+
+    List<MethodSpec> result = new ArrayList<>(3);
+    result.add(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+        .addStatement("this($T.SYSTEM)", dateBoundsName).build());
+    result.add(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+        .addParameter(Clock.class, "clock")
+        .addStatement("this(new $T(clock))", dateBoundsName).build());
+    result.add(dateBoundsConstructorBuilder.build());
+    return result;
+  }
+
+  private CodeBlock dateBoundReference(DateParameterDefinition parameter, boolean minimum) {
+    if (getOptions().isClock())
+      return CodeBlock.of("dateBounds.$L", dateBoundFieldName(parameter, minimum));
+    if (getOptions().isLazyConstants())
+      return CodeBlock.of("$L.$L", preparationHolderName(parameter, "Bounds"),
+          minimum ? "MINIMUM" : "MAXIMUM");
+    return CodeBlock.of("$L", dateBoundConstantName(parameter, minimum));
+  }
+
+  private String dateBoundConstantName(DateParameterDefinition parameter, boolean minimum) {
+    return parameterNameToUpperUnderscore(parameter.getName())
+        + (minimum ? "_MINIMUM" : "_MAXIMUM");
+  }
+
+  private String dateBoundFieldName(DateParameterDefinition parameter, boolean minimum) {
+    return parameterNameToLowerCamel(parameter.getName()) + (minimum ? "Minimum" : "Maximum");
+  }
+
+  /**
+   * Generates the private primitive field of a boolean, int, or float parameter in primitives mode.
+   * The discourse binding goes through the annotated setter from
+   * {@link #generatePrimitiveAccessors(ParameterDefinition, int)}, which records the presence of
+   * the value.
+   */
+  protected FieldSpec generatePrimitiveParameterField(ParameterDefinition parameter) {
+    String fieldName = parameterNameToLowerCamel(parameter.getName());
+    FieldSpec.Builder fieldBuilder =
+        FieldSpec.builder(primitiveParameterType(parameter), fieldName, Modifier.PRIVATE);
+    switch (parameter.getType()) {
+      case BOOLEAN:
+        BooleanParameterDefinition booleanParameter = (BooleanParameterDefinition) parameter;
+        if (booleanParameter.getDefault() != null)
+          fieldBuilder = fieldBuilder.initializer("$L", booleanParameter.getDefault());
+        break;
+      case FLOAT:
+        FloatParameterDefinition floatParameter = (FloatParameterDefinition) parameter;
+        if (floatParameter.getDefault() != null)
+          fieldBuilder = fieldBuilder.initializer("$L", floatParameter.getDefault());
+        break;
+      case INT:
+        IntParameterDefinition intParameter = (IntParameterDefinition) parameter;
+        if (intParameter.getDefault() != null)
+          fieldBuilder = fieldBuilder.initializer("$LL", intParameter.getDefault());
+        break;
+      default:
+        throw new AssertionError(parameter.getType());
+    }
+    return fieldBuilder.build();
+  }
+
+  /**
+   * Generates one word of the presence bitmask for the given primitive parameters. A parameter with
+   * a default value is present from the start.
+   */
+  protected FieldSpec generatePresenceField(List<ParameterDefinition> primitiveParameters,
+      int word) {
+    long initial = 0L;
+    for (int bit = word * Long.SIZE; bit < Math.min(primitiveParameters.size(),
+        (word + 1) * Long.SIZE); bit++)
+      if (hasDefault(primitiveParameters.get(bit)))
+        initial = initial | presenceMask(bit);
+    return FieldSpec
+        .builder(long.class, presenceFieldName(word), Modifier.PRIVATE)
+        .initializer("$L", presenceLiteral(initial)).build();
+  }
+
+  /**
+   * Generates the annotated setter, the getter, and the {@code hasX()} method of a primitive
+   * parameter, which occupies the given bit of the presence bitmask.
+   */
+  protected List<MethodSpec> generatePrimitiveAccessors(ParameterDefinition parameter, int bit) {
+    String fieldName = parameterNameToLowerCamel(parameter.getName());
+    String upperCamelName = parameterNameToUpperCamel(parameter.getName());
+    TypeName type = primitiveParameterType(parameter);
+    String presenceField = presenceFieldName(bit / Long.SIZE);
+    String mask = presenceLiteral(presenceMask(bit));
+
+    List<MethodSpec> result = new ArrayList<>(3);
+    result.add(MethodSpec.methodBuilder("set" + upperCamelName).addModifiers(Modifier.PUBLIC)
+        .addAnnotation(AnnotationSpec.builder(OptionParameter.class)
+            .addMember("longName", "$S", parameter.getName())
+            .addMember("description", "$S", parameter.getDescription())
+            .addMember("required", "$L", parameter.getRequired()).build())
+        .addParameter(type, fieldName).addStatement("this.$L = $L", fieldName, fieldName)
+        .addStatement("$L = $L | $L", presenceField, presenceField, mask).build());
+    result.add(MethodSpec
+        .methodBuilder((type.equals(TypeName.BOOLEAN) ? "is" : "get") + upperCamelName)
+        .addModifiers(Modifier.PUBLIC).returns(type).addStatement("return $L", fieldName).build());
+    result.add(MethodSpec.methodBuilder("has" + upperCamelName).addModifiers(Modifier.PUBLIC)
+        .returns(boolean.class)
+        .addStatement("return ($L & $L) != 0L", presenceField, mask).build());
+    return result;
+  }
+
+  /**
+   * Generates the field of an enumeration string parameter in enums mode, typed as the parameter's
+   * nested enum. The discourse binding goes through the annotated string setter from
+   * {@link #generateEnumSetter(StringParameterDefinition)}.
+   */
+  protected FieldSpec generateEnumParameterField(StringParameterDefinition parameter) {
+    ClassName enumName = enumClassName(parameter);
+    FieldSpec.Builder fieldBuilder =
+        FieldSpec.builder(enumName, parameterNameToLowerCamel(parameter.getName()),
+            Modifier.PUBLIC);
+    if (parameter.getDefault() != null) {
+      Map<String, String> constants = enumConstantNames(parameter);
+      if (constants.containsKey(parameter.getDefault()))
+        fieldBuilder = fieldBuilder.initializer("$T.$L", enumName,
+            constants.get(parameter.getDefault()));
+      else
+        fieldBuilder = fieldBuilder.initializer("$T.fromValue($S)", enumName,
+            parameter.getDefault());
+    }
+    return fieldBuilder.build();
+  }
+
+  /**
+   * Generates the annotated setter that binds the string value of an enumeration parameter to its
+   * enum constant. An unknown value fails here, so validation has nothing left to check.
+   */
+  protected MethodSpec generateEnumSetter(StringParameterDefinition parameter) {
+    String fieldName = parameterNameToLowerCamel(parameter.getName());
+    return MethodSpec.methodBuilder("set" + parameterNameToUpperCamel(parameter.getName()))
+        .addModifiers(Modifier.PUBLIC)
+        .addAnnotation(AnnotationSpec.builder(OptionParameter.class)
+            .addMember("longName", "$S", parameter.getName())
+            .addMember("description", "$S", parameter.getDescription())
+            .addMember("required", "$L", parameter.getRequired()).build())
+        .addParameter(String.class, fieldName)
+        .addStatement("this.$L = $T.fromValue($L)", fieldName, enumClassName(parameter), fieldName)
+        .build();
+  }
+
+  /**
+   * Generates the nested enum of an enumeration string parameter. Each constant carries its
+   * manifest value, and {@code fromValue} maps a value to its constant with a string switch.
+   */
+  protected TypeSpec generateEnum(StringParameterDefinition parameter) {
+    EnumerationStringDomain enumerationDomain = (EnumerationStringDomain) parameter.getDomain();
+    ClassName enumName = enumClassName(parameter);
+    Map<String, String> constants = enumConstantNames(parameter);
+
+    TypeSpec.Builder enumBuilder =
+        TypeSpec.enumBuilder(enumName).addModifiers(Modifier.PUBLIC, Modifier.STATIC);
+    for (Map.Entry<String, String> constant : constants.entrySet())
+      enumBuilder.addEnumConstant(constant.getValue(),
+          TypeSpec.anonymousClassBuilder("$S", constant.getKey()).build());
+
+    MethodSpec.Builder fromValueBuilder = MethodSpec.methodBuilder("fromValue")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC).returns(enumName)
+        .addParameter(String.class, "value").beginControlFlow("switch(value)");
+    for (Map.Entry<String, String> constant : constants.entrySet())
+      fromValueBuilder.addCode(CodeBlock.builder().add("case $S:\n", constant.getKey()).indent()
+          .addStatement("return $L", constant.getValue()).unindent().build());
+    fromValueBuilder.addCode(CodeBlock.builder().add("default:\n").indent()
+        .addStatement("throw new $T($S)", IllegalArgumentException.class,
+            String.format("%s must be one of: %s", parameter.getName(),
+                enumerationDomain.getValues().stream().collect(joining(", "))))
+        .unindent().build()).endControlFlow();
+
+    return enumBuilder
+        .addField(String.class, "value", Modifier.PRIVATE, Modifier.FINAL)
+        .addMethod(MethodSpec.constructorBuilder().addParameter(String.class, "value")
+            .addStatement("this.value = value").build())
+        .addMethod(MethodSpec.methodBuilder("getValue").addModifiers(Modifier.PUBLIC)
+            .returns(String.class).addStatement("return value").build())
+        .addMethod(MethodSpec.methodBuilder("toString").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).returns(String.class).addStatement("return value")
+            .build())
+        .addMethod(fromValueBuilder.build()).build();
+  }
+
+  /**
+   * Generates a static method that matches values against a simple pattern, as analyzed by
+   * {@link PatternAnalyzer}, with a single greedy scan over the characters of the value. Terms
+   * that accept non-ASCII characters step over whole code points, as {@link Pattern} does.
+   */
+  protected MethodSpec generatePatternMatcher(StringParameterDefinition parameter,
+      List<PatternAnalyzer.Term> terms) {
+    MethodSpec.Builder methodBuilder =
+        MethodSpec.methodBuilder("matches" + parameterNameToUpperCamel(parameter.getName()))
+            .addJavadoc("Matches {@code $L} without a regular expression\n",
+                ((PatternStringDomain) parameter.getDomain()).getPattern().replace("*/", "*&#47;"))
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(boolean.class)
+            .addParameter(String.class, "value").addStatement("int length = value.length()")
+            .addStatement("int i = 0");
+    if (terms.stream().anyMatch(t -> !isLiteral(t)))
+      methodBuilder.addStatement("char ch");
+
+    for (int index = 0; index < terms.size(); index++) {
+      PatternAnalyzer.Term term = terms.get(index);
+      if (isLiteral(term)) {
+        StringBuilder literal = new StringBuilder();
+        for (; index < terms.size() && isLiteral(terms.get(index)); index++)
+          for (int n = 0; n < terms.get(index).getMin(); n++)
+            literal.append((char) terms.get(index).getChars().singleChar());
+        index = index - 1;
+        if (literal.length() == 1) {
+          methodBuilder.beginControlFlow("if(i == length || value.charAt(i) != $L)",
+              charLiteral(literal.charAt(0)));
+        } else {
+          methodBuilder.beginControlFlow("if(!value.startsWith($S, i))", literal);
+        }
+        methodBuilder.addStatement("return false").endControlFlow()
+            .addStatement("i = i + $L", literal.length());
+      } else if (term.getChars().getNonAscii() != PatternAnalyzer.NonAscii.NONE) {
+        // Like java.util.regex, consume a whole code point, so a surrogate pair counts once
+        methodBuilder.addStatement("int count$L = 0", index);
+        if (term.getMax() == Integer.MAX_VALUE)
+          methodBuilder.beginControlFlow("while(i < length)");
+        else
+          methodBuilder.beginControlFlow("while(i < length && count$L < $L)", index,
+              term.getMax());
+        methodBuilder.addStatement("ch = value.charAt(i)")
+            .beginControlFlow("if(!($L))", charSetCondition(term.getChars()))
+            .addStatement("break").endControlFlow()
+            .addStatement("i = i + $T.charCount(value.codePointAt(i))", Character.class)
+            .addStatement("count$L = count$L + 1", index, index).endControlFlow();
+        if (term.getMin() > 0)
+          methodBuilder.beginControlFlow("if(count$L < $L)", index, term.getMin())
+              .addStatement("return false").endControlFlow();
+      } else if (term.isFixed()) {
+        methodBuilder.beginControlFlow("if(length - i < $L)", term.getMin())
+            .addStatement("return false").endControlFlow()
+            .beginControlFlow("for(int end = i + $L; i < end; i++)", term.getMin())
+            .addStatement("ch = value.charAt(i)")
+            .beginControlFlow("if(!($L))", charSetCondition(term.getChars()))
+            .addStatement("return false").endControlFlow().endControlFlow();
+      } else {
+        String limit = "length";
+        if (term.getMax() != Integer.MAX_VALUE) {
+          limit = "limit" + index;
+          methodBuilder.addStatement("int $L = length - i < $L ? length : i + $L", limit,
+              term.getMax(), term.getMax());
+        }
+        if (term.getMin() > 0)
+          methodBuilder.addStatement("int start$L = i", index);
+        methodBuilder.beginControlFlow("while(i < $L)", limit)
+            .addStatement("ch = value.charAt(i)")
+            .beginControlFlow("if(!($L))", charSetCondition(term.getChars()))
+            .addStatement("break").endControlFlow().addStatement("i = i + 1").endControlFlow();
+        if (term.getMin() > 0)
+          methodBuilder.beginControlFlow("if(i - start$L < $L)", index, term.getMin())
+              .addStatement("return false").endControlFlow();
+      }
+    }
+
+    return methodBuilder.addStatement("return i == length").build();
+  }
+
+  /**
+   * Generates an initialization-on-demand holder for a pattern that is not simple, so that the
+   * pattern is only compiled the first time a value is validated against it.
+   */
+  protected TypeSpec generatePatternHolder(StringParameterDefinition parameter) {
+    PatternStringDomain patternDomain = (PatternStringDomain) parameter.getDomain();
+    return TypeSpec.classBuilder(patternHolderName(parameter))
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+        .addField(FieldSpec
+            .builder(Pattern.class, "PATTERN", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .initializer("$T.compile($S)", Pattern.class, patternDomain.getPattern()).build())
+        .build();
+  }
+
+  /**
+   * Returns true if the given parameter is validated with a generated matcher or a lazily compiled
+   * pattern.
+   */
+  protected boolean isMatcherParameter(ParameterDefinition parameter) {
+    return getOptions().isMatchers() && parameter.getType() == ParameterType.STRING
+        && ((StringParameterDefinition) parameter).getDomain()
+            .getType() == StringDomainType.PATTERN;
+  }
+
+  private Optional<List<PatternAnalyzer.Term>> analyzePattern(StringParameterDefinition parameter) {
+    return PatternAnalyzer.analyze(((PatternStringDomain) parameter.getDomain()).getPattern());
+  }
+
+  private String patternHolderName(StringParameterDefinition parameter) {
+    return preparationHolderName(parameter, "Pattern");
+  }
+
+  private static boolean isLiteral(PatternAnalyzer.Term term) {
+    return term.isFixed() && term.getChars().singleChar() != -1;
+  }
+
+  /**
+   * Returns a boolean expression that tests whether the char {@code ch} is in the given set. Sets
+   * that accept non-ASCII characters are tested by the ASCII characters they reject.
+   */
+  private static CodeBlock charSetCondition(PatternAnalyzer.CharSet chars) {
+    List<CodeBlock> tests = new ArrayList<>();
+    BitSet ascii = chars.getAscii();
+    if (chars.getNonAscii() != PatternAnalyzer.NonAscii.NONE)
+      ascii.flip(0, 128);
+    for (int low = ascii.nextSetBit(0); low != -1; low = ascii.nextSetBit(low)) {
+      int high = ascii.nextClearBit(low) - 1;
+      if (low == high)
+        tests.add(CodeBlock.of("ch == $L", charLiteral((char) low)));
+      else if (low + 1 == high)
+        tests.add(CodeBlock.of("ch == $L || ch == $L", charLiteral((char) low),
+            charLiteral((char) high)));
+      else
+        tests.add(CodeBlock.of("(ch >= $L && ch <= $L)", charLiteral((char) low),
+            charLiteral((char) high)));
+      low = high + 1;
+    }
+
+    if (chars.getNonAscii() == PatternAnalyzer.NonAscii.NONE)
+      return tests.isEmpty() ? CodeBlock.of("false") : CodeBlock.join(tests, " || ");
+
+    if (chars.getNonAscii() == PatternAnalyzer.NonAscii.ALL_BUT_LINE_TERMINATORS)
+      tests.add(CodeBlock.of("ch == 0x85 || ch == 0x2028 || ch == 0x2029"));
+    return tests.isEmpty() ? CodeBlock.of("true")
+        : CodeBlock.of("!($L)", CodeBlock.join(tests, " || "));
+  }
+
+  private static String charLiteral(char ch) {
+    switch (ch) {
+      case '\'':
+        return "'\\''";
+      case '\\':
+        return "'\\\\'";
+      case '\t':
+        return "'\\t'";
+      case '\n':
+        return "'\\n'";
+      case '\r':
+        return "'\\r'";
+      case '\f':
+        return "'\\f'";
+      default:
+        if (ch >= 0x20 && ch < 0x7f)
+          return "'" + ch + "'";
+        return String.format("0x%02x", (int) ch);
+    }
+  }
+
+  /**
+   * Returns true if the given parameter is generated as a nested enum.
+   */
+  protected boolean isEnumParameter(ParameterDefinition parameter) {
+    return getOptions().isEnums() && parameter.getType() == ParameterType.STRING
+        && ((StringParameterDefinition) parameter).getDomain()
+            .getType() == StringDomainType.ENUMERATION
+        && !isEnumerationTableParameter(parameter);
+  }
+
+  /**
+   * Returns the nested enum of the given parameter, which is named after the parameter. Names that
+   * another nested type may take get an {@code Enum} suffix, and so do names that already end in
+   * one, so that no two parameters get the same enum.
+   */
+  private ClassName enumClassName(StringParameterDefinition parameter) {
+    String simpleName = parameterNameToUpperCamel(parameter.getName());
+    if (isReservedNestedName(simpleName))
+      simpleName = simpleName + "Enum";
+    return getClassName().nestedClass(simpleName);
+  }
+
+  private boolean isReservedNestedName(String simpleName) {
+    return simpleName.equals(getClassName().simpleName()) || NESTED_CLASS_NAMES.contains(simpleName)
+        || simpleName.endsWith("Enum") || simpleName.endsWith("Holder");
+  }
+
+  /**
+   * Maps each value of the given enumeration parameter to a unique constant name, in manifest
+   * order. Camel humps and characters that cannot appear in an identifier become underscores. The
+   * empty value becomes {@code EMPTY}, and names that do not start with a letter get a
+   * {@code VALUE_} prefix, e.g. {@code VALUE__} for {@code "-"}.
+   */
+  private static Map<String, String> enumConstantNames(StringParameterDefinition parameter) {
+    EnumerationStringDomain enumerationDomain = (EnumerationStringDomain) parameter.getDomain();
+    Map<String, String> result = new LinkedHashMap<>();
+    Set<String> constants = new HashSet<>();
+    for (String value : enumerationDomain.getValues()) {
+      if (result.containsKey(value))
+        continue;
+      StringBuilder constant = new StringBuilder(value.length() + 1);
+      for (int i = 0; i < value.length(); i++) {
+        char ch = value.charAt(i);
+        if (Character.isUpperCase(ch) && i > 0 && Character.isLowerCase(value.charAt(i - 1)))
+          constant.append('_');
+        constant.append(
+            Character.isLetterOrDigit(ch) && ch < 128 ? Character.toUpperCase(ch) : '_');
+      }
+      if (constant.length() == 0)
+        constant.append("EMPTY");
+      else if (!Character.isLetter(constant.charAt(0)))
+        constant.insert(0, "VALUE_");
+      String name = constant.toString();
+      for (int n = 2; !constants.add(name); n++)
+        name = constant + "_" + n;
+      result.put(value, name);
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if the given parameter is generated as a primitive field with a presence bit.
+   */
+  protected boolean isPrimitiveParameter(ParameterDefinition parameter) {
+    if (!getOptions().isPrimitives())
+      return false;
+    switch (parameter.getType()) {
+      case BOOLEAN:
+      case FLOAT:
+      case INT:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static TypeName primitiveParameterType(ParameterDefinition parameter) {
+    switch (parameter.getType()) {
+      case BOOLEAN:
+        return TypeName.BOOLEAN;
+      case FLOAT:
+        return TypeName.DOUBLE;
+      case INT:
+        return TypeName.LONG;
+      default:
+        throw new AssertionError(parameter.getType());
+    }
+  }
+
+  private static int presenceWordCount(int primitiveParameterCount) {
+    return (primitiveParameterCount + Long.SIZE - 1) / Long.SIZE;
+  }
+
+  private static String presenceFieldName(int word) {
+    return word == 0 ? "presentParameters" : "presentParameters" + word;
+  }
+
+  private static long presenceMask(int bit) {
+    return 1L << (bit % Long.SIZE);
+  }
+
+  private static String presenceLiteral(long bits) {
+    return "0x" + Long.toHexString(bits) + "L";
+  }
+
+  private static boolean hasDefault(ParameterDefinition parameter) {
+    switch (parameter.getType()) {
+      case BOOLEAN:
+        return ((BooleanParameterDefinition) parameter).getDefault() != null;
+      case FLOAT:
+        return ((FloatParameterDefinition) parameter).getDefault() != null;
+      case INT:
+        return ((IntParameterDefinition) parameter).getDefault() != null;
+      default:
+        throw new AssertionError(parameter.getType());
+    }
+  }
+
   protected Optional<FieldSpec> generatePreparation(ParameterDefinition parameter) {
     FieldSpec result;
     switch (parameter.getType()) {
@@ -220,6 +1047,16 @@ public class CodeGenerator {
         StringParameterDefinition stringParameter = (StringParameterDefinition) parameter;
         switch (stringParameter.getDomain().getType()) {
           case ENUMERATION:
+            if (isEnumParameter(stringParameter)) {
+              // The nested enum is the domain
+              result = null;
+              break;
+            }
+            if (isEnumerationTableParameter(stringParameter)) {
+              // The enumeration table holder is the domain
+              result = null;
+              break;
+            }
             EnumerationStringDomain enumerationDomain =
                 (EnumerationStringDomain) stringParameter.getDomain();
             result = FieldSpec
@@ -238,6 +1075,11 @@ public class CodeGenerator {
                 .build();
             break;
           case PATTERN:
+            if (isMatcherParameter(stringParameter)) {
+              // The generated matcher or the pattern holder is the domain
+              result = null;
+              break;
+            }
             PatternStringDomain patternDomain = (PatternStringDomain) stringParameter.getDomain();
             result = FieldSpec
                 .builder(Pattern.class,
@@ -257,20 +1099,685 @@ public class CodeGenerator {
     return Optional.ofNullable(result);
   }
 
-
-  protected MethodSpec generateValidateMethod(ToolManifest manifest) {
-    MethodSpec.Builder methodBuilder =
-        MethodSpec.methodBuilder("validate").addModifiers(Modifier.PUBLIC).returns(getClassName());
-    for (ParameterDefinition parameter : manifest.getParameters()) {
-      methodBuilder.addCode(generateValidationBlock(parameter));
-    }
-    return methodBuilder.addStatement("return this").build();
-  }
-
-  protected CodeBlock generateValidationBlock(ParameterDefinition parameter) {
+  /**
+   * Generates the initialization-on-demand holder for the prepared constants of the given
+   * parameter in lazy constants mode, if it has any. The JVM initializes each holder the first
+   * time a value is validated against it, so parameters that are never set cost nothing, and the
+   * static initializer of every class stays small no matter how large the manifest is.
+   */
+  protected Optional<TypeSpec> generatePreparationHolder(ParameterDefinition parameter) {
+    TypeSpec result;
+    switch (parameter.getType()) {
+      case BOOLEAN:
+      case FLOAT:
+      case INT:
+        // No preparation required.
+        result = null;
+        break;
+      case DATE:
+        if (getOptions().isClock()) {
+          // The date bounds type holds the bounds
+          result = null;
+          break;
+        }
+        DateParameterDefinition dateParameter = (DateParameterDefinition) parameter;
+        result = TypeSpec.classBuilder(preparationHolderName(dateParameter, "Bounds"))
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addField(FieldSpec
+                .builder(LocalDate.class, "MINIMUM", Modifier.PRIVATE, Modifier.STATIC,
+                    Modifier.FINAL)
+                .initializer(generateDateExpr(dateParameter.getMinimum())).build())
+            .addField(FieldSpec
+                .builder(LocalDate.class, "MAXIMUM", Modifier.PRIVATE, Modifier.STATIC,
+                    Modifier.FINAL)
+                .initializer(generateDateExpr(dateParameter.getMaximum())).build())
+            .build();
+        break;
+      case STRING:
+        StringParameterDefinition stringParameter = (StringParameterDefinition) parameter;
+        switch (stringParameter.getDomain().getType()) {
+          case ENUMERATION:
+            if (isEnumParameter(stringParameter)) {
+              // The nested enum is the domain
+              result = null;
+              break;
+            }
+            if (isEnumerationTableParameter(stringParameter)) {
+              // The enumeration table holder is the domain
+              result = null;
+              break;
+            }
+            FieldSpec enumerationField = generatePreparation(stringParameter).get();
+            result = TypeSpec.classBuilder(preparationHolderName(stringParameter, "Enumeration"))
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addField(FieldSpec
+                    .builder(enumerationField.type, "ENUMERATION", Modifier.PRIVATE,
+                        Modifier.STATIC, Modifier.FINAL)
+                    .initializer(enumerationField.initializer)
+                    .addAnnotations(enumerationField.annotations).build())
+                .build();
+            break;
+          case PATTERN:
+            if (isMatcherParameter(stringParameter)) {
+              // The generated matcher or the pattern holder is the domain
+              result = null;
+              break;
+            }
+            result = generatePatternHolder(stringParameter);
+            break;
+          default:
+            throw new AssertionError(stringParameter.getDomain().getType());
+        }
+        break;
+      default:
+        throw new AssertionError(parameter.getType());
+    }
+    return Optional.ofNullable(result);
+  }
+
+  /**
+   * Returns true if the given parameter's enumeration domain is large enough to be stored in a
+   * binary hash table resource instead of a set
+   */
+  protected boolean isEnumerationTableParameter(ParameterDefinition parameter) {
+    return getOptions().getEnumerationTableThreshold() > 0
+        && parameter.getType() == ParameterType.STRING
+        && ((StringParameterDefinition) parameter).getDomain()
+            .getType() == StringDomainType.ENUMERATION
+        && ((EnumerationStringDomain) ((StringParameterDefinition) parameter).getDomain())
+            .getValues().size() > getOptions().getEnumerationTableThreshold();
+  }
+
+  /**
+   * Generates the resources that the generated class loads at runtime, by path relative to the
+   * classpath root. These are the enumeration tables of large enumeration domains.
+   */
+  public Map<String, byte[]> generateResources(ToolManifest manifest) {
+    String packagePath = getClassName().packageName().isEmpty() ? ""
+        : getClassName().packageName().replace('.', '/') + "/";
+    Map<String, byte[]> result = new LinkedHashMap<>();
+    for (ParameterDefinition parameter : manifest.getParameters()) {
+      if (!isEnumerationTableParameter(parameter))
+        continue;
+      StringParameterDefinition stringParameter = (StringParameterDefinition) parameter;
+      result.put(packagePath + enumerationTableResourceName(stringParameter),
+          generateEnumerationTable((EnumerationStringDomain) stringParameter.getDomain()));
+    }
+    return result;
+  }
+
+  /**
+   * Encodes the values of the given domain as an enumeration table, an open addressing hash table
+   * of the distinct values in sorted order. All numbers are big-endian ints: the number of values
+   * {@code n}, the number of slots {@code m}, which is a power of two at least twice {@code n},
+   * the {@code m} slots, which hold one plus the index of a value or zero if empty, and the
+   * {@code n + 1} offsets of the values into the data. Then the data is the UTF-16 chars of the
+   * values, so the generated lookup can compare a candidate string without encoding it, and it can
+   * use the cached {@link String#hashCode()}.
+   */
+  public static byte[] generateEnumerationTable(EnumerationStringDomain domain) {
+    List<String> values = enumerationTableValues(domain);
+    int slotCount = Integer.highestOneBit(Math.max(1, values.size()) * 2 - 1) << 1;
+    int[] slots = new int[slotCount];
+    for (int i = 0; i < values.size(); i++) {
+      int slot = enumerationTableHash(values.get(i)) & (slotCount - 1);
+      while (slots[slot] != 0)
+        slot = (slot + 1) & (slotCount - 1);
+      slots[slot] = i + 1;
+    }
+
+    int dataLength = values.stream().mapToInt(String::length).sum();
+    ByteBuffer result = ByteBuffer.allocate(
+        Integer.BYTES * (2 + slotCount + values.size() + 1) + Character.BYTES * dataLength);
+    result.putInt(values.size());
+    result.putInt(slotCount);
+    for (int slot : slots)
+      result.putInt(slot);
+    int offset = 0;
+    for (String value : values) {
+      result.putInt(offset);
+      offset = offset + value.length();
+    }
+    result.putInt(offset);
+    for (String value : values)
+      for (int i = 0; i < value.length(); i++)
+        result.putChar(value.charAt(i));
+    return result.array();
+  }
+
+  private static List<String> enumerationTableValues(EnumerationStringDomain domain) {
+    return domain.getValues().stream().distinct().sorted().collect(toList());
+  }
+
+  /**
+   * Spreads the high bits of the string hash into the low bits, which select the slot, the same
+   * way the generated lookup does
+   */
+  private static int enumerationTableHash(String value) {
+    int h = value.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private String enumerationTableResourceName(StringParameterDefinition parameter) {
+    return getClassName().simpleName() + "-" + parameterNameToLowerCamel(parameter.getName())
+        + ".values";
+  }
+
+  /**
+   * Generates the holder that loads the enumeration table of a large enumeration parameter the
+   * first time a value is validated against it
+   */
+  protected TypeSpec generateEnumerationTableHolder(StringParameterDefinition parameter) {
+    ClassName tableName = getClassName().nestedClass(ENUMERATION_TABLE);
+    return TypeSpec.classBuilder(preparationHolderName(parameter, "Enumeration"))
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+        .addField(FieldSpec
+            .builder(tableName, "TABLE", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .initializer("$T.load($S)", tableName, enumerationTableResourceName(parameter))
+            .build())
+        .build();
+  }
+
+  /**
+   * Generates the nested class that loads an enumeration table from a resource next to the
+   * generated class and looks values up in it. The table is copied into arrays when it is loaded,
+   * since array reads are several times faster than buffer reads in the lookup loop.
+   */
+  protected TypeSpec generateEnumerationTableType() {
+    ClassName tableName = getClassName().nestedClass(ENUMERATION_TABLE);
+
+    MethodSpec load = MethodSpec.methodBuilder("load")
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(tableName)
+        .addParameter(String.class, "name")
+        .addStatement("byte[] bytes")
+        .beginControlFlow("try ($T in = $T.class.getResourceAsStream(name))", InputStream.class,
+            getClassName())
+        .beginControlFlow("if(in == null)")
+        .addStatement("throw new $T($S + name)", IllegalStateException.class,
+            "Missing enumeration table ")
+        .endControlFlow()
+        .addStatement("$T out = new $T()", ByteArrayOutputStream.class,
+            ByteArrayOutputStream.class)
+        .addStatement("byte[] buffer = new byte[8192]")
+        .beginControlFlow("for(int n = in.read(buffer);n != -1;n = in.read(buffer))")
+        .addStatement("out.write(buffer, 0, n)")
+        .endControlFlow()
+        .addStatement("bytes = out.toByteArray()")
+        .nextControlFlow("catch($T e)", IOException.class)
+        .addStatement("throw new $T(e)", UncheckedIOException.class)
+        .endControlFlow()
+        .addStatement("$T header = $T.wrap(bytes)", ByteBuffer.class, ByteBuffer.class)
+        .addStatement("int[] index = new int[header.getInt(4) + header.getInt(0) + 3]")
+        .addStatement("header.asIntBuffer().get(index)")
+        .addStatement("int dataStart = 4 * index.length")
+        .addStatement("char[] data = new char[(bytes.length - dataStart) / 2]")
+        .addStatement(
+            "$T.wrap(bytes, dataStart, bytes.length - dataStart).asCharBuffer().get(data)",
+            ByteBuffer.class)
+        .addStatement("return new $T(index, data)", tableName)
+        .build();
+
+    MethodSpec contains = MethodSpec.methodBuilder("contains").returns(boolean.class)
+        .addParameter(String.class, "value")
+        .addStatement("int mask = index[1] - 1")
+        .addStatement("int offsets = mask + 3")
+        .addStatement("int h = value.hashCode()")
+        .beginControlFlow("for(int slot = (h ^ (h >>> 16)) & mask;;slot = (slot + 1) & mask)")
+        .addStatement("int entry = index[slot + 2]")
+        .beginControlFlow("if(entry == 0)")
+        .addStatement("return false")
+        .endControlFlow()
+        .addStatement("int start = index[offsets + entry - 1]")
+        .addStatement("int length = index[offsets + entry] - start")
+        .beginControlFlow("if(length == value.length())")
+        .addStatement("int i = 0")
+        .beginControlFlow("while(i < length && data[start + i] == value.charAt(i))")
+        .addStatement("i = i + 1")
+        .endControlFlow()
+        .beginControlFlow("if(i == length)")
+        .addStatement("return true")
+        .endControlFlow()
+        .endControlFlow()
+        .endControlFlow()
+        .build();
+
+    return TypeSpec.classBuilder(tableName)
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+        .addField(int[].class, "index", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(char[].class, "data", Modifier.PRIVATE, Modifier.FINAL)
+        .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE)
+            .addParameter(int[].class, "index").addParameter(char[].class, "data")
+            .addStatement("this.index = index").addStatement("this.data = data").build())
+        .addMethod(load).addMethod(contains).build();
+  }
+
+  /**
+   * Generates the initialization-on-demand holder for today's date in lazy constants mode
+   */
+  protected TypeSpec generateTodayHolder() {
+    return TypeSpec.classBuilder(TODAY_HOLDER)
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+        .addField(FieldSpec
+            .builder(LocalDate.class, "TODAY", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .initializer(TODAY).build())
+        .build();
+  }
+
+  private String preparationHolderName(ParameterDefinition parameter, String kind) {
+    return parameterNameToUpperCamel(parameter.getName()) + kind + "Holder";
+  }
+
+  /**
+   * Generates the validate method. Parameters are checked cheapest first, as ranked by
+   * {@link #estimateValidationCost(ParameterDefinition)}, so that an invalid configuration usually
+   * fails before any lookup or pattern match. If the validation blocks of all parameters would not
+   * fit into one method under {@link #VALIDATE_METHOD_BYTECODE_LIMIT}, then they are split into
+   * private helper methods {@code validate0}, {@code validate1}, and so on, which validate calls in
+   * order. The first method in the returned list is always validate itself.
+   *
+   * <p>
+   * In validation result mode the checks go into {@code validateInto} and its helpers
+   * {@code validateInto0}, {@code validateInto1}, and so on instead, and validate is a wrapper
+   * that throws the first violation.
+   */
+  protected List<MethodSpec> generateValidateMethods(ToolManifest manifest) {
+    List<ParameterDefinition> parameters = new ArrayList<>(manifest.getParameters());
+    parameters.sort(Comparator.comparingInt(this::estimateValidationCost));
+
+    List<List<CodeBlock>> chunks = new ArrayList<>();
+    List<CodeBlock> chunk = new ArrayList<>();
+    int chunkSize = 0;
+    for (ParameterDefinition parameter : parameters) {
+      int size = estimateValidationBytecodeSize(parameter);
+      if (!chunk.isEmpty() && chunkSize + size > VALIDATE_METHOD_BYTECODE_LIMIT) {
+        chunks.add(chunk);
+        chunk = new ArrayList<>();
+        chunkSize = 0;
+      }
+      chunk.add(generateValidationBlock(parameter));
+      chunkSize = chunkSize + size;
+    }
+    chunks.add(chunk);
+
+    if (getOptions().isValidationResult())
+      return generateValidateIntoMethods(chunks);
+
+    MethodSpec.Builder methodBuilder =
+        MethodSpec.methodBuilder("validate").addModifiers(Modifier.PUBLIC).returns(getClassName());
+    List<MethodSpec> helpers = new ArrayList<>();
+    if (chunks.size() == 1) {
+      for (CodeBlock block : chunks.get(0))
+        methodBuilder.addCode(block);
+    } else {
+      for (int i = 0; i < chunks.size(); i++) {
+        methodBuilder.addStatement("validate$L()", i);
+        MethodSpec.Builder helperBuilder =
+            MethodSpec.methodBuilder("validate" + i).addModifiers(Modifier.PRIVATE);
+        for (CodeBlock block : chunks.get(i))
+          helperBuilder.addCode(block);
+        helpers.add(helperBuilder.build());
+      }
+    }
+
+    List<MethodSpec> result = new ArrayList<>();
+    result.add(methodBuilder.addStatement("return this").build());
+    result.addAll(helpers);
+
+    return result;
+  }
+
+  /**
+   * Generates validate, validateInto, and the validateInto helpers of validation result mode from
+   * the given chunks of validation blocks. The checks record violations instead of throwing, so
+   * validating a valid configuration neither throws nor allocates.
+   */
+  private List<MethodSpec> generateValidateIntoMethods(List<List<CodeBlock>> chunks) {
+    ClassName resultName = getClassName().nestedClass(VALIDATION_RESULT);
+
+    MethodSpec validate =
+        MethodSpec.methodBuilder("validate").addModifiers(Modifier.PUBLIC).returns(getClassName())
+            .addStatement("$T result = new $T(1)", resultName, resultName)
+            .beginControlFlow("if(!validateInto(result))")
+            .addStatement("throw new $T(result.getViolations().get(0))",
+                IllegalArgumentException.class)
+            .endControlFlow().addStatement("return this").build();
+
+    MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("validateInto")
+        .addJavadoc("Adds the violations of this configuration to the given result, stopping "
+            + "early\nif the result is full.\n\n"
+            + "@return true if this configuration is valid, or false otherwise\n")
+        .addModifiers(Modifier.PUBLIC).returns(boolean.class)
+        .addParameter(resultName, "validationResult")
+        .addStatement("int previousViolationCount = validationResult.getViolationCount()");
+    List<MethodSpec> helpers = new ArrayList<>();
+    if (chunks.size() == 1) {
+      for (CodeBlock block : chunks.get(0))
+        methodBuilder.addCode(block);
+    } else {
+      for (int i = 0; i < chunks.size(); i++) {
+        methodBuilder.beginControlFlow("if(!validateInto$L(validationResult))", i)
+            .addStatement("return false").endControlFlow();
+        MethodSpec.Builder helperBuilder = MethodSpec.methodBuilder("validateInto" + i)
+            .addModifiers(Modifier.PRIVATE).returns(boolean.class)
+            .addParameter(resultName, "validationResult");
+        for (CodeBlock block : chunks.get(i))
+          helperBuilder.addCode(block);
+        helpers.add(helperBuilder.addStatement("return true").build());
+      }
+    }
+
+    List<MethodSpec> result = new ArrayList<>();
+    result.add(validate);
+    result.add(methodBuilder
+        .addStatement("return validationResult.getViolationCount() == previousViolationCount")
+        .build());
+    result.addAll(helpers);
+
+    return result;
+  }
+
+  /**
+   * Generates the statement that reports a violation with the given message, which throws by
+   * default and records the violation in validation result mode
+   */
+  private CodeBlock generateViolation(CodeBlock message) {
+    if (getOptions().isValidationResult())
+      return CodeBlock.builder().beginControlFlow("if(!validationResult.addViolation($L))", message)
+          .addStatement("return false").endControlFlow().build();
+    return CodeBlock.builder()
+        .addStatement("throw new $T($L)", IllegalArgumentException.class, message).build();
+  }
+
+  /**
+   * Generates the nested class that collects violations in validation result mode. It only
+   * allocates its list of violations when the first one is added, and it can be cleared and reused
+   * across many configurations.
+   */
+  protected TypeSpec generateValidationResultType() {
+    ClassName resultName = getClassName().nestedClass(VALIDATION_RESULT);
+    TypeName violationsType = ParameterizedTypeName.get(List.class, String.class);
+    return TypeSpec.classBuilder(resultName)
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .addField(int.class, "maxViolations", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(violationsType, "violations", Modifier.PRIVATE)
+        .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+            .addStatement("this($T.MAX_VALUE)", Integer.class).build())
+        .addMethod(MethodSpec.constructorBuilder()
+            .addJavadoc("@param maxViolations the number of violations after which validation "
+                + "stops\n")
+            .addModifiers(Modifier.PUBLIC).addParameter(int.class, "maxViolations")
+            .beginControlFlow("if(maxViolations < 1)")
+            .addStatement("throw new $T($S)", IllegalArgumentException.class,
+                "maxViolations must be positive")
+            .endControlFlow()
+            .addStatement("this.maxViolations = maxViolations").build())
+        .addMethod(MethodSpec.methodBuilder("isValid").addModifiers(Modifier.PUBLIC)
+            .returns(boolean.class).addStatement("return getViolationCount() == 0").build())
+        .addMethod(MethodSpec.methodBuilder("getViolationCount").addModifiers(Modifier.PUBLIC)
+            .returns(int.class)
+            .addStatement("return violations == null ? 0 : violations.size()").build())
+        .addMethod(MethodSpec.methodBuilder("getViolations").addModifiers(Modifier.PUBLIC)
+            .returns(violationsType)
+            .addStatement("return violations == null ? $T.emptyList() : "
+                + "$T.unmodifiableList(violations)", Collections.class, Collections.class)
+            .build())
+        .addMethod(MethodSpec.methodBuilder("clear").addModifiers(Modifier.PUBLIC)
+            .beginControlFlow("if(violations != null)").addStatement("violations.clear()")
+            .endControlFlow().build())
+        .addMethod(MethodSpec.methodBuilder("addViolation").addModifiers(Modifier.PRIVATE)
+            .returns(boolean.class).addParameter(String.class, "message")
+            .beginControlFlow("if(violations == null)")
+            .addStatement("violations = new $T<>()", ArrayList.class).endControlFlow()
+            .addStatement("violations.add(message)")
+            .addStatement("return violations.size() < maxViolations").build())
+        .build();
+  }
+
+  /**
+   * Ranks how expensive the validation of the given parameter is: nothing to check, then numeric
+   * comparisons, date comparisons, domain lookups, generated matchers, and finally regular
+   * expressions.
+   */
+  protected int estimateValidationCost(ParameterDefinition parameter) {
+    switch (parameter.getType()) {
+      case BOOLEAN:
+        return 0;
+      case FLOAT:
+      case INT:
+        return 1;
+      case DATE:
+        return 2;
+      case STRING:
+        StringParameterDefinition stringParameter = (StringParameterDefinition) parameter;
+        switch (stringParameter.getDomain().getType()) {
+          case ENUMERATION:
+            return isEnumParameter(stringParameter) ? 0 : 3;
+          case PATTERN:
+            return isMatcherParameter(stringParameter)
+                && analyzePattern(stringParameter).isPresent() ? 4 : 5;
+          default:
+            throw new AssertionError(stringParameter.getDomain().getType());
+        }
+      default:
+        throw new AssertionError(parameter.getType());
+    }
+  }
+
+  /**
+   * Generates the fingerprint methods. {@code fingerprint()} hashes the name and value of every
+   * parameter in manifest order, and {@code fingerprintWithInputs()} also hashes a digest of the
+   * content of every input, which it streams. Both return the first 128 bits of a SHA-256 hash as
+   * 32 lowercase hex digits.
+   *
+   * <p>
+   * The encoding is part of the contract of the generated code, since tools key persistent caches
+   * on fingerprints, so it must never change: each name and string value is a presence byte, a
+   * big-endian int length, and its UTF-8 bytes, and each number, boolean, and date is a presence
+   * byte and a big-endian long of its value, its {@link Double#doubleToLongBits(double) bits}, 0 or
+   * 1, or its epoch day, respectively. An absent value is a single zero presence byte.
+   */
+  protected List<MethodSpec> generateFingerprintMethods(ToolManifest manifest) {
+    List<MethodSpec> result = new ArrayList<>();
+
+    result.add(MethodSpec.methodBuilder("fingerprint")
+        .addJavadoc("@return a stable 128-bit fingerprint of the parameter values as hex\n")
+        .addModifiers(Modifier.PUBLIC).returns(String.class)
+        .addStatement("$T fingerprintDigest = newFingerprintDigest()", MessageDigest.class)
+        .addStatement("fingerprintParameters(fingerprintDigest)")
+        .addStatement("return fingerprintHex(fingerprintDigest)").build());
+
+    MethodSpec.Builder withInputsBuilder = MethodSpec.methodBuilder("fingerprintWithInputs")
+        .addJavadoc("@return a stable 128-bit fingerprint of the parameter values and the content "
+            + "of the\n  inputs as hex\n")
+        .addModifiers(Modifier.PUBLIC).returns(String.class).addException(IOException.class)
+        .addStatement("$T fingerprintDigest = newFingerprintDigest()", MessageDigest.class)
+        .addStatement("fingerprintParameters(fingerprintDigest)");
+    for (Slot input : manifest.getInputs())
+      withInputsBuilder.addStatement("fingerprintString(fingerprintDigest, $S)", input.getName())
+          .addStatement("fingerprintInput(fingerprintDigest, $L)",
+              parameterNameToLowerCamel(input.getName()));
+    result.add(withInputsBuilder.addStatement("return fingerprintHex(fingerprintDigest)").build());
+
+    List<ParameterDefinition> parameters = manifest.getParameters();
+    MethodSpec.Builder parametersBuilder = MethodSpec.methodBuilder("fingerprintParameters")
+        .addModifiers(Modifier.PRIVATE).addParameter(MessageDigest.class, "fingerprintDigest");
+    List<MethodSpec> helpers = new ArrayList<>();
+    if (parameters.size() <= FINGERPRINT_CHUNK_SIZE) {
+      for (ParameterDefinition parameter : parameters)
+        parametersBuilder.addCode(generateFingerprintBlock(parameter));
+    } else {
+      for (int i = 0; i * FINGERPRINT_CHUNK_SIZE < parameters.size(); i++) {
+        parametersBuilder.addStatement("fingerprintParameters$L(fingerprintDigest)", i);
+        MethodSpec.Builder helperBuilder = MethodSpec.methodBuilder("fingerprintParameters" + i)
+            .addModifiers(Modifier.PRIVATE).addParameter(MessageDigest.class, "fingerprintDigest");
+        for (ParameterDefinition parameter : parameters.subList(i * FINGERPRINT_CHUNK_SIZE,
+            Math.min(parameters.size(), (i + 1) * FINGERPRINT_CHUNK_SIZE)))
+          helperBuilder.addCode(generateFingerprintBlock(parameter));
+        helpers.add(helperBuilder.build());
+      }
+    }
+    result.add(parametersBuilder.build());
+    result.addAll(helpers);
+
+    result.add(MethodSpec.methodBuilder("fingerprintInput")
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+        .addParameter(MessageDigest.class, "digest").addParameter(InputSource.class, "input")
+        .addException(IOException.class)
+        .beginControlFlow("if(input == null)")
+        .addStatement("digest.update((byte) 0)")
+        .addStatement("return")
+        .endControlFlow()
+        .addStatement("$T content = newFingerprintDigest()", MessageDigest.class)
+        .beginControlFlow("try ($T in = input.getInputStream())", InputStream.class)
+        .addStatement("byte[] buffer = new byte[8192]")
+        .beginControlFlow("for(int n = in.read(buffer);n != -1;n = in.read(buffer))")
+        .addStatement("content.update(buffer, 0, n)")
+        .endControlFlow()
+        .endControlFlow()
+        .addStatement("digest.update((byte) 1)")
+        .addStatement("digest.update(content.digest())").build());
+
+    result.add(MethodSpec.methodBuilder("fingerprintString")
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+        .addParameter(MessageDigest.class, "digest").addParameter(String.class, "value")
+        .beginControlFlow("if(value == null)")
+        .addStatement("digest.update((byte) 0)")
+        .addStatement("return")
+        .endControlFlow()
+        .addStatement("byte[] bytes = value.getBytes($T.UTF_8)", StandardCharsets.class)
+        .addStatement("digest.update((byte) 1)")
+        .beginControlFlow("for(int shift = 24;shift >= 0;shift = shift - 8)")
+        .addStatement("digest.update((byte) (bytes.length >>> shift))")
+        .endControlFlow()
+        .addStatement("digest.update(bytes)").build());
+
+    result.add(MethodSpec.methodBuilder("fingerprintLong")
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+        .addParameter(MessageDigest.class, "digest").addParameter(boolean.class, "present")
+        .addParameter(long.class, "value")
+        .beginControlFlow("if(!present)")
+        .addStatement("digest.update((byte) 0)")
+        .addStatement("return")
+        .endControlFlow()
+        .addStatement("digest.update((byte) 1)")
+        .beginControlFlow("for(int shift = 56;shift >= 0;shift = shift - 8)")
+        .addStatement("digest.update((byte) (value >>> shift))")
+        .endControlFlow().build());
+
+    result.add(MethodSpec.methodBuilder("newFingerprintDigest")
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(MessageDigest.class)
+        .beginControlFlow("try")
+        .addStatement("return $T.getInstance($S)", MessageDigest.class, "SHA-256")
+        .nextControlFlow("catch($T e)", NoSuchAlgorithmException.class)
+        .addStatement("throw new $T($S, e)", IllegalStateException.class,
+            "SHA-256 is not available")
+        .endControlFlow().build());
+
+    result.add(MethodSpec.methodBuilder("fingerprintHex")
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(String.class)
+        .addParameter(MessageDigest.class, "digest")
+        .addStatement("byte[] hash = digest.digest()")
+        .addStatement("char[] result = new char[32]")
+        .beginControlFlow("for(int i = 0;i < 16;i++)")
+        .addStatement("result[2 * i] = $T.forDigit((hash[i] >>> 4) & 0xF, 16)", Character.class)
+        .addStatement("result[2 * i + 1] = $T.forDigit(hash[i] & 0xF, 16)", Character.class)
+        .endControlFlow()
+        .addStatement("return new $T(result)", String.class).build());
+
+    return result;
+  }
+
+  /**
+   * Generates the statements that hash the name and value of the given parameter
+   */
+  protected CodeBlock generateFingerprintBlock(ParameterDefinition parameter) {
+    String fieldName = parameterNameToLowerCamel(parameter.getName());
+    CodeBlock.Builder result = CodeBlock.builder()
+        .addStatement("fingerprintString(fingerprintDigest, $S)", parameter.getName());
+
+    if (parameter.getType() == ParameterType.STRING) {
+      if (isEnumParameter(parameter))
+        return result.addStatement("fingerprintString(fingerprintDigest, $1L != null "
+            + "? $1L.getValue() : null)", fieldName).build();
+      return result.addStatement("fingerprintString(fingerprintDigest, $L)", fieldName).build();
+    }
+
+    CodeBlock present;
+    CodeBlock value;
+    if (isPrimitiveParameter(parameter)) {
+      present = CodeBlock.of("has$L()", parameterNameToUpperCamel(parameter.getName()));
+      value = CodeBlock.of("$L", fieldName);
+    } else {
+      present = CodeBlock.of("$L != null", fieldName);
+      value = CodeBlock.of("$L", fieldName);
+    }
+    switch (parameter.getType()) {
+      case BOOLEAN:
+        value = CodeBlock.of("($L ? 1L : 0L)", value);
+        break;
+      case DATE:
+        value = CodeBlock.of("$L.toEpochDay()", value);
+        break;
+      case FLOAT:
+        value = CodeBlock.of("$T.doubleToLongBits($L)", Double.class, value);
+        break;
+      case INT:
+        break;
+      default:
+        throw new AssertionError(parameter.getType());
+    }
+    if (!isPrimitiveParameter(parameter))
+      value = CodeBlock.of("$L ? $L : 0L", present, value);
+    return result.addStatement("fingerprintLong(fingerprintDigest, $L, $L)", present, value)
+        .build();
+  }
+
+  /**
+   * Returns a conservative estimate of the bytecode size of the given parameter's validation
+   * block. Each bound check loads the field, compares it, and throws an exception with a constant
+   * or concatenated message, which javac compiles to well under 64 bytes.
+   */
+  protected int estimateValidationBytecodeSize(ParameterDefinition parameter) {
+    int checks;
+    switch (parameter.getType()) {
+      case BOOLEAN:
+        checks = 0;
+        break;
+      case DATE:
+      case FLOAT:
+      case INT:
+        checks = 2;
+        break;
+      case STRING:
+        checks = isEnumParameter(parameter) ? 0 : 1;
+        break;
+      default:
+        throw new AssertionError(parameter.getType());
+    }
+    if (parameter.getRequired() && getOptions().isValidationResult()
+        && !isPrimitiveParameter(parameter))
+      checks = checks + 1;
+    int guard = parameter.getRequired() ? 0 : 16;
+    return checks == 0 ? 0 : guard + 64 * checks;
+  }
+
+  protected CodeBlock generateValidationBlock(ParameterDefinition parameter) {
     CodeBlock result;
-    if (parameter.getRequired()) {
+    if (parameter.getRequired() && getOptions().isValidationResult()
+        && !isPrimitiveParameter(parameter)) {
+      // Report a missing value as a violation instead of a NullPointerException
+      result = CodeBlock.builder()
+          .beginControlFlow("if($L == null)", parameterNameToLowerCamel(parameter.getName()))
+          .add(generateViolation(
+              CodeBlock.of("$S", String.format("%s is required", parameter.getName()))))
+          .nextControlFlow("else").add(generateValidationLogic(parameter)).endControlFlow()
+          .build();
+    } else if (parameter.getRequired()) {
       result = generateValidationLogic(parameter);
+    } else if (isPrimitiveParameter(parameter)) {
+      result = CodeBlock.builder()
+          .beginControlFlow("if(has$L())", parameterNameToUpperCamel(parameter.getName()))
+          .add(generateValidationLogic(parameter)).endControlFlow().build();
     } else {
       result = CodeBlock.builder()
           .beginControlFlow("if($L != null)", parameterNameToLowerCamel(parameter.getName()))
@@ -290,16 +1797,16 @@ public class CodeGenerator {
         DateParameterDefinition dateParameter = (DateParameterDefinition) parameter;
         result = result
             .beginControlFlow("if($L.isBefore($L))", parameterNameToLowerCamel(parameter.getName()),
-                generateDateExpr(dateParameter.getMinimum()))
-            .addStatement(CodeBlock.of("throw new $T($S + $L)", IllegalArgumentException.class,
+                dateBoundReference(dateParameter, MINIMUM))
+            .add(generateViolation(CodeBlock.of("$S + $L",
                 String.format("%s must be greater than or equal to ", dateParameter.getName()),
-                generateDateExpr(dateParameter.getMinimum())))
+                dateBoundReference(dateParameter, MINIMUM))))
             .endControlFlow()
             .beginControlFlow("if($L.isAfter($L))", parameterNameToLowerCamel(parameter.getName()),
-                generateDateExpr(dateParameter.getMaximum()))
-            .addStatement(CodeBlock.of("throw new $T($S + $L)", IllegalArgumentException.class,
+                dateBoundReference(dateParameter, MAXIMUM))
+            .add(generateViolation(CodeBlock.of("$S + $L",
                 String.format("%s must be less than or equal to ", dateParameter.getName()),
-                generateDateExpr(dateParameter.getMaximum())))
+                dateBoundReference(dateParameter, MAXIMUM))))
             .endControlFlow();
         break;
       case FLOAT:
@@ -308,16 +1815,15 @@ public class CodeGenerator {
             result
                 .beginControlFlow("if($L < $L)", parameterNameToLowerCamel(parameter.getName()),
                     floatParameter.getMinimum())
-                .addStatement(CodeBlock.of("throw new $T($S)", IllegalArgumentException.class,
+                .add(generateViolation(CodeBlock.of("$S",
                     String.format("%s must be greater than or equal to %f",
-                        floatParameter.getName(), floatParameter.getMinimum())))
+                        floatParameter.getName(), floatParameter.getMinimum()))))
                 .endControlFlow()
                 .beginControlFlow("if($L > $L)", parameterNameToLowerCamel(parameter.getName()),
                     floatParameter.getMaximum())
-                .addStatement(
-                    CodeBlock.of("throw new $T($S)", IllegalArgumentException.class,
+                .add(generateViolation(CodeBlock.of("$S",
                         String.format("%s must be less than or equal to %f",
-                            floatParameter.getName(), floatParameter.getMaximum())))
+                            floatParameter.getName(), floatParameter.getMaximum()))))
                 .endControlFlow();
         break;
       case INT:
@@ -325,42 +1831,75 @@ public class CodeGenerator {
         result = result
             .beginControlFlow("if($L < $L)", parameterNameToLowerCamel(parameter.getName()),
                 intParameter.getMinimum())
-            .addStatement(CodeBlock.of("throw new $T($S)", IllegalArgumentException.class,
+            .add(generateViolation(CodeBlock.of("$S",
                 String.format("%s must be greater than or equal to %d", intParameter.getName(),
-                    intParameter.getMinimum())))
+                    intParameter.getMinimum()))))
             .endControlFlow()
             .beginControlFlow("if($L > $L)", parameterNameToLowerCamel(parameter.getName()),
                 intParameter.getMaximum())
-            .addStatement(CodeBlock.of("throw new $T($S)", IllegalArgumentException.class,
+            .add(generateViolation(CodeBlock.of("$S",
                 String.format("%s must be less than or equal to %d", intParameter.getName(),
-                    intParameter.getMaximum())))
+                    intParameter.getMaximum()))))
             .endControlFlow();
         break;
       case STRING:
         StringParameterDefinition stringParameter = (StringParameterDefinition) parameter;
         switch (stringParameter.getDomain().getType()) {
           case ENUMERATION:
+            if (isEnumParameter(stringParameter)) {
+              result.add("// No validation to do for $L, the enum setter checks the value\n",
+                  stringParameter.getName());
+              break;
+            }
             EnumerationStringDomain enumerationDomain =
                 (EnumerationStringDomain) stringParameter.getDomain();
+            if (isEnumerationTableParameter(stringParameter)) {
+              result = result
+                  .beginControlFlow("if(!$L.TABLE.contains($L))",
+                      preparationHolderName(stringParameter, "Enumeration"),
+                      parameterNameToLowerCamel(stringParameter.getName()))
+                  .add(generateViolation(CodeBlock.of("$S",
+                      String.format("%s must be one of the %d values in %s",
+                          stringParameter.getName(),
+                          enumerationTableValues(enumerationDomain).size(),
+                          enumerationTableResourceName(stringParameter)))))
+                  .endControlFlow();
+              break;
+            }
             result = result
                 .beginControlFlow("if(!$L.contains($L))",
-                    parameterNameToUpperUnderscore(stringParameter.getName()) + "_ENUMERATION",
+                    getOptions().isLazyConstants()
+                        ? preparationHolderName(stringParameter, "Enumeration") + ".ENUMERATION"
+                        : parameterNameToUpperUnderscore(stringParameter.getName())
+                            + "_ENUMERATION",
                     parameterNameToLowerCamel(stringParameter.getName()))
-                .addStatement("throw new $T($S)", IllegalArgumentException.class,
+                .add(generateViolation(CodeBlock.of("$S",
                     String.format("%s must be one of: %s", stringParameter.getName(),
-                        enumerationDomain.getValues().stream().collect(joining(", "))))
+                        enumerationDomain.getValues().stream().collect(joining(", "))))))
                 .endControlFlow();
             break;
           case PATTERN:
             PatternStringDomain patternDomain = (PatternStringDomain) stringParameter.getDomain();
+            CodeBlock matches;
+            if (!isMatcherParameter(stringParameter) && !getOptions().isLazyConstants())
+              matches = CodeBlock.of("$L.matcher($L).matches()",
+                  parameterNameToUpperUnderscore(stringParameter.getName()) + "_PATTERN",
+                  parameterNameToLowerCamel(stringParameter.getName()));
+            else if (isMatcherParameter(stringParameter)
+                && analyzePattern(stringParameter).isPresent())
+              matches = CodeBlock.of("matches$L($L)",
+                  parameterNameToUpperCamel(stringParameter.getName()),
+                  parameterNameToLowerCamel(stringParameter.getName()));
+            else
+              matches = CodeBlock.of("$L.PATTERN.matcher($L).matches()",
+                  patternHolderName(stringParameter),
+                  parameterNameToLowerCamel(stringParameter.getName()));
             result =
                 result
-                    .beginControlFlow("if(!$L.matcher($L).matches())",
-                        parameterNameToUpperUnderscore(stringParameter.getName()) + "_PATTERN",
-                        parameterNameToLowerCamel(stringParameter.getName()))
-                    .addStatement("throw new $T($S)", IllegalArgumentException.class,
+                    .beginControlFlow("if(!$L)", matches)
+                    .add(generateViolation(CodeBlock.of("$S",
                         String.format("%s must match the pattern `%s'", stringParameter.getName(),
-                            patternDomain.getPattern()))
+                            patternDomain.getPattern()))))
                     .endControlFlow();
             break;
           default:
@@ -373,17 +1912,1219 @@ public class CodeGenerator {
     return result.build();
   }
 
+  /**
+   * Returns the nested class that holds the CPU and memory budget of the container size, and the
+   * recommended pool sizes, as constants
+   */
+  protected TypeSpec generateRuntimeType(RuntimeTuning tuning) {
+    return TypeSpec.classBuilder(RUNTIME)
+        .addJavadoc("The CPU and memory budget of the $L container size the tool runs in. Size "
+            + "thread pools\nfrom these values rather than from what the JVM detects.\n",
+            tuning.getSize())
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .addField(FieldSpec
+            .builder(String.class, "CONTAINER_SIZE", Modifier.PUBLIC, Modifier.STATIC,
+                Modifier.FINAL)
+            .initializer("$S", tuning.getSize().name()).build())
+        .addField(FieldSpec
+            .builder(TypeName.INT, "CPUS", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .initializer("$L", tuning.getCpus()).build())
+        .addField(FieldSpec
+            .builder(TypeName.LONG, "MEMORY_BYTES", Modifier.PUBLIC, Modifier.STATIC,
+                Modifier.FINAL)
+            .initializer("$LL", (long) tuning.getMemoryMegabytes() << 20).build())
+        .addField(FieldSpec
+            .builder(TypeName.LONG, "HEAP_BYTES", Modifier.PUBLIC, Modifier.STATIC,
+                Modifier.FINAL)
+            .initializer("$LL", (long) tuning.getHeapMegabytes() << 20).build())
+        .addField(FieldSpec
+            .builder(TypeName.INT, "COMPUTE_POOL_SIZE", Modifier.PUBLIC, Modifier.STATIC,
+                Modifier.FINAL)
+            .addJavadoc("The number of threads for CPU-bound work\n")
+            .initializer("$L", tuning.getComputePoolSize()).build())
+        .addField(FieldSpec
+            .builder(TypeName.INT, "IO_POOL_SIZE", Modifier.PUBLIC, Modifier.STATIC,
+                Modifier.FINAL)
+            .addJavadoc("The number of threads for blocking I/O\n")
+            .initializer("$L", tuning.getIoPoolSize()).build())
+        .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+        .build();
+  }
+
+  /**
+   * Returns the nested class that streams the rows of a delimited text input. Bytes are decoded
+   * in bulk into one char buffer, which only grows to fit the longest row, and each field is a
+   * {@link CharSequence} view into that buffer that is reused for every row, so reading a row
+   * allocates nothing. Fields follow RFC 4180 quoting, including quoted delimiters, line breaks
+   * and doubled quotes, and are read leniently otherwise.
+   */
+  protected TypeSpec generateCsvCursorType() {
+    ClassName cursorName = getClassName().nestedClass(CSV_CURSOR);
+    ClassName fieldName = cursorName.nestedClass("Field");
+
+    TypeSpec field = TypeSpec.classBuilder(fieldName)
+        .addJavadoc("A view of one field of the current row, valid until the next call to "
+            + "{@code next}\n")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .addSuperinterface(CharSequence.class)
+        .addField(char[].class, "chars", Modifier.PRIVATE)
+        .addField(int.class, "offset", Modifier.PRIVATE)
+        .addField(int.class, "length", Modifier.PRIVATE)
+        .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+        .addMethod(MethodSpec.methodBuilder("length").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).returns(int.class).addStatement("return length")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("charAt").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).returns(char.class).addParameter(int.class, "index")
+            .beginControlFlow("if(index < 0 || index >= length)")
+            .addStatement("throw new $T(index)", StringIndexOutOfBoundsException.class)
+            .endControlFlow()
+            .addStatement("return chars[offset + index]").build())
+        .addMethod(MethodSpec.methodBuilder("subSequence").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).returns(CharSequence.class)
+            .addParameter(int.class, "start").addParameter(int.class, "end")
+            .beginControlFlow("if(start < 0 || end > length || start > end)")
+            .addStatement("throw new $T(start)", StringIndexOutOfBoundsException.class)
+            .endControlFlow()
+            .addStatement("return new $T(chars, offset + start, end - start)", String.class)
+            .build())
+        .addMethod(MethodSpec.methodBuilder("contentEquals").addModifiers(Modifier.PUBLIC)
+            .returns(boolean.class).addParameter(CharSequence.class, "value")
+            .beginControlFlow("if(value.length() != length)")
+            .addStatement("return false")
+            .endControlFlow()
+            .beginControlFlow("for(int i = 0;i < length;i++)")
+            .beginControlFlow("if(chars[offset + i] != value.charAt(i))")
+            .addStatement("return false")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return true").build())
+        .addMethod(MethodSpec.methodBuilder("toString").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).returns(String.class)
+            .addStatement("return new $T(chars, offset, length)", String.class).build())
+        .build();
+
+    MethodSpec constructor = MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+        .addParameter(InputStream.class, "in").addParameter(char.class, "delimiter")
+        .addParameter(int.class, "bufferSize")
+        .beginControlFlow("if(bufferSize < 2)")
+        .addStatement("throw new $T($S + bufferSize)", IllegalArgumentException.class,
+            "bufferSize must be at least 2, but was ")
+        .endControlFlow()
+        .addStatement("this.channel = $T.newChannel(in)", Channels.class)
+        .addStatement("this.decoder = $T.UTF_8.newDecoder()", StandardCharsets.class)
+        .addStatement("this.decoder.onMalformedInput($T.REPLACE)", CodingErrorAction.class)
+        .addStatement("this.decoder.onUnmappableCharacter($T.REPLACE)", CodingErrorAction.class)
+        .addComment("Room for the longest UTF-8 sequence, so that decoding always makes progress")
+        .addStatement("this.bytes = $T.allocate($T.max(bufferSize, 4))", ByteBuffer.class,
+            Math.class)
+        .addStatement("this.bytes.flip()")
+        .addStatement("this.chars = new char[bufferSize]")
+        .addStatement("this.delimiter = delimiter").build();
+
+    MethodSpec next = MethodSpec.methodBuilder("next")
+        .addJavadoc("Advances to the next row.\n\n@return false if there are no more rows\n")
+        .addModifiers(Modifier.PUBLIC).returns(boolean.class).addException(IOException.class)
+        .addStatement("rowStart = rowEnd")
+        .beginControlFlow("while(true)")
+        .beginControlFlow("if(eof && rowStart == limit)")
+        .addStatement("fieldCount = 0")
+        .addStatement("return false")
+        .endControlFlow()
+        .addStatement("int end = scan()")
+        .beginControlFlow("if(end != -1)")
+        .addStatement("rowEnd = end")
+        .addStatement("finishRow()")
+        .addStatement("rowNumber = rowNumber + 1")
+        .addStatement("return true")
+        .endControlFlow()
+        .beginControlFlow("if(!fill())")
+        .addStatement("eof = true")
+        .endControlFlow()
+        .endControlFlow().build();
+
+    MethodSpec scan = MethodSpec.methodBuilder("scan")
+        .addJavadoc("Finds the fields of the row that starts at {@code rowStart}.\n\n"
+            + "@return the index after the end of the row, or -1 if the row is not all in the "
+            + "buffer\n")
+        .addModifiers(Modifier.PRIVATE).returns(int.class)
+        .addStatement("fieldCount = 0")
+        .addStatement("int i = rowStart")
+        .beginControlFlow("while(true)")
+        .beginControlFlow("if(i == limit)")
+        .beginControlFlow("if(!eof)")
+        .addStatement("return -1")
+        .endControlFlow()
+        .addStatement("addField(i, i, false)")
+        .addStatement("return i")
+        .endControlFlow()
+        .beginControlFlow("if(chars[i] == '\"')")
+        .addStatement("int start = i + 1")
+        .addStatement("boolean doubled = false")
+        .addStatement("int j = start")
+        .beginControlFlow("while(true)")
+        .beginControlFlow("if(j == limit)")
+        .beginControlFlow("if(!eof)")
+        .addStatement("return -1")
+        .endControlFlow()
+        .addStatement("break")
+        .endControlFlow()
+        .beginControlFlow("if(chars[j] == '\"')")
+        .beginControlFlow("if(j + 1 == limit && !eof)")
+        .addStatement("return -1")
+        .endControlFlow()
+        .beginControlFlow("if(j + 1 < limit && chars[j + 1] == '\"')")
+        .addStatement("doubled = true")
+        .addStatement("j = j + 2")
+        .addStatement("continue")
+        .endControlFlow()
+        .addStatement("break")
+        .endControlFlow()
+        .addStatement("j = j + 1")
+        .endControlFlow()
+        .addStatement("addField(start, j, doubled)")
+        .addStatement("i = $T.min(j + 1, limit)", Math.class)
+        .addComment("Anything between the closing quote and the delimiter is ignored")
+        .beginControlFlow(
+            "while(i < limit && chars[i] != delimiter && chars[i] != '\\n' && chars[i] != '\\r')")
+        .addStatement("i = i + 1")
+        .endControlFlow()
+        .nextControlFlow("else")
+        .addStatement("int start = i")
+        .beginControlFlow(
+            "while(i < limit && chars[i] != delimiter && chars[i] != '\\n' && chars[i] != '\\r')")
+        .addStatement("i = i + 1")
+        .endControlFlow()
+        .beginControlFlow("if(i == limit && !eof)")
+        .addStatement("return -1")
+        .endControlFlow()
+        .addStatement("addField(start, i, false)")
+        .endControlFlow()
+        .beginControlFlow("if(i == limit)")
+        .addStatement("return eof ? i : -1")
+        .endControlFlow()
+        .beginControlFlow("if(chars[i] == delimiter)")
+        .addStatement("i = i + 1")
+        .addStatement("continue")
+        .endControlFlow()
+        .beginControlFlow("if(chars[i] == '\\r')")
+        .beginControlFlow("if(i + 1 == limit && !eof)")
+        .addStatement("return -1")
+        .endControlFlow()
+        .beginControlFlow("if(i + 1 < limit && chars[i + 1] == '\\n')")
+        .addStatement("return i + 2")
+        .endControlFlow()
+        .endControlFlow()
+        .addStatement("return i + 1")
+        .endControlFlow().build();
+
+    MethodSpec addField = MethodSpec.methodBuilder("addField").addModifiers(Modifier.PRIVATE)
+        .addParameter(int.class, "start").addParameter(int.class, "end")
+        .addParameter(boolean.class, "doubled")
+        .beginControlFlow("if(fieldCount == starts.length)")
+        .addStatement("starts = $T.copyOf(starts, 2 * fieldCount)", Arrays.class)
+        .addStatement("ends = $T.copyOf(ends, 2 * fieldCount)", Arrays.class)
+        .addStatement("doubledQuotes = $T.copyOf(doubledQuotes, 2 * fieldCount)", Arrays.class)
+        .endControlFlow()
+        .addStatement("starts[fieldCount] = start")
+        .addStatement("ends[fieldCount] = end")
+        .addStatement("doubledQuotes[fieldCount] = doubled")
+        .addStatement("fieldCount = fieldCount + 1").build();
+
+    MethodSpec finishRow = MethodSpec.methodBuilder("finishRow")
+        .addJavadoc("Removes doubled quotes in place, which is safe once the whole row has been "
+            + "found, and\npoints the field views at the row\n")
+        .addModifiers(Modifier.PRIVATE)
+        .beginControlFlow("if(fields.length < fieldCount)")
+        .addStatement("int previousLength = fields.length")
+        .addStatement("fields = $T.copyOf(fields, $T.max(fieldCount, 2 * previousLength))",
+            Arrays.class, Math.class)
+        .beginControlFlow("for(int i = previousLength;i < fields.length;i++)")
+        .addStatement("fields[i] = new $T()", fieldName)
+        .endControlFlow()
+        .endControlFlow()
+        .beginControlFlow("for(int f = 0;f < fieldCount;f++)")
+        .addStatement("int end = ends[f]")
+        .beginControlFlow("if(doubledQuotes[f])")
+        .addStatement("int w = starts[f]")
+        .beginControlFlow("for(int r = starts[f];r < end;r++)")
+        .addStatement("chars[w] = chars[r]")
+        .addStatement("w = w + 1")
+        .beginControlFlow("if(chars[r] == '\"')")
+        .addStatement("r = r + 1")
+        .endControlFlow()
+        .endControlFlow()
+        .addStatement("end = w")
+        .endControlFlow()
+        .addStatement("$T field = fields[f]", fieldName)
+        .addStatement("field.chars = chars")
+        .addStatement("field.offset = starts[f]")
+        .addStatement("field.length = end - starts[f]")
+        .endControlFlow().build();
+
+    MethodSpec fill = MethodSpec.methodBuilder("fill")
+        .addJavadoc("Moves the current row to the front of the buffer, growing the buffer if "
+            + "the row fills it,\nand decodes more input after it.\n\n"
+            + "@return false if the input is exhausted\n")
+        .addModifiers(Modifier.PRIVATE).returns(boolean.class).addException(IOException.class)
+        .beginControlFlow("if(rowStart > 0)")
+        .addStatement("$T.arraycopy(chars, rowStart, chars, 0, limit - rowStart)", System.class)
+        .addStatement("limit = limit - rowStart")
+        .addStatement("rowStart = 0")
+        .endControlFlow()
+        .addComment("Leave room for a surrogate pair")
+        .beginControlFlow("if(chars.length - limit < 2)")
+        .addStatement("chars = $T.copyOf(chars, 2 * chars.length)", Arrays.class)
+        .endControlFlow()
+        .addStatement("int before = limit")
+        .addStatement("$T out = $T.wrap(chars, limit, chars.length - limit)", CharBuffer.class,
+            CharBuffer.class)
+        .beginControlFlow("while(true)")
+        .addStatement("decoder.decode(bytes, out, false)")
+        .beginControlFlow("if(out.position() > before)")
+        .addStatement("break")
+        .endControlFlow()
+        .addStatement("bytes.compact()")
+        .addStatement("int n = channel.read(bytes)")
+        .addStatement("bytes.flip()")
+        .beginControlFlow("if(n == -1)")
+        .addStatement("decoder.decode(bytes, out, true)")
+        .addStatement("decoder.flush(out)")
+        .addStatement("break")
+        .endControlFlow()
+        .endControlFlow()
+        .addStatement("limit = out.position()")
+        .beginControlFlow("if(rowNumber == 0 && before == 0 && limit > 0 && chars[0] == '\\uFEFF')")
+        .addStatement("rowStart = 1")
+        .endControlFlow()
+        .addStatement("return limit > before").build();
+
+    MethodSpec getLong = MethodSpec.methodBuilder("getLong")
+        .addJavadoc("@return the given field of the current row as a decimal integer, parsed "
+            + "without allocating\n")
+        .addModifiers(Modifier.PUBLIC).returns(long.class).addParameter(int.class, "index")
+        .addStatement("$T field = getField(index)", fieldName)
+        .addStatement("int length = field.length()")
+        .addStatement("int i = 0")
+        .addStatement("boolean negative = false")
+        .beginControlFlow("if(length > 1 && (field.charAt(0) == '-' || field.charAt(0) == '+'))")
+        .addStatement("negative = field.charAt(0) == '-'")
+        .addStatement("i = 1")
+        .endControlFlow()
+        .beginControlFlow("if(i == length)")
+        .addStatement("throw new $T($S + field)", NumberFormatException.class,
+            "For input string: ")
+        .endControlFlow()
+        .addComment("Accumulate negatively so that Long.MIN_VALUE parses without overflow")
+        .addStatement("long result = 0")
+        .beginControlFlow("for(;i < length;i++)")
+        .addStatement("int digit = field.charAt(i) - '0'")
+        .beginControlFlow("if(digit < 0 || digit > 9 || result < ($T.MIN_VALUE + digit) / 10)",
+            Long.class)
+        .addStatement("throw new $T($S + field)", NumberFormatException.class,
+            "For input string: ")
+        .endControlFlow()
+        .addStatement("result = 10 * result - digit")
+        .endControlFlow()
+        .beginControlFlow("if(!negative && result == $T.MIN_VALUE)", Long.class)
+        .addStatement("throw new $T($S + field)", NumberFormatException.class,
+            "For input string: ")
+        .endControlFlow()
+        .addStatement("return negative ? result : -result").build();
+
+    return TypeSpec.classBuilder(cursorName)
+        .addJavadoc("A streaming cursor over the rows of a delimited UTF-8 input, e.g. CSV. Call "
+            + "{@code next}\nto advance to each row, including any header row. Field views and "
+            + "their contents are\nonly valid until the next call to {@code next}.\n")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .addSuperinterface(Closeable.class)
+        .addType(field)
+        .addField(FieldSpec.builder(int.class, "DEFAULT_BUFFER_SIZE", Modifier.PUBLIC,
+            Modifier.STATIC, Modifier.FINAL).initializer("$L", 1 << 20).build())
+        .addField(ReadableByteChannel.class, "channel", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(CharsetDecoder.class, "decoder", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(ByteBuffer.class, "bytes", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(char.class, "delimiter", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(char[].class, "chars", Modifier.PRIVATE)
+        .addField(int.class, "limit", Modifier.PRIVATE)
+        .addField(int.class, "rowStart", Modifier.PRIVATE)
+        .addField(int.class, "rowEnd", Modifier.PRIVATE)
+        .addField(boolean.class, "eof", Modifier.PRIVATE)
+        .addField(long.class, "rowNumber", Modifier.PRIVATE)
+        .addField(int.class, "fieldCount", Modifier.PRIVATE)
+        .addField(FieldSpec.builder(int[].class, "starts", Modifier.PRIVATE)
+            .initializer("new int[16]").build())
+        .addField(FieldSpec.builder(int[].class, "ends", Modifier.PRIVATE)
+            .initializer("new int[16]").build())
+        .addField(FieldSpec.builder(boolean[].class, "doubledQuotes", Modifier.PRIVATE)
+            .initializer("new boolean[16]").build())
+        .addField(FieldSpec.builder(ArrayTypeName.of(fieldName), "fields", Modifier.PRIVATE)
+            .initializer("new $T[0]", fieldName).build())
+        .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+            .addParameter(InputStream.class, "in").addParameter(char.class, "delimiter")
+            .addStatement("this(in, delimiter, DEFAULT_BUFFER_SIZE)").build())
+        .addMethod(constructor)
+        .addMethod(next)
+        .addMethod(MethodSpec.methodBuilder("getRowNumber")
+            .addJavadoc("@return the 1-based number of the current row\n")
+            .addModifiers(Modifier.PUBLIC).returns(long.class).addStatement("return rowNumber")
+            .build())
+        .addMethod(MethodSpec.methodBuilder("getFieldCount").addModifiers(Modifier.PUBLIC)
+            .returns(int.class).addStatement("return fieldCount").build())
+        .addMethod(MethodSpec.methodBuilder("getField").addModifiers(Modifier.PUBLIC)
+            .returns(fieldName).addParameter(int.class, "index")
+            .beginControlFlow("if(index < 0 || index >= fieldCount)")
+            .addStatement("throw new $T($S + index)", IndexOutOfBoundsException.class,
+                "Field index out of range: ")
+            .endControlFlow()
+            .addStatement("return fields[index]").build())
+        .addMethod(MethodSpec.methodBuilder("getString").addModifiers(Modifier.PUBLIC)
+            .returns(String.class).addParameter(int.class, "index")
+            .addStatement("return getField(index).toString()").build())
+        .addMethod(getLong)
+        .addMethod(MethodSpec.methodBuilder("getDouble").addModifiers(Modifier.PUBLIC)
+            .returns(double.class).addParameter(int.class, "index")
+            .addStatement("return $T.parseDouble(getString(index))", Double.class).build())
+        .addMethod(MethodSpec.methodBuilder("close").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).addException(IOException.class)
+            .addStatement("channel.close()").build())
+        .addMethod(scan).addMethod(addField).addMethod(finishRow).addMethod(fill)
+        .build();
+  }
+
+  /**
+   * Returns a {@code readXCsv()} or {@code readXTsv()} method for each delimited text extension
+   * of the given input that opens a {@code CsvCursor} over it
+   */
+  protected List<MethodSpec> generateCsvReaders(Slot input) {
+    List<MethodSpec> result = new ArrayList<>();
+    for (String extension : input.getExtensions()) {
+      Character delimiter = CSV_DELIMITERS.get(extension.toLowerCase(Locale.ROOT));
+      if (delimiter == null)
+        continue;
+      String name = parameterNameToLowerCamel(input.getName());
+      ClassName cursorName = getClassName().nestedClass(CSV_CURSOR);
+      MethodSpec.Builder methodBuilder = MethodSpec
+          .methodBuilder("read" + parameterNameToUpperCamel(input.getName())
+              + extensionToUpperCamel(extension))
+          .addJavadoc("@return a streaming cursor over the rows of the $L input as $L, which "
+              + "the caller must close\n", input.getName(), extension)
+          .addModifiers(Modifier.PUBLIC).returns(cursorName).addException(IOException.class);
+      if (getOptions().isFlightRecorder())
+        methodBuilder.addStatement("return new $T(open$L(), $L)", cursorName,
+            parameterNameToUpperCamel(input.getName()), characterLiteral(delimiter));
+      else
+        methodBuilder.addStatement("return new $T($L.getInputStream(), $L)", cursorName, name,
+            characterLiteral(delimiter));
+      result.add(methodBuilder.build());
+    }
+    return result;
+  }
+
+  private static String characterLiteral(char c) {
+    return c == '\t' ? "'\\t'" : "'" + c + "'";
+  }
+
+  /**
+   * Returns the nested interface that the generated CSV and XLSX writers share, so that tools can
+   * write the same rows to every extension of an output slot
+   */
+  protected TypeSpec generateRowWriterType() {
+    ClassName rowWriterName = getClassName().nestedClass(ROW_WRITER);
+    TypeSpec.Builder result = TypeSpec.interfaceBuilder(rowWriterName)
+        .addJavadoc("Writes rows of fields to an output in constant memory. Call "
+            + "{@code writeField} for each\nfield of a row, then {@code endRow}.\n")
+        .addModifiers(Modifier.PUBLIC).addSuperinterface(Closeable.class);
+    for (TypeName type : new TypeName[] {ClassName.get(CharSequence.class), TypeName.LONG,
+        TypeName.DOUBLE, TypeName.BOOLEAN})
+      result.addMethod(MethodSpec.methodBuilder("writeField")
+          .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT).returns(rowWriterName)
+          .addParameter(type, "value").addException(IOException.class).build());
+    return result.addMethod(MethodSpec.methodBuilder("endRow")
+        .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT).returns(rowWriterName)
+        .addException(IOException.class).build()).build();
+  }
+
+  /**
+   * Returns a method that writes a long in decimal through the {@code digits} scratch buffer of a
+   * generated writer instead of allocating a string
+   */
+  private MethodSpec generateWriteLongMethod() {
+    return MethodSpec.methodBuilder("writeLong").addModifiers(Modifier.PRIVATE)
+        .addParameter(long.class, "value").addException(IOException.class)
+        .beginControlFlow("if(value == $T.MIN_VALUE)", Long.class)
+        .addStatement("writer.write($S)", String.valueOf(Long.MIN_VALUE))
+        .addStatement("return")
+        .endControlFlow()
+        .addStatement("int p = digits.length")
+        .addStatement("long v = $T.abs(value)", Math.class)
+        .beginControlFlow("do")
+        .addStatement("p = p - 1")
+        .addStatement("digits[p] = (char) ('0' + v % 10)")
+        .addStatement("v = v / 10")
+        .endControlFlow("while(v != 0)")
+        .beginControlFlow("if(value < 0)")
+        .addStatement("p = p - 1")
+        .addStatement("digits[p] = '-'")
+        .endControlFlow()
+        .addStatement("writer.write(digits, p, digits.length - p)").build();
+  }
+
+  /**
+   * Returns the nested class that writes delimited text, quoting fields as RFC 4180 requires,
+   * through a fixed-size buffer
+   */
+  protected TypeSpec generateCsvWriterType() {
+    ClassName csvWriterName = getClassName().nestedClass(CSV_WRITER);
+
+    MethodSpec writeString = MethodSpec.methodBuilder("writeField")
+        .addAnnotation(Override.class).addModifiers(Modifier.PUBLIC).returns(csvWriterName)
+        .addParameter(CharSequence.class, "value").addException(IOException.class)
+        .addStatement("beginField()")
+        .beginControlFlow("if(value == null)")
+        .addStatement("return this")
+        .endControlFlow()
+        .addStatement("int length = value.length()")
+        .addStatement("boolean quote = false")
+        .beginControlFlow("for(int i = 0;i < length && !quote;i++)")
+        .addStatement("char c = value.charAt(i)")
+        .addStatement("quote = c == delimiter || c == '\"' || c == '\\n' || c == '\\r'")
+        .endControlFlow()
+        .beginControlFlow("if(!quote && value instanceof String)")
+        .addStatement("writer.write((String) value)")
+        .addStatement("return this")
+        .endControlFlow()
+        .beginControlFlow("if(quote)")
+        .addStatement("writer.write('\"')")
+        .endControlFlow()
+        .beginControlFlow("for(int i = 0;i < length;i++)")
+        .addStatement("char c = value.charAt(i)")
+        .beginControlFlow("if(c == '\"')")
+        .addStatement("writer.write('\"')")
+        .endControlFlow()
+        .addStatement("writer.write(c)")
+        .endControlFlow()
+        .beginControlFlow("if(quote)")
+        .addStatement("writer.write('\"')")
+        .endControlFlow()
+        .addStatement("return this").build();
+
+    return TypeSpec.classBuilder(csvWriterName)
+        .addJavadoc("Writes delimited UTF-8 text, e.g. CSV, with one line per row. Fields that "
+            + "contain the\ndelimiter, quotes or line breaks are quoted.\n")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .addSuperinterface(getClassName().nestedClass(ROW_WRITER))
+        .addField(Writer.class, "writer", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(char.class, "delimiter", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(FieldSpec.builder(char[].class, "digits", Modifier.PRIVATE, Modifier.FINAL)
+            .initializer("new char[20]").build())
+        .addField(boolean.class, "rowStarted", Modifier.PRIVATE)
+        .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+            .addParameter(OutputStream.class, "out").addParameter(char.class, "delimiter")
+            .addStatement("this.writer = new $T(new $T(out, $T.UTF_8), $L)",
+                BufferedWriter.class, OutputStreamWriter.class, StandardCharsets.class, 1 << 16)
+            .addStatement("this.delimiter = delimiter").build())
+        .addMethod(writeString)
+        .addMethod(MethodSpec.methodBuilder("writeField").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).returns(csvWriterName)
+            .addParameter(long.class, "value").addException(IOException.class)
+            .addStatement("beginField()")
+            .addStatement("writeLong(value)")
+            .addStatement("return this").build())
+        .addMethod(MethodSpec.methodBuilder("writeField").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).returns(csvWriterName)
+            .addParameter(double.class, "value").addException(IOException.class)
+            .addStatement("beginField()")
+            .addStatement("writer.write($T.toString(value))", Double.class)
+            .addStatement("return this").build())
+        .addMethod(MethodSpec.methodBuilder("writeField").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).returns(csvWriterName)
+            .addParameter(boolean.class, "value").addException(IOException.class)
+            .addStatement("beginField()")
+            .addStatement("writer.write(value ? $S : $S)", "true", "false")
+            .addStatement("return this").build())
+        .addMethod(MethodSpec.methodBuilder("endRow").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).returns(csvWriterName)
+            .addException(IOException.class)
+            .addStatement("writer.write('\\n')")
+            .addStatement("rowStarted = false")
+            .addStatement("return this").build())
+        .addMethod(MethodSpec.methodBuilder("flush").addModifiers(Modifier.PUBLIC)
+            .addException(IOException.class).addStatement("writer.flush()").build())
+        .addMethod(MethodSpec.methodBuilder("close").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).addException(IOException.class)
+            .addStatement("writer.close()").build())
+        .addMethod(MethodSpec.methodBuilder("beginField").addModifiers(Modifier.PRIVATE)
+            .addException(IOException.class)
+            .beginControlFlow("if(rowStarted)")
+            .addStatement("writer.write(delimiter)")
+            .endControlFlow()
+            .addStatement("rowStarted = true").build())
+        .addMethod(generateWriteLongMethod())
+        .build();
+  }
+
+  /**
+   * Returns the nested class that writes an XLSX workbook. Each worksheet is streamed straight
+   * into the zip output as its rows are written, and the workbook parts that list the worksheets
+   * are written on close, since the order of zip entries does not matter. Memory use is
+   * therefore independent of the number of rows, and no temporary files are needed. A new
+   * worksheet is started whenever one reaches the row limit of the format.
+   */
+  protected TypeSpec generateXlsxWriterType() {
+    ClassName xlsxWriterName = getClassName().nestedClass(XLSX_WRITER);
+
+    MethodSpec constructor = MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+        .addParameter(OutputStream.class, "out").addParameter(int.class, "rowsPerSheet")
+        .beginControlFlow("if(rowsPerSheet < 1 || rowsPerSheet > MAX_ROWS_PER_SHEET)")
+        .addStatement("throw new $T($S + rowsPerSheet)", IllegalArgumentException.class,
+            "rowsPerSheet must be between 1 and 1048576, but was ")
+        .endControlFlow()
+        .addStatement("this.zip = new $T(out)", ZipOutputStream.class)
+        .addComment("Worksheets compress very well even at the fastest level")
+        .addStatement("this.zip.setLevel($T.BEST_SPEED)", Deflater.class)
+        .addStatement("this.writer = new $T(new $T(zip, $T.UTF_8), $L)", BufferedWriter.class,
+            OutputStreamWriter.class, StandardCharsets.class, 1 << 16)
+        .addStatement("this.rowsPerSheet = rowsPerSheet").build();
+
+    MethodSpec beginCell = MethodSpec.methodBuilder("beginCell").addModifiers(Modifier.PRIVATE)
+        .addException(IOException.class)
+        .beginControlFlow("if(!rowStarted)")
+        .addStatement("beginRow()")
+        .endControlFlow()
+        .addStatement("column = column + 1")
+        .addStatement("writer.write($S)", "<c r=\"")
+        .addStatement("int p = digits.length")
+        .beginControlFlow("for(int c = column;c > 0;c = (c - 1) / 26)")
+        .addStatement("p = p - 1")
+        .addStatement("digits[p] = (char) ('A' + (c - 1) % 26)")
+        .endControlFlow()
+        .addStatement("writer.write(digits, p, digits.length - p)")
+        .addStatement("writeLong(row)")
+        .addStatement("writer.write('\"')").build();
+
+    MethodSpec beginRow = MethodSpec.methodBuilder("beginRow").addModifiers(Modifier.PRIVATE)
+        .addException(IOException.class)
+        .beginControlFlow("if(sheetCount == 0 || row == rowsPerSheet)")
+        .beginControlFlow("if(sheetCount > 0)")
+        .addStatement("endSheet()")
+        .endControlFlow()
+        .addStatement("sheetCount = sheetCount + 1")
+        .addStatement("row = 0")
+        .addStatement("zip.putNextEntry(new $T($S + sheetCount + $S))", ZipEntry.class,
+            "xl/worksheets/sheet", ".xml")
+        .addStatement("writer.write($S)", XML_DECLARATION + "<worksheet xmlns=\""
+            + SPREADSHEETML_NAMESPACE + "\"><sheetData>")
+        .endControlFlow()
+        .addStatement("row = row + 1")
+        .addStatement("column = 0")
+        .addStatement("writer.write($S)", "<row r=\"")
+        .addStatement("writeLong(row)")
+        .addStatement("writer.write($S)", "\">")
+        .addStatement("rowStarted = true").build();
+
+    MethodSpec endSheet = MethodSpec.methodBuilder("endSheet").addModifiers(Modifier.PRIVATE)
+        .addException(IOException.class)
+        .addStatement("writer.write($S)", "</sheetData></worksheet>")
+        .addStatement("writer.flush()")
+        .addStatement("zip.closeEntry()").build();
+
+    MethodSpec writeEntry = MethodSpec.methodBuilder("writeEntry").addModifiers(Modifier.PRIVATE)
+        .addParameter(String.class, "name").addParameter(CharSequence.class, "content")
+        .addException(IOException.class)
+        .addStatement("zip.putNextEntry(new $T(name))", ZipEntry.class)
+        .addStatement("writer.append(content)")
+        .addStatement("writer.flush()")
+        .addStatement("zip.closeEntry()").build();
+
+    MethodSpec writeText = MethodSpec.methodBuilder("writeText").addModifiers(Modifier.PRIVATE)
+        .addJavadoc("Writes the given text escaped as XML content, dropping the control "
+            + "characters that XML\ncannot represent\n")
+        .addParameter(CharSequence.class, "value").addException(IOException.class)
+        .addStatement("int length = value.length()")
+        .beginControlFlow("for(int i = 0;i < length;i++)")
+        .addStatement("char c = value.charAt(i)")
+        .beginControlFlow("if(c == '<')")
+        .addStatement("writer.write($S)", "&lt;")
+        .nextControlFlow("else if(c == '>')")
+        .addStatement("writer.write($S)", "&gt;")
+        .nextControlFlow("else if(c == '&')")
+        .addStatement("writer.write($S)", "&amp;")
+        .nextControlFlow("else if(c >= ' ' || c == '\\t' || c == '\\n' || c == '\\r')")
+        .addStatement("writer.write(c)")
+        .endControlFlow()
+        .endControlFlow().build();
+
+    MethodSpec close = MethodSpec.methodBuilder("close").addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC).addException(IOException.class)
+        .beginControlFlow("if(closed)")
+        .addStatement("return")
+        .endControlFlow()
+        .addStatement("closed = true")
+        .beginControlFlow("if(rowStarted)")
+        .addStatement("endRow()")
+        .endControlFlow()
+        .beginControlFlow("if(sheetCount == 0)")
+        .addStatement("beginRow()")
+        .addStatement("writer.write($S)", "</row>")
+        .endControlFlow()
+        .addStatement("endSheet()")
+        .addStatement("$T contentTypes = new $T($S)", StringBuilder.class, StringBuilder.class,
+            XML_DECLARATION + "<Types xmlns=\""
+                + "http://schemas.openxmlformats.org/package/2006/content-types\">"
+                + "<Default Extension=\"rels\" ContentType=\""
+                + "application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                + "<Override PartName=\"/xl/workbook.xml\" ContentType=\""
+                + "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>")
+        .addStatement("$T sheets = new $T($S)", StringBuilder.class, StringBuilder.class,
+            XML_DECLARATION + "<workbook xmlns=\"" + SPREADSHEETML_NAMESPACE + "\" xmlns:r=\""
+                + OFFICE_RELATIONSHIPS_NAMESPACE + "\"><sheets>")
+        .addStatement("$T relationships = new $T($S)", StringBuilder.class,
+            StringBuilder.class, XML_DECLARATION + "<Relationships xmlns=\""
+                + PACKAGE_RELATIONSHIPS_NAMESPACE + "\">")
+        .beginControlFlow("for(int i = 1;i <= sheetCount;i++)")
+        .addStatement("contentTypes.append($S).append(i).append($S)",
+            "<Override PartName=\"/xl/worksheets/sheet",
+            ".xml\" ContentType=\""
+                + "application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>")
+        .addStatement("sheets.append($S).append(i).append($S).append(i).append($S).append(i)"
+            + ".append($S)", "<sheet name=\"Sheet", "\" sheetId=\"", "\" r:id=\"rId", "\"/>")
+        .addStatement("relationships.append($S).append(i).append($S).append(i).append($S)",
+            "<Relationship Id=\"rId",
+            "\" Type=\"" + OFFICE_RELATIONSHIPS_NAMESPACE + "/worksheet\" "
+                + "Target=\"worksheets/sheet",
+            ".xml\"/>")
+        .endControlFlow()
+        .addStatement("writeEntry($S, contentTypes.append($S))", "[Content_Types].xml",
+            "</Types>")
+        .addStatement("writeEntry($S, $S)", "_rels/.rels",
+            XML_DECLARATION + "<Relationships xmlns=\"" + PACKAGE_RELATIONSHIPS_NAMESPACE
+                + "\"><Relationship Id=\"rId1\" Type=\"" + OFFICE_RELATIONSHIPS_NAMESPACE
+                + "/officeDocument\" Target=\"xl/workbook.xml\"/></Relationships>")
+        .addStatement("writeEntry($S, sheets.append($S))", "xl/workbook.xml",
+            "</sheets></workbook>")
+        .addStatement("writeEntry($S, relationships.append($S))", "xl/_rels/workbook.xml.rels",
+            "</Relationships>")
+        .addStatement("writer.close()").build();
+
+    return TypeSpec.classBuilder(xlsxWriterName)
+        .addJavadoc("Writes an XLSX workbook of inline string, number and boolean cells. "
+            + "Worksheets are streamed\ninto the output as rows are written, so memory use does "
+            + "not depend on the number of rows.\nRows beyond the limit of one worksheet "
+            + "continue on the next.\n")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .addSuperinterface(getClassName().nestedClass(ROW_WRITER))
+        .addField(FieldSpec.builder(int.class, "MAX_ROWS_PER_SHEET", Modifier.PUBLIC,
+            Modifier.STATIC, Modifier.FINAL).initializer("$L", 1 << 20).build())
+        .addField(ZipOutputStream.class, "zip", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(Writer.class, "writer", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(int.class, "rowsPerSheet", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(FieldSpec.builder(char[].class, "digits", Modifier.PRIVATE, Modifier.FINAL)
+            .initializer("new char[20]").build())
+        .addField(int.class, "sheetCount", Modifier.PRIVATE)
+        .addField(int.class, "row", Modifier.PRIVATE)
+        .addField(int.class, "column", Modifier.PRIVATE)
+        .addField(boolean.class, "rowStarted", Modifier.PRIVATE)
+        .addField(boolean.class, "closed", Modifier.PRIVATE)
+        .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+            .addParameter(OutputStream.class, "out")
+            .addStatement("this(out, MAX_ROWS_PER_SHEET)").build())
+        .addMethod(constructor)
+        .addMethod(MethodSpec.methodBuilder("writeField").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).returns(xlsxWriterName)
+            .addParameter(CharSequence.class, "value").addException(IOException.class)
+            .beginControlFlow("if(value == null)")
+            .addComment("Leave the cell empty")
+            .beginControlFlow("if(!rowStarted)")
+            .addStatement("beginRow()")
+            .endControlFlow()
+            .addStatement("column = column + 1")
+            .addStatement("return this")
+            .endControlFlow()
+            .addStatement("beginCell()")
+            .addStatement("writer.write($S)", " t=\"inlineStr\"><is><t xml:space=\"preserve\">")
+            .addStatement("writeText(value)")
+            .addStatement("writer.write($S)", "</t></is></c>")
+            .addStatement("return this").build())
+        .addMethod(MethodSpec.methodBuilder("writeField").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).returns(xlsxWriterName)
+            .addParameter(long.class, "value").addException(IOException.class)
+            .addStatement("beginCell()")
+            .addStatement("writer.write($S)", "><v>")
+            .addStatement("writeLong(value)")
+            .addStatement("writer.write($S)", "</v></c>")
+            .addStatement("return this").build())
+        .addMethod(MethodSpec.methodBuilder("writeField").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).returns(xlsxWriterName)
+            .addParameter(double.class, "value").addException(IOException.class)
+            .beginControlFlow("if($T.isNaN(value) || $T.isInfinite(value))", Double.class,
+                Double.class)
+            .addComment("Spreadsheets have no such numbers, so keep them as text")
+            .addStatement("return writeField($T.toString(value))", Double.class)
+            .endControlFlow()
+            .addStatement("beginCell()")
+            .addStatement("writer.write($S)", "><v>")
+            .addStatement("writer.write($T.toString(value))", Double.class)
+            .addStatement("writer.write($S)", "</v></c>")
+            .addStatement("return this").build())
+        .addMethod(MethodSpec.methodBuilder("writeField").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).returns(xlsxWriterName)
+            .addParameter(boolean.class, "value").addException(IOException.class)
+            .addStatement("beginCell()")
+            .addStatement("writer.write(value ? $S : $S)", " t=\"b\"><v>1</v></c>",
+                " t=\"b\"><v>0</v></c>")
+            .addStatement("return this").build())
+        .addMethod(MethodSpec.methodBuilder("endRow").addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC).returns(xlsxWriterName)
+            .addException(IOException.class)
+            .beginControlFlow("if(!rowStarted)")
+            .addStatement("beginRow()")
+            .endControlFlow()
+            .addStatement("writer.write($S)", "</row>")
+            .addStatement("rowStarted = false")
+            .addStatement("return this").build())
+        .addMethod(close)
+        .addMethod(beginRow).addMethod(beginCell).addMethod(endSheet).addMethod(writeEntry)
+        .addMethod(writeText).addMethod(generateWriteLongMethod())
+        .build();
+  }
+
+  /**
+   * Returns a {@code writeXCsv()}, {@code writeXTsv()} or {@code writeXXlsx()} method for each
+   * supported extension of the given output that opens a row writer over it
+   */
+  protected List<MethodSpec> generateRowWriters(Slot output) {
+    List<MethodSpec> result = new ArrayList<>();
+    for (String extension : output.getExtensions()) {
+      String normalizedExtension = extension.toLowerCase(Locale.ROOT);
+      if (!CSV_DELIMITERS.containsKey(normalizedExtension)
+          && !normalizedExtension.equals("xlsx"))
+        continue;
+      String fieldName =
+          parameterNameToLowerCamel(output.getName()) + extensionToUpperCamel(extension);
+      CodeBlock stream = getOptions().isFlightRecorder()
+          ? CodeBlock.of("open$L()", parameterNameToUpperCamel(output.getName())
+              + extensionToUpperCamel(extension))
+          : CodeBlock.of("$L.getOutputStream()", fieldName);
+      ClassName writerName = getClassName()
+          .nestedClass(normalizedExtension.equals("xlsx") ? XLSX_WRITER : CSV_WRITER);
+      MethodSpec.Builder methodBuilder = MethodSpec
+          .methodBuilder("write" + parameterNameToUpperCamel(output.getName())
+              + extensionToUpperCamel(extension))
+          .addJavadoc("@return a streaming writer of rows to the $L output as $L, which the "
+              + "caller must close\n", output.getName(), extension)
+          .addModifiers(Modifier.PUBLIC).returns(writerName).addException(IOException.class);
+      if (normalizedExtension.equals("xlsx"))
+        methodBuilder.addStatement("return new $T($L)", writerName, stream);
+      else
+        methodBuilder.addStatement("return new $T($L, $L)", writerName, stream,
+            characterLiteral(CSV_DELIMITERS.get(normalizedExtension)));
+      result.add(methodBuilder.build());
+    }
+    return result;
+  }
+
+  /**
+   * Returns the nested JDK Flight Recorder event classes. Every event records the name of the
+   * configuration class, so tools that share a recording can be told apart.
+   */
+  protected List<TypeSpec> generateFlightRecorderEventTypes() {
+    List<TypeSpec> result = new ArrayList<>();
+
+    ClassName initializeEvent = getClassName().nestedClass(CONFIGURATION_INITIALIZE);
+    result.add(generateFlightRecorderEventType(CONFIGURATION_INITIALIZE,
+        "Configuration Initialize", "Static initialization of a configuration class")
+            .addMethod(MethodSpec.methodBuilder("started").addModifiers(Modifier.STATIC)
+                .returns(initializeEvent)
+                .addStatement("$T result = new $T()", initializeEvent, initializeEvent)
+                .addStatement("result.begin()").addStatement("return result").build())
+            .build());
+
+    result.add(generateFlightRecorderEventType(CONFIGURATION_PARSE, "Configuration Parse",
+        "Binding command line arguments and environment variables to a configuration")
+            .addField(generateFlightRecorderEventField(TypeName.INT, "argumentCount",
+                "Argument Count"))
+            .addField(generateFlightRecorderEventField(TypeName.INT, "parameterCount",
+                "Parameter Count"))
+            .build());
+
+    result.add(generateFlightRecorderEventType(CONFIGURATION_VALIDATE, "Configuration Validate",
+        "Validating the parameters of a configuration")
+            .addField(generateFlightRecorderEventField(TypeName.INT, "parameterCount",
+                "Parameter Count"))
+            .build());
+
+    result.add(generateFlightRecorderEventType(SLOT_OPEN, "Slot Open",
+        "Opening the stream of an input or output slot")
+            .addField(generateFlightRecorderEventField(ClassName.get(String.class), "slot",
+                "Slot"))
+            .addField(generateFlightRecorderEventField(ClassName.get(String.class), "direction",
+                "Direction"))
+            .build());
+
+    return result;
+  }
+
+  protected TypeSpec.Builder generateFlightRecorderEventType(String simpleName, String label,
+      String description) {
+    return TypeSpec.classBuilder(simpleName).addModifiers(Modifier.STATIC, Modifier.FINAL)
+        .superclass(JFR_EVENT)
+        .addAnnotation(AnnotationSpec.builder(JFR_LABEL).addMember("value", "$S", label).build())
+        .addAnnotation(AnnotationSpec.builder(JFR_DESCRIPTION)
+            .addMember("value", "$S", description).build())
+        .addAnnotation(AnnotationSpec.builder(JFR_CATEGORY)
+            .addMember("value", "$S", "ToolForge").build())
+        .addAnnotation(AnnotationSpec.builder(JFR_STACK_TRACE)
+            .addMember("value", "$L", false).build())
+        .addField(generateFlightRecorderEventField(ClassName.get(String.class), "configuration",
+            "Configuration"));
+  }
+
+  protected FieldSpec generateFlightRecorderEventField(TypeName type, String name, String label) {
+    return FieldSpec.builder(type, name)
+        .addAnnotation(AnnotationSpec.builder(JFR_LABEL).addMember("value", "$S", label).build())
+        .build();
+  }
+
+  /**
+   * Returns the given methods with the one of the given name replaced by a public wrapper that
+   * records it as a flight recorder event, and the original renamed to a private
+   * {@code nameUnrecorded} method. The event fields are only computed when the event is committed.
+   *
+   * @param eventFields statements that set the fields of the local {@code flightRecorderEvent}
+   */
+  protected List<MethodSpec> generateRecordedMethods(List<MethodSpec> methods, String name,
+      ClassName event, CodeBlock eventFields) {
+    List<MethodSpec> result = new ArrayList<>();
+    for (MethodSpec method : methods) {
+      if (!method.name.equals(name)) {
+        result.add(method);
+        continue;
+      }
+
+      String unrecordedName = name + "Unrecorded";
+      String arguments = method.parameters.stream().map(p -> p.name).collect(joining(", "));
+
+      MethodSpec.Builder unrecordedBuilder = MethodSpec.methodBuilder(unrecordedName)
+          .addModifiers(Modifier.PRIVATE).returns(method.returnType)
+          .addParameters(method.parameters).addExceptions(method.exceptions).addCode(method.code);
+      if (method.hasModifier(Modifier.STATIC))
+        unrecordedBuilder.addModifiers(Modifier.STATIC);
+
+      MethodSpec.Builder recordedBuilder = MethodSpec.methodBuilder(name)
+          .addJavadoc(method.javadoc).addAnnotations(method.annotations)
+          .addModifiers(method.modifiers).returns(method.returnType)
+          .addParameters(method.parameters).addExceptions(method.exceptions)
+          .addStatement("$T flightRecorderEvent = new $T()", event, event)
+          .addStatement("flightRecorderEvent.begin()").beginControlFlow("try");
+      if (method.returnType.equals(TypeName.VOID))
+        recordedBuilder.addStatement("$L($L)", unrecordedName, arguments);
+      else
+        recordedBuilder.addStatement("return $L($L)", unrecordedName, arguments);
+      recordedBuilder.nextControlFlow("finally")
+          .addCode(generateRecordedCommit("flightRecorderEvent", eventFields)).endControlFlow();
+
+      result.add(recordedBuilder.build());
+      result.add(unrecordedBuilder.build());
+    }
+    return result;
+  }
+
+  /**
+   * Returns the static initializer that commits the event begun by the first static field, after
+   * every other static field of the configuration class has been initialized
+   */
+  protected CodeBlock generateRecordedInitializeBlock() {
+    return generateRecordedCommit("INITIALIZE_EVENT", CodeBlock.of(""));
+  }
+
+  protected CodeBlock generateRecordedCommit(String event, CodeBlock fields) {
+    return CodeBlock.builder().beginControlFlow("if($L.shouldCommit())", event)
+        .addStatement("$L.configuration = $S", event, getClassName().reflectionName())
+        .add(fields).addStatement("$L.commit()", event).endControlFlow().build();
+  }
+
+  /**
+   * Returns an {@code openX()} method for each input and output extension that opens its stream
+   * and records a flight recorder event for it
+   */
+  protected List<MethodSpec> generateSlotOpenMethods(ToolManifest manifest) {
+    List<MethodSpec> result = new ArrayList<>();
+    for (Slot input : manifest.getInputs())
+      result.add(generateSlotOpenMethod(parameterNameToLowerCamel(input.getName()),
+          input.getName(), "input", InputStream.class, "getInputStream"));
+    for (Slot output : manifest.getOutputs())
+      for (String extension : output.getExtensions())
+        result.add(generateSlotOpenMethod(
+            parameterNameToLowerCamel(output.getName()) + extensionToUpperCamel(extension),
+            output.getName() + "." + extension, "output", OutputStream.class,
+            "getOutputStream"));
+    return result;
+  }
+
+  protected MethodSpec generateSlotOpenMethod(String fieldName, String slotName, String direction,
+      Class<?> streamType, String getter) {
+    ClassName slotOpenEvent = getClassName().nestedClass(SLOT_OPEN);
+    return MethodSpec.methodBuilder("open" + parameterNameToUpperCamel(fieldName))
+        .addJavadoc("@return the opened stream of the $L $L\n", slotName, direction)
+        .addModifiers(Modifier.PUBLIC).returns(streamType).addException(IOException.class)
+        .addStatement("$T flightRecorderEvent = new $T()", slotOpenEvent, slotOpenEvent)
+        .addStatement("flightRecorderEvent.begin()").beginControlFlow("try")
+        .addStatement("return $L.$L()", fieldName, getter).nextControlFlow("finally")
+        .addCode(generateRecordedCommit("flightRecorderEvent",
+            CodeBlock.builder().addStatement("flightRecorderEvent.slot = $S", slotName)
+                .addStatement("flightRecorderEvent.direction = $S", direction).build()))
+        .endControlFlow().build();
+  }
+
+  /**
+   * Generates a static {@code parse} factory method that binds command line arguments and
+   * environment variables with a string switch over the option names and direct field
+   * assignments, without the reflection and annotation scanning of the discourse binding. Slot
+   * values are opened with the given functions, since how a tool resolves slot locations is up to
+   * the tool.
+   */
+  protected MethodSpec generateParseMethod(ToolManifest manifest) {
+    MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("parse")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC).returns(getClassName())
+        .addParameter(String[].class, "args")
+        .addParameter(ParameterizedTypeName.get(Map.class, String.class, String.class), "env")
+        .addParameter(ParameterSpec.builder(
+            ParameterizedTypeName.get(Function.class, String.class, InputSource.class), "inputs")
+            .build())
+        .addParameter(ParameterSpec.builder(
+            ParameterizedTypeName.get(Function.class, String.class, OutputSink.class), "outputs")
+            .build());
+
+    methodBuilder.addStatement("$T result = new $T()", getClassName(), getClassName());
+
+    methodBuilder.beginControlFlow("for(int i = 0; i < args.length; i++)")
+        .addStatement("$T arg = args[i]", String.class)
+        .beginControlFlow("if(!arg.startsWith($S))", "--")
+        .addStatement("throw new $T($S + arg)", IllegalArgumentException.class,
+            "Unexpected argument ")
+        .endControlFlow().addStatement("$T name", String.class)
+        .addStatement("$T value", String.class)
+        .addStatement("int equals = arg.indexOf('=')").beginControlFlow("if(equals != -1)")
+        .addStatement("name = arg.substring(2, equals)")
+        .addStatement("value = arg.substring(equals + 1)").nextControlFlow("else")
+        .addStatement("name = arg.substring(2)").beginControlFlow("if(i + 1 == args.length)")
+        .addStatement("throw new $T($S + name)", IllegalArgumentException.class,
+            "Missing value for option --")
+        .endControlFlow().addStatement("value = args[++i]").endControlFlow();
+
+    methodBuilder.beginControlFlow("try").beginControlFlow("switch(name)");
+    for (ParameterDefinition parameter : manifest.getParameters()) {
+      methodBuilder.addCode(CodeBlock.builder().add("case $S:\n", parameter.getName()).indent()
+          .add(generateParseAssignment(parameter, CodeBlock.of("value"))).addStatement("break")
+          .unindent().build());
+    }
+    for (Slot input : manifest.getInputs()) {
+      methodBuilder.addCode(CodeBlock.builder().add("case $S:\n", input.getName()).indent()
+          .addStatement("result.$L = inputs.apply(value)",
+              parameterNameToLowerCamel(input.getName()))
+          .addStatement("break").unindent().build());
+    }
+    for (Slot output : manifest.getOutputs()) {
+      for (String extension : output.getExtensions()) {
+        methodBuilder.addCode(CodeBlock.builder()
+            .add("case $S:\n", output.getName() + "." + extension).indent()
+            .addStatement("result.$L = outputs.apply(value)",
+                parameterNameToLowerCamel(output.getName()) + extensionToUpperCamel(extension))
+            .addStatement("break").unindent().build());
+      }
+    }
+    methodBuilder.addCode(CodeBlock.builder().add("default:\n").indent()
+        .addStatement("throw new $T($S + name)", IllegalArgumentException.class,
+            "Unknown option --")
+        .unindent().build());
+    methodBuilder.endControlFlow()
+        .nextControlFlow("catch($T | $T e)", NumberFormatException.class,
+            DateTimeParseException.class)
+        .addStatement("throw new $T($S + name + $S + value, e)", IllegalArgumentException.class,
+            "Invalid value for option --", ": ")
+        .endControlFlow();
+
+    methodBuilder.endControlFlow();
+
+    if (manifest.getEnvironment() != null && manifest.getEnvironment().getVariables() != null) {
+      for (ContainerVersionVariable variable : manifest.getEnvironment().getVariables()) {
+        methodBuilder.addCode(generateParseEnvironmentBlock(variable.getName(),
+            variableNameToLowerCamel(variable.getName())));
+      }
+    }
+
+    if (manifest.getEnvironment() != null && manifest.getEnvironment().getSecrets() != null) {
+      for (ContainerVersionSecret secret : manifest.getEnvironment().getSecrets()) {
+        methodBuilder.addCode(generateParseEnvironmentBlock(secret.getName(),
+            variableNameToLowerCamel(secret.getName())));
+      }
+    }
+
+    for (ParameterDefinition parameter : manifest.getParameters()) {
+      if (parameter.getRequired() && isPrimitiveParameter(parameter)) {
+        methodBuilder.addCode(CodeBlock.builder()
+            .beginControlFlow("if(!result.has$L())", parameterNameToUpperCamel(parameter.getName()))
+            .addStatement("throw new $T($S)", IllegalArgumentException.class,
+                "Missing required option --" + parameter.getName())
+            .endControlFlow().build());
+      } else if (parameter.getRequired()) {
+        methodBuilder.addCode(generateParseRequiredCheck(parameter.getName(),
+            parameterNameToLowerCamel(parameter.getName()), "Missing required option --"));
+      }
+    }
+    for (Slot input : manifest.getInputs()) {
+      methodBuilder.addCode(generateParseRequiredCheck(input.getName(),
+          parameterNameToLowerCamel(input.getName()), "Missing required option --"));
+    }
+    for (Slot output : manifest.getOutputs()) {
+      for (String extension : output.getExtensions()) {
+        methodBuilder.addCode(generateParseRequiredCheck(output.getName() + "." + extension,
+            parameterNameToLowerCamel(output.getName()) + extensionToUpperCamel(extension),
+            "Missing required option --"));
+      }
+    }
+    if (manifest.getEnvironment() != null && manifest.getEnvironment().getVariables() != null) {
+      for (ContainerVersionVariable variable : manifest.getEnvironment().getVariables()) {
+        if (Boolean.TRUE.equals(variable.getRequired())) {
+          methodBuilder.addCode(generateParseRequiredCheck(variable.getName(),
+              variableNameToLowerCamel(variable.getName()),
+              "Missing required environment variable "));
+        }
+      }
+    }
+    if (manifest.getEnvironment() != null && manifest.getEnvironment().getSecrets() != null) {
+      for (ContainerVersionSecret secret : manifest.getEnvironment().getSecrets()) {
+        if (Boolean.TRUE.equals(secret.getRequired())) {
+          methodBuilder.addCode(generateParseRequiredCheck(secret.getName(),
+              variableNameToLowerCamel(secret.getName()),
+              "Missing required environment variable "));
+        }
+      }
+    }
+
+    return methodBuilder.addStatement("return result").build();
+  }
+
+  /**
+   * Generates the statement that stores the given string value of the given parameter in the
+   * configuration being parsed, which is named {@code result}.
+   */
+  protected CodeBlock generateParseAssignment(ParameterDefinition parameter, CodeBlock value) {
+    if (isPrimitiveParameter(parameter))
+      return generatePrimitiveParseAssignment(parameter, value);
+
+    String fieldName = parameterNameToLowerCamel(parameter.getName());
+    CodeBlock result;
+    switch (parameter.getType()) {
+      case BOOLEAN:
+        result = CodeBlock.of("result.$L = parseBoolean($L);\n", fieldName, value);
+        break;
+      case DATE:
+        result = CodeBlock.of("result.$L = $T.parse($L);\n", fieldName, LocalDate.class, value);
+        break;
+      case FLOAT:
+        result = CodeBlock.of("result.$L = $T.valueOf($L);\n", fieldName, Double.class, value);
+        break;
+      case INT:
+        result = CodeBlock.of("result.$L = $T.valueOf($L);\n", fieldName, Long.class, value);
+        break;
+      case STRING:
+        if (isEnumParameter(parameter))
+          result = CodeBlock.of("result.$L = $T.fromValue($L);\n", fieldName,
+              enumClassName((StringParameterDefinition) parameter), value);
+        else
+          result = CodeBlock.of("result.$L = $L;\n", fieldName, value);
+        break;
+      default:
+        throw new AssertionError(parameter.getType());
+    }
+    return result;
+  }
+
+  /**
+   * Generates the setter call that stores the given string value of the given primitive parameter
+   * in the configuration being parsed, so that the value is recorded as present.
+   */
+  protected CodeBlock generatePrimitiveParseAssignment(ParameterDefinition parameter,
+      CodeBlock value) {
+    String setterName = "set" + parameterNameToUpperCamel(parameter.getName());
+    CodeBlock result;
+    switch (parameter.getType()) {
+      case BOOLEAN:
+        result = CodeBlock.of("result.$L(parseBoolean($L));\n", setterName, value);
+        break;
+      case FLOAT:
+        result = CodeBlock.of("result.$L($T.parseDouble($L));\n", setterName, Double.class, value);
+        break;
+      case INT:
+        result = CodeBlock.of("result.$L($T.parseLong($L));\n", setterName, Long.class, value);
+        break;
+      default:
+        throw new AssertionError(parameter.getType());
+    }
+    return result;
+  }
+
+  protected CodeBlock generateParseEnvironmentBlock(String variableName, String fieldName) {
+    return CodeBlock.builder().beginControlFlow("if(env.containsKey($S))", variableName)
+        .addStatement("result.$L = env.get($S)", fieldName, variableName).endControlFlow().build();
+  }
+
+  protected CodeBlock generateParseRequiredCheck(String name, String fieldName, String message) {
+    return CodeBlock.builder().beginControlFlow("if(result.$L == null)", fieldName)
+        .addStatement("throw new $T($S)", IllegalArgumentException.class, message + name)
+        .endControlFlow().build();
+  }
+
+  protected MethodSpec generateParseBooleanMethod() {
+    if (getOptions().isPrimitives())
+      return generatePrimitiveParseBooleanMethod();
+
+    return MethodSpec.methodBuilder("parseBoolean")
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(Boolean.class)
+        .addParameter(String.class, "value").beginControlFlow("if(value.equals($S))", "true")
+        .addStatement("return $T.TRUE", Boolean.class)
+        .nextControlFlow("else if(value.equals($S))", "false")
+        .addStatement("return $T.FALSE", Boolean.class).nextControlFlow("else")
+        .addStatement("throw new $T($S + value)", NumberFormatException.class,
+            "Not a boolean: ")
+        .endControlFlow().build();
+  }
+
+  protected MethodSpec generatePrimitiveParseBooleanMethod() {
+    return MethodSpec.methodBuilder("parseBoolean")
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(boolean.class)
+        .addParameter(String.class, "value").beginControlFlow("if(value.equals($S))", "true")
+        .addStatement("return true").nextControlFlow("else if(value.equals($S))", "false")
+        .addStatement("return false").nextControlFlow("else")
+        .addStatement("throw new $T($S + value)", NumberFormatException.class,
+            "Not a boolean: ")
+        .endControlFlow().build();
+  }
+
   /**
    * Generates a Java expression for the given {@link DataExpr}.
    */
   protected CodeBlock generateDateExpr(DateExpr e) {
+    if (getOptions().isLazyConstants())
+      return generateDateExpr(e, CodeBlock.of("$L.TODAY", TODAY_HOLDER));
+    return generateDateExpr(e, CodeBlock.of("TODAY"));
+  }
+
+  /**
+   * Generates the given date expression, with relative dates computed from the given expression
+   * for today.
+   */
+  protected CodeBlock generateDateExpr(DateExpr e, CodeBlock today) {
     CodeBlock result;
     switch (e.getType()) {
       case ABSOLUTE:
         AbsoluteDateExpr absolute = (AbsoluteDateExpr) e;
         LocalDate value = absolute.getValue();
         result = CodeBlock.of("$T.of($L, $L, $L)", LocalDate.class, value.getYear(),
-            value.getMonth(), value.getDayOfMonth());
+            value.getMonthValue(), value.getDayOfMonth());
         break;
       case RELATIVE:
         RelativeDateExpr relative = (RelativeDateExpr) e;
@@ -407,12 +3148,12 @@ public class CodeGenerator {
         }
 
         result =
-            CodeBlock.of(String.format("$L.%s($L)", methodName), "TODAY", relative.getAmount());
+            CodeBlock.of(String.format("$L.%s($L)", methodName), today, relative.getAmount());
         break;
       case TODAY:
         @SuppressWarnings("unused")
-        TodayDateExpr today = (TodayDateExpr) e;
-        result = CodeBlock.of("$L", "TODAY");
+        TodayDateExpr todayExpr = (TodayDateExpr) e;
+        result = CodeBlock.of("$L", today);
         break;
       default:
         throw new AssertionError(e.getType());
@@ -427,13 +3168,59 @@ public class CodeGenerator {
     return className;
   }
 
-  private static String parameterNameToLowerCamel(String name) {
-    return Character.isUpperCase(name.charAt(0))
-        ? name.substring(0, 1).toLowerCase() + name.substring(1, name.length())
-        : name;
+  /**
+   * @return the options
+   */
+  private GeneratorOptions getOptions() {
+    return options;
+  }
+
+  protected String parameterNameToLowerCamel(String name) {
+    String result = lowerCamelNames.get(name);
+    if (result == null) {
+      result = Character.isUpperCase(name.charAt(0))
+          ? Character.toLowerCase(name.charAt(0)) + name.substring(1, name.length())
+          : name;
+      lowerCamelNames.put(name, result);
+    }
+    return result;
+  }
+
+  protected String parameterNameToUpperCamel(String name) {
+    String result = upperCamelNames.get(name);
+    if (result == null) {
+      String lowerCamel = parameterNameToLowerCamel(name);
+      result = Character.toUpperCase(lowerCamel.charAt(0)) + lowerCamel.substring(1);
+      upperCamelNames.put(name, result);
+    }
+    return result;
+  }
+
+  protected String parameterNameToUpperUnderscore(String name) {
+    String result = upperUnderscoreNames.get(name);
+    if (result == null) {
+      result =
+          CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, parameterNameToLowerCamel(name));
+      upperUnderscoreNames.put(name, result);
+    }
+    return result;
   }
 
-  private static String parameterNameToUpperUnderscore(String name) {
-    return CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, parameterNameToLowerCamel(name));
+  protected String extensionToUpperCamel(String extension) {
+    String result = upperCamelExtensions.get(extension);
+    if (result == null) {
+      result = CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_CAMEL, extension);
+      upperCamelExtensions.put(extension, result);
+    }
+    return result;
+  }
+
+  protected String variableNameToLowerCamel(String name) {
+    String result = variableNames.get(name);
+    if (result == null) {
+      result = CaseFormat.UPPER_UNDERSCORE.to(CaseFormat.LOWER_CAMEL, name);
+      variableNames.put(name, result);
+    }
+    return result;
   }
 }
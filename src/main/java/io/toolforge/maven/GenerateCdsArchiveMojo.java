@@ -0,0 +1,419 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import io.toolforge.spi.model.BooleanParameterDefinition;
+import io.toolforge.spi.model.ContainerVersionSecret;
+import io.toolforge.spi.model.ContainerVersionVariable;
+import io.toolforge.spi.model.DateExpr;
+import io.toolforge.spi.model.DateParameterDefinition;
+import io.toolforge.spi.model.EnumerationStringDomain;
+import io.toolforge.spi.model.FloatParameterDefinition;
+import io.toolforge.spi.model.IntParameterDefinition;
+import io.toolforge.spi.model.Manifest;
+import io.toolforge.spi.model.ManifestType;
+import io.toolforge.spi.model.ParameterDefinition;
+import io.toolforge.spi.model.Slot;
+import io.toolforge.spi.model.StringDomainType;
+import io.toolforge.spi.model.StringParameterDefinition;
+import io.toolforge.spi.model.ToolManifest;
+import io.toolforge.spi.model.expr.date.AbsoluteDateExpr;
+import io.toolforge.spi.model.expr.date.RelativeDateExpr;
+
+/**
+ * Creates a dynamic AppCDS archive for the packaged tool by running it once with training
+ * arguments derived from the tool manifest, and writes the JVM flags that map the archive at
+ * launch. Every parameter with a default is passed its default, every required parameter without
+ * one is passed the most plausible valid value, and every input and output slot is bound to a
+ * local file under the training directory, so the training run never touches the platform.
+ *
+ * <p>
+ * Class data sharing only applies when the tool is launched by the same JDK build, with the same
+ * class path, as the training run. The flags include {@code -Xshare:auto}, so a mismatch only
+ * disables the archive instead of failing the launch. Dynamic archives need JDK 13 or later.
+ */
+@Mojo(name = "cds", defaultPhase = LifecyclePhase.PACKAGE,
+    requiresDependencyResolution = ResolutionScope.RUNTIME, threadSafe = true)
+public class GenerateCdsArchiveMojo extends AbstractMojo {
+  // Current maven project
+  @Parameter(defaultValue = "${project}", readonly = true)
+  protected MavenProject project;
+
+  @Parameter(property = "toolforge.location.manifest", defaultValue = "manifest.yml")
+  private String manifestLocation;
+
+  /**
+   * The main class of the tool
+   */
+  @Parameter(property = "toolforge.cds.mainClass", required = true)
+  private String mainClass;
+
+  @Parameter(property = "toolforge.cds.archive", defaultValue = "target/toolforge/app.jsa")
+  private String archiveLocation;
+
+  @Parameter(property = "toolforge.cds.flags", defaultValue = "target/toolforge/cds.jvmflags")
+  private String flagsLocation;
+
+  /**
+   * The directory that holds the slot files and the log of the training run
+   */
+  @Parameter(property = "toolforge.cds.training", defaultValue = "target/toolforge/cds")
+  private String trainingDirectory;
+
+  /**
+   * The path of the archive in the flags file, e.g. its location inside the container image.
+   * Defaults to the absolute path of the archive.
+   */
+  @Parameter(property = "toolforge.cds.runtimeArchive")
+  private String runtimeArchivePath;
+
+  /**
+   * Values for parameters by name, which take precedence over the values derived from the
+   * manifest. Required pattern string parameters without a default must be given here.
+   */
+  @Parameter
+  private Map<String, String> trainingArguments;
+
+  /**
+   * Local files to bind to input slots by name, relative to the project base directory. Input
+   * slots without a file here are bound to an empty file.
+   */
+  @Parameter
+  private Map<String, String> trainingInputs;
+
+  /**
+   * Values for environment variables and secrets by name, which take precedence over defaults
+   */
+  @Parameter
+  private Map<String, String> trainingEnvironment;
+
+  /**
+   * The java executable for the training run. Defaults to the one running Maven. It must be the
+   * same JDK build that runs the tool.
+   */
+  @Parameter(property = "toolforge.cds.java")
+  private String javaExecutable;
+
+  @Parameter(property = "toolforge.cds.timeout", defaultValue = "600")
+  private int timeoutSeconds;
+
+  @Parameter(property = "toolforge.cds.skip", defaultValue = "false")
+  private boolean skip;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if (skip) {
+      getLog().info("Skipping CDS archive generation");
+      return;
+    }
+
+    File basedir = project.getBasedir();
+
+    ToolManifest manifest = readManifest(new File(basedir, manifestLocation));
+
+    File archiveFile = new File(basedir, archiveLocation);
+    File flagsFile = new File(basedir, flagsLocation);
+    File trainingDirectory = new File(basedir, this.trainingDirectory);
+
+    List<String> command = new ArrayList<>();
+    command.add(javaExecutable != null ? javaExecutable
+        : new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+    command.add("-XX:ArchiveClassesAtExit=" + archiveFile.getAbsolutePath());
+    command.add("-cp");
+    command.add(String.join(File.pathSeparator, getClasspath()));
+    command.add(mainClass);
+    try {
+      command.addAll(getTrainingArguments(manifest, trainingDirectory));
+    } catch (IOException e) {
+      throw new MojoExecutionException("Failed to create training slot files", e);
+    }
+
+    File logFile = new File(trainingDirectory, "training.log");
+    try {
+      Files.deleteIfExists(archiveFile.toPath());
+      Files.createDirectories(archiveFile.getAbsoluteFile().getParentFile().toPath());
+    } catch (IOException e) {
+      throw new MojoExecutionException("Failed to prepare archive " + archiveFile, e);
+    }
+
+    ProcessBuilder processBuilder = new ProcessBuilder(command).directory(trainingDirectory)
+        .redirectErrorStream(true).redirectOutput(logFile);
+    processBuilder.environment().putAll(getTrainingEnvironment(manifest));
+
+    getLog().info("Training CDS archive with " + mainClass + ", logging to " + logFile);
+    int status;
+    try {
+      Process process = processBuilder.start();
+      if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+        process.destroyForcibly();
+        throw new MojoExecutionException(
+            "Training run did not exit within " + timeoutSeconds + " seconds, see " + logFile);
+      }
+      status = process.exitValue();
+    } catch (IOException e) {
+      throw new MojoExecutionException("Failed to start training run", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted during training run", e);
+    }
+
+    if (!archiveFile.isFile())
+      throw new MojoExecutionException("Training run exited with status " + status
+          + " without writing " + archiveFile + ", which requires JDK 13 or later, see " + logFile);
+    if (status != 0)
+      getLog().warn("Training run exited with status " + status
+          + ", so the archive only holds the classes loaded until then, see " + logFile);
+
+    String flags = "-XX:SharedArchiveFile="
+        + (runtimeArchivePath != null ? runtimeArchivePath : archiveFile.getAbsolutePath())
+        + "\n-Xshare:auto\n";
+    try {
+      Files.createDirectories(flagsFile.getAbsoluteFile().getParentFile().toPath());
+      Files.write(flagsFile.toPath(), flags.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new MojoExecutionException("Failed to write JVM flags to " + flagsFile, e);
+    }
+
+    getLog().info("Wrote " + archiveFile + " and " + flagsFile);
+  }
+
+  private ToolManifest readManifest(File manifestFile) throws MojoExecutionException {
+    Manifest m;
+    try {
+      m = AbstractConfigurationMojo.YAML.readValue(manifestFile, Manifest.class);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Failed to read manifest from " + manifestLocation, e);
+    }
+    if (m.getType() != ManifestType.TOOL)
+      throw new MojoExecutionException("Expected manifest with type tool, found " + m.getType());
+    return (ToolManifest) m;
+  }
+
+  /**
+   * Returns the packaged artifact followed by the runtime dependencies. Classes are only archived
+   * from JAR files, so the packaged artifact takes the place of the build output directory.
+   */
+  private List<String> getClasspath() throws MojoExecutionException {
+    File artifactFile = project.getArtifact() != null ? project.getArtifact().getFile() : null;
+    if (artifactFile == null || !artifactFile.isFile())
+      throw new MojoExecutionException(
+          "Training run needs the packaged tool, run this goal in or after the package phase");
+
+    List<String> result = new ArrayList<>();
+    result.add(artifactFile.getAbsolutePath());
+    try {
+      for (String element : project.getRuntimeClasspathElements())
+        if (!new File(element).equals(new File(project.getBuild().getOutputDirectory())))
+          result.add(element);
+    } catch (DependencyResolutionRequiredException e) {
+      throw new MojoExecutionException("Failed to resolve runtime class path", e);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the command line arguments for the training run, creating an empty file for each
+   * input slot without a training input and the directory for the output slot files.
+   */
+  protected List<String> getTrainingArguments(ToolManifest manifest, File trainingDirectory)
+      throws IOException, MojoExecutionException {
+    Map<String, String> overrides =
+        trainingArguments != null ? trainingArguments : Collections.emptyMap();
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+    List<String> result = new ArrayList<>();
+    for (ParameterDefinition parameter : manifest.getParameters()) {
+      String value = overrides.get(parameter.getName());
+      if (value == null)
+        value = getDefaultValue(parameter, today);
+      if (value == null && Boolean.TRUE.equals(parameter.getRequired()))
+        value = getRequiredValue(parameter, today);
+      if (value == null)
+        continue;
+      result.add("--" + parameter.getName());
+      result.add(value);
+    }
+
+    File inputDirectory = new File(trainingDirectory, "inputs");
+    Files.createDirectories(inputDirectory.toPath());
+    for (Slot input : manifest.getInputs()) {
+      File inputFile;
+      if (trainingInputs != null && trainingInputs.containsKey(input.getName())) {
+        inputFile = new File(project.getBasedir(), trainingInputs.get(input.getName()));
+      } else {
+        inputFile = new File(inputDirectory, input.getExtensions().isEmpty() ? input.getName()
+            : input.getName() + "." + input.getExtensions().get(0));
+        Files.write(inputFile.toPath(), new byte[0]);
+      }
+      result.add("--" + input.getName());
+      result.add(inputFile.getAbsolutePath());
+    }
+
+    File outputDirectory = new File(trainingDirectory, "outputs");
+    Files.createDirectories(outputDirectory.toPath());
+    for (Slot output : manifest.getOutputs()) {
+      for (String extension : output.getExtensions()) {
+        result.add("--" + output.getName() + "." + extension);
+        result.add(
+            new File(outputDirectory, output.getName() + "." + extension).getAbsolutePath());
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the environment for the training run: defaults, overridden by training values, and a
+   * placeholder for required variables and secrets with neither
+   */
+  protected Map<String, String> getTrainingEnvironment(ToolManifest manifest) {
+    Map<String, String> overrides =
+        trainingEnvironment != null ? trainingEnvironment : Collections.emptyMap();
+
+    Map<String, String> result = new LinkedHashMap<>();
+    if (manifest.getEnvironment() != null && manifest.getEnvironment().getVariables() != null) {
+      for (ContainerVersionVariable variable : manifest.getEnvironment().getVariables()) {
+        String value = overrides.getOrDefault(variable.getName(), variable.getDefault());
+        if (value == null && Boolean.TRUE.equals(variable.getRequired()))
+          value = "training";
+        if (value != null)
+          result.put(variable.getName(), value);
+      }
+    }
+    if (manifest.getEnvironment() != null && manifest.getEnvironment().getSecrets() != null) {
+      for (ContainerVersionSecret secret : manifest.getEnvironment().getSecrets()) {
+        String value = overrides.get(secret.getName());
+        if (value == null && Boolean.TRUE.equals(secret.getRequired()))
+          value = "training";
+        if (value != null)
+          result.put(secret.getName(), value);
+      }
+    }
+    return result;
+  }
+
+  private static String getDefaultValue(ParameterDefinition parameter, LocalDate today) {
+    Object value;
+    switch (parameter.getType()) {
+      case BOOLEAN:
+        value = ((BooleanParameterDefinition) parameter).getDefault();
+        break;
+      case INT:
+        value = ((IntParameterDefinition) parameter).getDefault();
+        break;
+      case FLOAT:
+        value = ((FloatParameterDefinition) parameter).getDefault();
+        break;
+      case DATE:
+        DateExpr defaultDate = ((DateParameterDefinition) parameter).getDefault();
+        value = defaultDate != null ? evaluateDateExpr(defaultDate, today) : null;
+        break;
+      case STRING:
+        value = ((StringParameterDefinition) parameter).getDefault();
+        break;
+      default:
+        throw new AssertionError(parameter.getType());
+    }
+    return value != null ? value.toString() : null;
+  }
+
+  /**
+   * Returns a valid value for a required parameter without a default: the minimum, or else the
+   * maximum, of a bounded parameter, the first value of an enumeration, and otherwise a neutral
+   * value of the right type
+   */
+  private static String getRequiredValue(ParameterDefinition parameter, LocalDate today)
+      throws MojoExecutionException {
+    switch (parameter.getType()) {
+      case BOOLEAN:
+        return "false";
+      case INT:
+        IntParameterDefinition intParameter = (IntParameterDefinition) parameter;
+        return String.valueOf(intParameter.getMinimum() != null ? intParameter.getMinimum()
+            : intParameter.getMaximum() != null ? intParameter.getMaximum() : 0L);
+      case FLOAT:
+        FloatParameterDefinition floatParameter = (FloatParameterDefinition) parameter;
+        return String.valueOf(floatParameter.getMinimum() != null ? floatParameter.getMinimum()
+            : floatParameter.getMaximum() != null ? floatParameter.getMaximum() : 0.0);
+      case DATE:
+        DateParameterDefinition dateParameter = (DateParameterDefinition) parameter;
+        DateExpr bound = dateParameter.getMinimum() != null ? dateParameter.getMinimum()
+            : dateParameter.getMaximum();
+        return (bound != null ? evaluateDateExpr(bound, today) : today).toString();
+      case STRING:
+        StringParameterDefinition stringParameter = (StringParameterDefinition) parameter;
+        if (stringParameter.getDomain() == null)
+          return "training";
+        if (stringParameter.getDomain().getType() == StringDomainType.ENUMERATION
+            && !((EnumerationStringDomain) stringParameter.getDomain()).getValues().isEmpty())
+          return ((EnumerationStringDomain) stringParameter.getDomain()).getValues().get(0);
+        throw new MojoExecutionException("Required parameter " + parameter.getName()
+            + " has no default, give it a value in trainingArguments");
+      default:
+        throw new AssertionError(parameter.getType());
+    }
+  }
+
+  private static LocalDate evaluateDateExpr(DateExpr e, LocalDate today) {
+    switch (e.getType()) {
+      case ABSOLUTE:
+        return ((AbsoluteDateExpr) e).getValue();
+      case RELATIVE:
+        RelativeDateExpr relative = (RelativeDateExpr) e;
+        switch (relative.getUnit()) {
+          case DAY:
+            return today.plusDays(relative.getAmount());
+          case WEEK:
+            return today.plusWeeks(relative.getAmount());
+          case MONTH:
+            return today.plusMonths(relative.getAmount());
+          case YEAR:
+            return today.plusYears(relative.getAmount());
+          default:
+            throw new AssertionError(relative.getUnit());
+        }
+      case TODAY:
+        return today;
+      default:
+        throw new AssertionError(e.getType());
+    }
+  }
+}
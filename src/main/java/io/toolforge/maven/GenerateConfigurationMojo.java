@@ -19,48 +19,21 @@
  */
 package io.toolforge.maven;
 
-import java.io.File;
-import java.io.IOException;
-import org.apache.maven.execution.MavenSession;
-import org.apache.maven.plugin.AbstractMojo;
-import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.project.MavenProject;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.squareup.javapoet.ClassName;
-import com.squareup.javapoet.JavaFile;
-import com.squareup.javapoet.TypeSpec;
-import io.toolforge.spi.model.Manifest;
-import io.toolforge.spi.model.ManifestType;
-import io.toolforge.spi.model.ToolManifest;
 
 /**
- * Generates the graphemes.json file used by emoji4j-core
+ * Generates a discourse configuration class from the tool manifest. Generation is skipped when the
+ * fingerprint of the manifest, the plugin parameters, and the plugin version matches the one
+ * recorded by the previous execution.
  */
-@Mojo(name = "configuration", defaultPhase = LifecyclePhase.GENERATE_SOURCES)
-public class GenerateConfigurationMojo extends AbstractMojo {
-  private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
-
-  // Current maven project
-  @Parameter(defaultValue = "${project}", readonly = true)
-  protected MavenProject project;
-
-  // Current maven project
-  @Parameter(property = "session")
-  protected MavenSession session;
-
-  // Current mojo execution
-  @Parameter(property = "mojoExecution")
-  protected MojoExecution execution;
-
-  @Parameter(property = "toolforge.target.directory", defaultValue = "target/generated-sources")
-  private String outputDirectory;
-
+@Mojo(name = "configuration", defaultPhase = LifecyclePhase.GENERATE_SOURCES,
+    threadSafe = true)
+public class GenerateConfigurationMojo extends AbstractConfigurationMojo {
   @Parameter(property = "toolforge.location.manifest", defaultValue = "manifest.yml")
   private String manifestLocation;
 
@@ -70,40 +43,18 @@ public class GenerateConfigurationMojo extends AbstractMojo {
   @Parameter(property = "toolforge.target.class", defaultValue = "Configuration")
   private String outputClassName;
 
+  @Parameter(property = "toolforge.location.fingerprint",
+      defaultValue = "target/toolforge/configuration.fingerprint")
+  private String fingerprintLocation;
+
   @Override
   public void execute() throws MojoExecutionException, MojoFailureException {
-    File basedir = session.getCurrentProject().getBasedir();
-
-    File manifestFile = new File(basedir, this.manifestLocation);
-
-    File outputDirectory = new File(basedir, this.outputDirectory);
-
-    Manifest m;
-    try {
-      m = YAML.readValue(manifestFile, Manifest.class);
-    } catch (IOException e) {
-      throw new MojoExecutionException("Failed to read manifest from " + this.manifestLocation, e);
-    }
-
-    if (m.getType() != ManifestType.TOOL)
-      throw new MojoExecutionException("Expected manifest with type tool, found " + m.getType());
-
-    ToolManifest manifest = (ToolManifest) m;
-
     ClassName configurationName = ClassName.get(outputPackage, outputClassName);
 
-    TypeSpec configurationType =
-        new CodeGenerator(configurationName).generateConfiguration(manifest);
-
-    JavaFile configurationFile = JavaFile.builder(outputPackage, configurationType).build();
+    generateConfiguration(manifestLocation, configurationName, fingerprintLocation);
 
-    try {
-      configurationFile.writeTo(outputDirectory);
-    } catch (IOException e) {
-      throw new MojoExecutionException(
-          "Failed to write generated source file to " + this.outputDirectory, e);
-    }
+    project.addCompileSourceRoot(this.outputDirectory);
 
-    session.getCurrentProject().addCompileSourceRoot(this.outputDirectory);
+    addResourceRoot();
   }
 }
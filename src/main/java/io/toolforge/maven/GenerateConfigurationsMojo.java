@@ -0,0 +1,240 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import com.squareup.javapoet.ClassName;
+
+/**
+ * Generates one discourse configuration class per tool manifest for modules that hold many
+ * manifests, e.g. one per tool variant. Manifests are parsed and generated in parallel, and all
+ * failures are reported together. The generated files are written on the mojo's own thread.
+ */
+@Mojo(name = "configurations", defaultPhase = LifecyclePhase.GENERATE_SOURCES,
+    threadSafe = true)
+public class GenerateConfigurationsMojo extends AbstractConfigurationMojo {
+  @Parameter(required = true)
+  private List<ManifestSet> manifests;
+
+  @Parameter(property = "toolforge.location.fingerprints",
+      defaultValue = "target/toolforge/fingerprints")
+  private String fingerprintDirectory;
+
+  /**
+   * The maximum number of manifests to generate at once. Defaults to the number of processors.
+   */
+  @Parameter(property = "toolforge.threads", defaultValue = "0")
+  private int threads;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    Map<ClassName, String> targets = resolveTargets();
+
+    if (!targets.isEmpty()) {
+      int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+      ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, targets.size()));
+      try {
+        // Check the build delta, and write and report the results, on this thread, since an IDE
+        // binds its BuildContext to the thread that runs the mojo
+        Map<ClassName, Future<Rendering>> tasks = new LinkedHashMap<>();
+        for (Map.Entry<ClassName, String> target : targets.entrySet()) {
+          ClassName configurationName = target.getKey();
+          String manifestLocation = target.getValue();
+          if (!isInDelta(manifestLocation, configurationName))
+            continue;
+          tasks.put(configurationName,
+              pool.submit(() -> renderConfiguration(manifestLocation, configurationName,
+                  fingerprintDirectory + "/" + configurationName.reflectionName()
+                      + ".fingerprint")));
+        }
+
+        List<String> failures = new ArrayList<>();
+        List<Throwable> causes = new ArrayList<>();
+        for (Map.Entry<ClassName, Future<Rendering>> task : tasks.entrySet()) {
+          String manifestLocation = targets.get(task.getKey());
+          try {
+            writeConfiguration(task.getValue().get());
+          } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // The pool wraps checked exceptions in plain runtime exceptions
+            while (cause.getClass() == RuntimeException.class && cause.getCause() != null)
+              cause = cause.getCause();
+            if (cause instanceof MojoExecutionException)
+              reportFailure(manifestLocation, (MojoExecutionException) cause);
+            failures.add(manifestLocation + ": " + cause.getMessage());
+            causes.add(cause);
+          } catch (MojoExecutionException e) {
+            failures.add(manifestLocation + ": " + e.getMessage());
+            causes.add(e);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while generating configurations", e);
+          }
+        }
+
+        if (!causes.isEmpty()) {
+          MojoExecutionException failure = new MojoExecutionException(
+              "Failed to generate " + failures.size() + " of " + targets.size()
+                  + " configurations:\n  " + String.join("\n  ", failures),
+              causes.get(0));
+          for (Throwable cause : causes.subList(1, causes.size()))
+            failure.addSuppressed(cause);
+          throw failure;
+        }
+      } finally {
+        pool.shutdown();
+      }
+    }
+
+    project.addCompileSourceRoot(this.outputDirectory);
+
+    addResourceRoot();
+  }
+
+  /**
+   * Each configuration gets its own native image directory, since several configurations generated
+   * in parallel cannot share one file.
+   */
+  @Override
+  protected String getNativeImageConfigPath(ClassName configurationName) {
+    return super.getNativeImageConfigPath(configurationName) + "/"
+        + configurationName.reflectionName();
+  }
+
+  /**
+   * Expands the configured manifest sets into individual manifests, keyed by the class that will
+   * be generated for each.
+   */
+  private Map<ClassName, String> resolveTargets() throws MojoExecutionException {
+    Path basedir = getBasedir().toPath();
+
+    Map<ClassName, String> result = new LinkedHashMap<>();
+    for (ManifestSet manifestSet : manifests) {
+      if (manifestSet.getLocation() == null || manifestSet.getOutputPackage() == null)
+        throw new MojoExecutionException("Every manifest must have a location and outputPackage");
+
+      List<String> locations;
+      try {
+        locations = expand(basedir, manifestSet.getLocation());
+      } catch (IOException e) {
+        throw new MojoExecutionException("Failed to list manifests " + manifestSet.getLocation(),
+            e);
+      }
+
+      if (locations.isEmpty())
+        getLog().warn("No manifests match " + manifestSet.getLocation());
+      if (locations.size() > 1 && manifestSet.getOutputClassName() != null)
+        throw new MojoExecutionException("Location " + manifestSet.getLocation()
+            + " matches more than one manifest, so outputClassName must not be given");
+
+      for (String location : locations) {
+        String simpleName = manifestSet.getOutputClassName() != null
+            ? manifestSet.getOutputClassName()
+            : defaultClassName(location);
+        ClassName configurationName = ClassName.get(manifestSet.getOutputPackage(), simpleName);
+
+        String previous = result.put(configurationName, location);
+        if (previous != null)
+          throw new MojoExecutionException("Manifests " + previous + " and " + location
+              + " both generate " + configurationName);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the manifest locations, relative to the base directory, that match the given location.
+   * Only the directory below the part of the location that contains no glob characters is walked.
+   */
+  private static List<String> expand(Path basedir, String location) throws IOException {
+    String glob = location.replace(File.separatorChar, '/');
+
+    int wildcard = indexOfAny(glob, "*?[{");
+    if (wildcard == -1)
+      return Files.isRegularFile(basedir.resolve(location))
+          ? Collections.singletonList(location)
+          : Collections.emptyList();
+
+    Path root = basedir.resolve(glob.substring(0, glob.lastIndexOf('/', wildcard) + 1));
+    if (!Files.isDirectory(root))
+      return Collections.emptyList();
+
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    try (Stream<Path> paths = Files.walk(root)) {
+      return paths.filter(Files::isRegularFile).map(basedir::relativize).filter(matcher::matches)
+          .map(p -> p.toString().replace(File.separatorChar, '/')).sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static int indexOfAny(String s, String chars) {
+    for (int i = 0; i < s.length(); i++)
+      if (chars.indexOf(s.charAt(i)) != -1)
+        return i;
+    return -1;
+  }
+
+  /**
+   * Names the class for a manifest after its file, or after its directory if the file is simply
+   * named {@code manifest}, e.g. {@code tools/word-count/manifest.yml} becomes
+   * {@code WordCountConfiguration}.
+   */
+  static String defaultClassName(String location) {
+    String[] parts = location.split("/");
+
+    String name = parts[parts.length - 1];
+    if (name.lastIndexOf('.') != -1)
+      name = name.substring(0, name.lastIndexOf('.'));
+    if (name.equals("manifest") && parts.length > 1)
+      name = parts[parts.length - 2];
+
+    StringBuilder result = new StringBuilder();
+    for (String word : name.split("[^A-Za-z0-9]+")) {
+      if (word.isEmpty())
+        continue;
+      result.append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+    }
+    if (result.length() == 0 || !Character.isJavaIdentifierStart(result.charAt(0)))
+      result.insert(0, "Tool");
+
+    return result.append("Configuration").toString();
+  }
+}
@@ -0,0 +1,167 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Timings and sizes for the generation of one configuration class, serialized as the JSON metrics
+ * file so that CI can aggregate plugin overhead across modules.
+ */
+@JsonPropertyOrder({"manifest", "configurationClass", "pluginVersion", "skipped", "written",
+    "manifestBytes", "parameterCount", "inputSlotCount", "outputSlotCount",
+    "generatedSourceBytes", "totalNanos", "phaseNanos"})
+public class GenerationMetrics {
+  public static final String READ = "read";
+  public static final String PARSE = "parse";
+  public static final String GENERATE = "generate";
+  public static final String RENDER = "render";
+  public static final String WRITE = "write";
+
+  private final String manifest;
+  private final String configurationClass;
+  private final String pluginVersion;
+  private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+  private boolean skipped;
+  private boolean written;
+  private long manifestBytes;
+  private int parameterCount;
+  private int inputSlotCount;
+  private int outputSlotCount;
+  private long generatedSourceBytes;
+  private long phaseStart;
+
+  public GenerationMetrics(String manifest, String configurationClass, String pluginVersion) {
+    this.manifest = manifest;
+    this.configurationClass = configurationClass;
+    this.pluginVersion = pluginVersion;
+    this.phaseStart = System.nanoTime();
+  }
+
+  /**
+   * Records the time since the previous phase ended as the duration of the given phase.
+   */
+  public void phase(String name) {
+    long now = System.nanoTime();
+    phaseNanos.merge(name, now - phaseStart, Long::sum);
+    phaseStart = now;
+  }
+
+  /**
+   * Starts timing the next phase now, so that the time since the last phase is not counted.
+   */
+  public void resume() {
+    phaseStart = System.nanoTime();
+  }
+
+  /**
+   * @return a one-line summary of the phase timings in milliseconds
+   */
+  public String summary() {
+    StringBuilder result = new StringBuilder();
+    result.append(TimeUnit.NANOSECONDS.toMillis(getTotalNanos())).append(" ms");
+    String separator = " (";
+    for (Map.Entry<String, Long> phase : phaseNanos.entrySet()) {
+      result.append(separator).append(phase.getKey()).append(" ")
+          .append(TimeUnit.NANOSECONDS.toMillis(phase.getValue())).append(" ms");
+      separator = ", ";
+    }
+    return phaseNanos.isEmpty() ? result.toString() : result.append(")").toString();
+  }
+
+  public String getManifest() {
+    return manifest;
+  }
+
+  public String getConfigurationClass() {
+    return configurationClass;
+  }
+
+  public String getPluginVersion() {
+    return pluginVersion;
+  }
+
+  public Map<String, Long> getPhaseNanos() {
+    return phaseNanos;
+  }
+
+  public long getTotalNanos() {
+    return phaseNanos.values().stream().mapToLong(Long::longValue).sum();
+  }
+
+  public boolean isSkipped() {
+    return skipped;
+  }
+
+  public void setSkipped(boolean skipped) {
+    this.skipped = skipped;
+  }
+
+  public boolean isWritten() {
+    return written;
+  }
+
+  public void setWritten(boolean written) {
+    this.written = written;
+  }
+
+  public long getManifestBytes() {
+    return manifestBytes;
+  }
+
+  public void setManifestBytes(long manifestBytes) {
+    this.manifestBytes = manifestBytes;
+  }
+
+  public int getParameterCount() {
+    return parameterCount;
+  }
+
+  public void setParameterCount(int parameterCount) {
+    this.parameterCount = parameterCount;
+  }
+
+  public int getInputSlotCount() {
+    return inputSlotCount;
+  }
+
+  public void setInputSlotCount(int inputSlotCount) {
+    this.inputSlotCount = inputSlotCount;
+  }
+
+  public int getOutputSlotCount() {
+    return outputSlotCount;
+  }
+
+  public void setOutputSlotCount(int outputSlotCount) {
+    this.outputSlotCount = outputSlotCount;
+  }
+
+  public long getGeneratedSourceBytes() {
+    return generatedSourceBytes;
+  }
+
+  public void setGeneratedSourceBytes(long generatedSourceBytes) {
+    this.generatedSourceBytes = generatedSourceBytes;
+  }
+}
@@ -0,0 +1,429 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.util.Objects;
+
+/**
+ * Opt-in features for {@link CodeGenerator}. With the defaults, the generated class is a plain
+ * discourse configuration class. A generator copies its options when it is created, so changing an
+ * options object afterwards does not affect generators already built from it.
+ */
+public class GeneratorOptions {
+  /**
+   * Generate a static, reflection-free {@code parse} factory method
+   */
+  private boolean parser;
+
+  /**
+   * Generate primitive boolean, int, and float parameters with a presence bitmask
+   */
+  private boolean primitives;
+
+  /**
+   * Generate a nested enum for each enumeration string parameter
+   */
+  private boolean enums;
+
+  /**
+   * Generate hand-written matchers for simple pattern string domains
+   */
+  private boolean matchers;
+
+  /**
+   * Generate constructors that take the clock for relative date bounds
+   */
+  private boolean clock;
+
+  /**
+   * Generate a worker class that serves JSON job requests, which implies the {@code parse} method
+   */
+  private boolean worker;
+
+  /**
+   * Generate initialization-on-demand holder classes for prepared constants instead of static
+   * fields, so they are only computed when first used
+   */
+  private boolean lazyConstants;
+
+  /**
+   * Store enumeration domains with more than this many values in a binary resource instead
+   * of a set, or never if zero
+   */
+  private int enumerationTableThreshold;
+
+  /**
+   * Generate a {@code validateInto} method that records violations in a {@code ValidationResult}
+   * instead of throwing, with {@code validate} as a wrapper
+   */
+  private boolean validationResult;
+
+  /**
+   * Generate {@code fingerprint} methods that hash the parameter values, and optionally the
+   * content of the inputs, for result caching
+   */
+  private boolean configurationFingerprint;
+
+  /**
+   * Generate JDK Flight Recorder events that time static initialization, {@code parse},
+   * {@code validate} and opening the input and output slots
+   */
+  private boolean flightRecorder;
+
+  /**
+   * Generate a nested {@code Runtime} class with the CPU and memory budget of the container size
+   * and the recommended pool sizes
+   */
+  private boolean runtime;
+
+  /**
+   * Generate streaming {@code CsvCursor} readers for input slots with csv or tsv extensions
+   */
+  private boolean csvReaders;
+
+  /**
+   * Generate streaming {@code RowWriter}s for output slots with csv, tsv or xlsx extensions
+   */
+  private boolean rowWriters;
+
+  public GeneratorOptions() {}
+
+  public GeneratorOptions(GeneratorOptions that) {
+    this.parser = that.parser;
+    this.primitives = that.primitives;
+    this.enums = that.enums;
+    this.matchers = that.matchers;
+    this.clock = that.clock;
+    this.worker = that.worker;
+    this.lazyConstants = that.lazyConstants;
+    this.enumerationTableThreshold = that.enumerationTableThreshold;
+    this.validationResult = that.validationResult;
+    this.configurationFingerprint = that.configurationFingerprint;
+    this.flightRecorder = that.flightRecorder;
+    this.runtime = that.runtime;
+    this.csvReaders = that.csvReaders;
+    this.rowWriters = that.rowWriters;
+  }
+
+  /**
+   * @return the parser
+   */
+  public boolean isParser() {
+    return parser;
+  }
+
+  /**
+   * @param parser the parser to set
+   */
+  public void setParser(boolean parser) {
+    this.parser = parser;
+  }
+
+  public GeneratorOptions parser(boolean parser) {
+    setParser(parser);
+    return this;
+  }
+
+  /**
+   * @return the primitives
+   */
+  public boolean isPrimitives() {
+    return primitives;
+  }
+
+  /**
+   * @param primitives the primitives to set
+   */
+  public void setPrimitives(boolean primitives) {
+    this.primitives = primitives;
+  }
+
+  public GeneratorOptions primitives(boolean primitives) {
+    setPrimitives(primitives);
+    return this;
+  }
+
+  /**
+   * @return the enums
+   */
+  public boolean isEnums() {
+    return enums;
+  }
+
+  /**
+   * @param enums the enums to set
+   */
+  public void setEnums(boolean enums) {
+    this.enums = enums;
+  }
+
+  public GeneratorOptions enums(boolean enums) {
+    setEnums(enums);
+    return this;
+  }
+
+  /**
+   * @return the matchers
+   */
+  public boolean isMatchers() {
+    return matchers;
+  }
+
+  /**
+   * @param matchers the matchers to set
+   */
+  public void setMatchers(boolean matchers) {
+    this.matchers = matchers;
+  }
+
+  public GeneratorOptions matchers(boolean matchers) {
+    setMatchers(matchers);
+    return this;
+  }
+
+  /**
+   * @return the clock
+   */
+  public boolean isClock() {
+    return clock;
+  }
+
+  /**
+   * @param clock the clock to set
+   */
+  public void setClock(boolean clock) {
+    this.clock = clock;
+  }
+
+  public GeneratorOptions clock(boolean clock) {
+    setClock(clock);
+    return this;
+  }
+
+  /**
+   * @return the worker
+   */
+  public boolean isWorker() {
+    return worker;
+  }
+
+  /**
+   * @param worker the worker to set
+   */
+  public void setWorker(boolean worker) {
+    this.worker = worker;
+  }
+
+  public GeneratorOptions worker(boolean worker) {
+    setWorker(worker);
+    return this;
+  }
+
+  /**
+   * @return the lazyConstants
+   */
+  public boolean isLazyConstants() {
+    return lazyConstants;
+  }
+
+  /**
+   * @param lazyConstants the lazyConstants to set
+   */
+  public void setLazyConstants(boolean lazyConstants) {
+    this.lazyConstants = lazyConstants;
+  }
+
+  public GeneratorOptions lazyConstants(boolean lazyConstants) {
+    setLazyConstants(lazyConstants);
+    return this;
+  }
+
+  /**
+   * @return the enumerationTableThreshold
+   */
+  public int getEnumerationTableThreshold() {
+    return enumerationTableThreshold;
+  }
+
+  /**
+   * @param enumerationTableThreshold the enumerationTableThreshold to set
+   */
+  public void setEnumerationTableThreshold(int enumerationTableThreshold) {
+    if (enumerationTableThreshold < 0)
+      throw new IllegalArgumentException("enumerationTableThreshold must not be negative");
+    this.enumerationTableThreshold = enumerationTableThreshold;
+  }
+
+  public GeneratorOptions enumerationTableThreshold(int enumerationTableThreshold) {
+    setEnumerationTableThreshold(enumerationTableThreshold);
+    return this;
+  }
+
+  /**
+   * @return the validationResult
+   */
+  public boolean isValidationResult() {
+    return validationResult;
+  }
+
+  /**
+   * @param validationResult the validationResult to set
+   */
+  public void setValidationResult(boolean validationResult) {
+    this.validationResult = validationResult;
+  }
+
+  public GeneratorOptions validationResult(boolean validationResult) {
+    setValidationResult(validationResult);
+    return this;
+  }
+
+  /**
+   * @return the configurationFingerprint
+   */
+  public boolean isConfigurationFingerprint() {
+    return configurationFingerprint;
+  }
+
+  /**
+   * @param configurationFingerprint the configurationFingerprint to set
+   */
+  public void setConfigurationFingerprint(boolean configurationFingerprint) {
+    this.configurationFingerprint = configurationFingerprint;
+  }
+
+  public GeneratorOptions configurationFingerprint(boolean configurationFingerprint) {
+    setConfigurationFingerprint(configurationFingerprint);
+    return this;
+  }
+
+  /**
+   * @return the flightRecorder
+   */
+  public boolean isFlightRecorder() {
+    return flightRecorder;
+  }
+
+  /**
+   * @param flightRecorder the flightRecorder to set
+   */
+  public void setFlightRecorder(boolean flightRecorder) {
+    this.flightRecorder = flightRecorder;
+  }
+
+  public GeneratorOptions flightRecorder(boolean flightRecorder) {
+    setFlightRecorder(flightRecorder);
+    return this;
+  }
+
+  /**
+   * @return the runtime
+   */
+  public boolean isRuntime() {
+    return runtime;
+  }
+
+  /**
+   * @param runtime the runtime to set
+   */
+  public void setRuntime(boolean runtime) {
+    this.runtime = runtime;
+  }
+
+  public GeneratorOptions runtime(boolean runtime) {
+    setRuntime(runtime);
+    return this;
+  }
+
+  /**
+   * @return the csvReaders
+   */
+  public boolean isCsvReaders() {
+    return csvReaders;
+  }
+
+  /**
+   * @param csvReaders the csvReaders to set
+   */
+  public void setCsvReaders(boolean csvReaders) {
+    this.csvReaders = csvReaders;
+  }
+
+  public GeneratorOptions csvReaders(boolean csvReaders) {
+    setCsvReaders(csvReaders);
+    return this;
+  }
+
+  /**
+   * @return the rowWriters
+   */
+  public boolean isRowWriters() {
+    return rowWriters;
+  }
+
+  /**
+   * @param rowWriters the rowWriters to set
+   */
+  public void setRowWriters(boolean rowWriters) {
+    this.rowWriters = rowWriters;
+  }
+
+  public GeneratorOptions rowWriters(boolean rowWriters) {
+    setRowWriters(rowWriters);
+    return this;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(parser, primitives, enums, matchers, clock, worker, lazyConstants,
+        enumerationTableThreshold, validationResult, configurationFingerprint, flightRecorder,
+        runtime, csvReaders, rowWriters);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    GeneratorOptions other = (GeneratorOptions) obj;
+    return parser == other.parser && primitives == other.primitives && enums == other.enums
+        && matchers == other.matchers && clock == other.clock && worker == other.worker
+        && lazyConstants == other.lazyConstants
+        && enumerationTableThreshold == other.enumerationTableThreshold
+        && validationResult == other.validationResult
+        && configurationFingerprint == other.configurationFingerprint
+        && flightRecorder == other.flightRecorder && runtime == other.runtime
+        && csvReaders == other.csvReaders && rowWriters == other.rowWriters;
+  }
+
+  @Override
+  public String toString() {
+    return "GeneratorOptions [parser=" + parser + ", primitives=" + primitives + ", enums="
+        + enums + ", matchers=" + matchers + ", clock=" + clock
+        + ", worker=" + worker + ", lazyConstants=" + lazyConstants
+        + ", enumerationTableThreshold=" + enumerationTableThreshold + ", validationResult="
+        + validationResult + ", configurationFingerprint=" + configurationFingerprint
+        + ", flightRecorder=" + flightRecorder + ", runtime=" + runtime + ", csvReaders="
+        + csvReaders + ", rowWriters=" + rowWriters + "]";
+  }
+}
@@ -0,0 +1,85 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+/**
+ * One entry of the {@code manifests} list of the {@code configurations} goal. The location may be a
+ * single manifest file or a glob that matches many manifest files relative to the project base
+ * directory, e.g. {@code tools/*&#47;manifest.yml}.
+ */
+public class ManifestSet {
+  /**
+   * The manifest file or glob, relative to the project base directory
+   */
+  private String location;
+
+  /**
+   * The package of the generated configuration classes
+   */
+  private String outputPackage;
+
+  /**
+   * The simple name of the generated configuration class. If the location matches more than one
+   * manifest, this must be left blank, and each class is named after its manifest file instead.
+   */
+  private String outputClassName;
+
+  /**
+   * @return the location
+   */
+  public String getLocation() {
+    return location;
+  }
+
+  /**
+   * @param location the location to set
+   */
+  public void setLocation(String location) {
+    this.location = location;
+  }
+
+  /**
+   * @return the outputPackage
+   */
+  public String getOutputPackage() {
+    return outputPackage;
+  }
+
+  /**
+   * @param outputPackage the outputPackage to set
+   */
+  public void setOutputPackage(String outputPackage) {
+    this.outputPackage = outputPackage;
+  }
+
+  /**
+   * @return the outputClassName
+   */
+  public String getOutputClassName() {
+    return outputClassName;
+  }
+
+  /**
+   * @param outputClassName the outputClassName to set
+   */
+  public void setOutputClassName(String outputClassName) {
+    this.outputClassName = outputClassName;
+  }
+}
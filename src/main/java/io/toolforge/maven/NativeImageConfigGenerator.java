@@ -0,0 +1,184 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import static java.util.Objects.requireNonNull;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import javax.lang.model.element.Modifier;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+/**
+ * Derives GraalVM native-image metadata from a generated configuration class. The discourse
+ * binder finds the configuration's fields and setters through their annotations and converts
+ * option values with the field types' public factory methods, so all of those must be registered
+ * for reflection in a native image.
+ */
+public class NativeImageConfigGenerator {
+  public static final String REFLECT_CONFIG = "reflect-config.json";
+
+  public static final String RESOURCE_CONFIG = "resource-config.json";
+
+  private final ClassName className;
+
+  public NativeImageConfigGenerator(ClassName className) {
+    this.className = requireNonNull(className);
+  }
+
+  /**
+   * @return the native-image configuration files for the given generated type, by file name
+   */
+  public Map<String, JsonNode> generateConfigs(TypeSpec configurationType) {
+    return generateConfigs(configurationType, Collections.emptyList());
+  }
+
+  /**
+   * @param resources the paths of the resources the generated type loads, relative to the
+   *        classpath root
+   * @return the native-image configuration files for the given generated type, by file name
+   */
+  public Map<String, JsonNode> generateConfigs(TypeSpec configurationType,
+      Collection<String> resources) {
+    Map<String, JsonNode> result = new LinkedHashMap<>();
+    result.put(REFLECT_CONFIG, generateReflectConfig(configurationType));
+    if (!resources.isEmpty())
+      result.put(RESOURCE_CONFIG, generateResourceConfig(resources));
+    return result;
+  }
+
+  /**
+   * Includes the given resources in the native image by exact name
+   */
+  public ObjectNode generateResourceConfig(Collection<String> resources) {
+    ObjectNode result = JsonNodeFactory.instance.objectNode();
+    ArrayNode includes = result.putObject("resources").putArray("includes");
+    for (String resource : new TreeSet<>(resources))
+      includes.addObject().put("pattern", Pattern.quote(resource));
+    return result;
+  }
+
+  /**
+   * Registers the configuration class and its nested types with all members, the public members of
+   * the types of their bound fields, and the methods of the binding annotations. Entries are sorted
+   * by name so that the output is stable across builds.
+   */
+  public ArrayNode generateReflectConfig(TypeSpec configurationType) {
+    Map<String, ObjectNode> entries = new LinkedHashMap<>();
+    Set<String> fieldTypes = new TreeSet<>();
+    Set<String> annotationTypes = new TreeSet<>();
+
+    collect(getClassName(), configurationType, entries, fieldTypes, annotationTypes);
+
+    for (String fieldType : fieldTypes)
+      entries.computeIfAbsent(fieldType, NativeImageConfigGenerator::newTypeEntry);
+
+    for (String annotationType : annotationTypes)
+      entries.computeIfAbsent(annotationType, NativeImageConfigGenerator::newAnnotationEntry);
+
+    ArrayNode result = JsonNodeFactory.instance.arrayNode();
+    entries.values().forEach(result::add);
+    return result;
+  }
+
+  private static void collect(ClassName name, TypeSpec type, Map<String, ObjectNode> entries,
+      Set<String> fieldTypes, Set<String> annotationTypes) {
+    entries.put(name.reflectionName(), newGeneratedEntry(name.reflectionName()));
+
+    for (AnnotationSpec annotation : type.annotations)
+      addAnnotationType(annotation, annotationTypes);
+
+    for (FieldSpec field : type.fieldSpecs) {
+      if (field.modifiers.contains(Modifier.STATIC))
+        continue;
+      for (AnnotationSpec annotation : field.annotations)
+        addAnnotationType(annotation, annotationTypes);
+      addFieldType(field.type, fieldTypes);
+    }
+
+    for (MethodSpec method : type.methodSpecs)
+      for (AnnotationSpec annotation : method.annotations)
+        addAnnotationType(annotation, annotationTypes);
+
+    for (TypeSpec nestedType : type.typeSpecs)
+      collect(name.nestedClass(nestedType.name), nestedType, entries, fieldTypes, annotationTypes);
+  }
+
+  private static void addAnnotationType(AnnotationSpec annotation, Set<String> annotationTypes) {
+    if (annotation.type instanceof ClassName
+        && !((ClassName) annotation.type).packageName().equals("java.lang"))
+      annotationTypes.add(((ClassName) annotation.type).reflectionName());
+  }
+
+  private static void addFieldType(TypeName type, Set<String> fieldTypes) {
+    if (type instanceof ParameterizedTypeName)
+      type = ((ParameterizedTypeName) type).rawType;
+    if (type.isPrimitive())
+      return;
+    if (type instanceof ClassName && !type.equals(ClassName.get(String.class)))
+      fieldTypes.add(((ClassName) type).reflectionName());
+  }
+
+  private static ObjectNode newGeneratedEntry(String name) {
+    ObjectNode result = JsonNodeFactory.instance.objectNode();
+    result.put("name", name);
+    result.put("allDeclaredConstructors", true);
+    result.put("allPublicConstructors", true);
+    result.put("allDeclaredFields", true);
+    result.put("allPublicFields", true);
+    result.put("allDeclaredMethods", true);
+    result.put("allPublicMethods", true);
+    return result;
+  }
+
+  private static ObjectNode newTypeEntry(String name) {
+    ObjectNode result = JsonNodeFactory.instance.objectNode();
+    result.put("name", name);
+    result.put("allPublicConstructors", true);
+    result.put("allPublicMethods", true);
+    return result;
+  }
+
+  private static ObjectNode newAnnotationEntry(String name) {
+    ObjectNode result = JsonNodeFactory.instance.objectNode();
+    result.put("name", name);
+    result.put("allDeclaredMethods", true);
+    result.put("queryAllDeclaredMethods", true);
+    return result;
+  }
+
+  private ClassName getClassName() {
+    return className;
+  }
+}
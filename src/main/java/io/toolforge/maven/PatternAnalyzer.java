@@ -0,0 +1,401 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import static java.util.Collections.unmodifiableList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Recognizes the simple regular expressions that can be matched without {@link java.util.regex}.
+ * A simple pattern is an optionally anchored sequence of literals, character classes, {@code .},
+ * and the {@code \d}, {@code \w}, and {@code \s} escapes, each with an optional greedy
+ * quantifier. Groups, alternation, lazy or possessive quantifiers, flags, and non-ASCII literals
+ * are not simple.
+ *
+ * <p>
+ * A simple pattern is also required to be deterministic: the characters a variable-length term
+ * accepts must be disjoint from the characters every following term up to the next mandatory one
+ * accepts. A greedy scan without backtracking then matches exactly the strings that
+ * {@code Pattern.matcher(s).matches()} matches.
+ */
+public final class PatternAnalyzer {
+  private PatternAnalyzer() {}
+
+  /**
+   * Which characters outside of ASCII a {@link CharSet} accepts
+   */
+  public static enum NonAscii {
+    NONE, ALL_BUT_LINE_TERMINATORS, ALL;
+  }
+
+  /**
+   * A set of characters: a set of ASCII characters and a rule for all others
+   */
+  public static final class CharSet {
+    private final BitSet ascii;
+    private final NonAscii nonAscii;
+
+    private CharSet(BitSet ascii, NonAscii nonAscii) {
+      this.ascii = ascii;
+      this.nonAscii = nonAscii;
+    }
+
+    /**
+     * @return a copy of the ASCII characters in this set
+     */
+    public BitSet getAscii() {
+      return (BitSet) ascii.clone();
+    }
+
+    public NonAscii getNonAscii() {
+      return nonAscii;
+    }
+
+    /**
+     * @return the only character in this set, or -1 if the set has more or fewer characters
+     */
+    public int singleChar() {
+      return nonAscii == NonAscii.NONE && ascii.cardinality() == 1 ? ascii.nextSetBit(0) : -1;
+    }
+
+    public boolean intersects(CharSet that) {
+      return ascii.intersects(that.ascii)
+          || (nonAscii != NonAscii.NONE && that.nonAscii != NonAscii.NONE);
+    }
+  }
+
+  /**
+   * One character set repeated between {@code min} and {@code max} times. A {@code max} of
+   * {@link Integer#MAX_VALUE} is unbounded.
+   */
+  public static final class Term {
+    private final CharSet chars;
+    private final int min;
+    private final int max;
+
+    private Term(CharSet chars, int min, int max) {
+      this.chars = chars;
+      this.min = min;
+      this.max = max;
+    }
+
+    public CharSet getChars() {
+      return chars;
+    }
+
+    public int getMin() {
+      return min;
+    }
+
+    public int getMax() {
+      return max;
+    }
+
+    public boolean isFixed() {
+      return min == max;
+    }
+  }
+
+  /**
+   * Analyzes the given regular expression.
+   *
+   * @return the terms of the pattern if it is simple, or empty otherwise
+   */
+  public static Optional<List<Term>> analyze(String pattern) {
+    List<Term> terms;
+    try {
+      terms = new Parser(pattern).parse();
+    } catch (NotSimpleException e) {
+      return Optional.empty();
+    }
+
+    for (int i = 0; i < terms.size(); i++) {
+      Term term = terms.get(i);
+      if (term.isFixed())
+        continue;
+      for (int j = i + 1; j < terms.size(); j++) {
+        if (term.getChars().intersects(terms.get(j).getChars()))
+          return Optional.empty();
+        if (terms.get(j).getMin() > 0)
+          break;
+      }
+    }
+
+    return Optional.of(unmodifiableList(terms));
+  }
+
+  /**
+   * Thrown by the {@link Parser} as soon as a pattern turns out not to be simple
+   */
+  private static final class NotSimpleException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public NotSimpleException() {
+      super(null, null, false, false);
+    }
+  }
+
+  /**
+   * A recursive descent parser for simple patterns that throws {@link NotSimpleException} as soon
+   * as it sees anything else
+   */
+  private static final class Parser {
+    private final String pattern;
+    private int index;
+
+    public Parser(String pattern) {
+      this.pattern = pattern;
+    }
+
+    public List<Term> parse() {
+      List<Term> result = new ArrayList<>();
+      int end = pattern.length();
+      if (end > 0 && pattern.charAt(0) == '^')
+        index = 1;
+      if (end > index && pattern.charAt(end - 1) == '$' && !isEscaped(end - 1))
+        end = end - 1;
+
+      while (index < end) {
+        CharSet chars = parseAtom();
+        int min = 1;
+        int max = 1;
+        if (index < end) {
+          char ch = pattern.charAt(index);
+          if (ch == '?') {
+            min = 0;
+            index = index + 1;
+          } else if (ch == '*') {
+            min = 0;
+            max = Integer.MAX_VALUE;
+            index = index + 1;
+          } else if (ch == '+') {
+            max = Integer.MAX_VALUE;
+            index = index + 1;
+          } else if (ch == '{') {
+            int close = pattern.indexOf('}', index);
+            if (close == -1 || close >= end)
+              throw new NotSimpleException();
+            String bounds = pattern.substring(index + 1, close);
+            int comma = bounds.indexOf(',');
+            min = parseCount(comma == -1 ? bounds : bounds.substring(0, comma));
+            if (comma == -1)
+              max = min;
+            else if (comma == bounds.length() - 1)
+              max = Integer.MAX_VALUE;
+            else
+              max = parseCount(bounds.substring(comma + 1));
+            if (max < min)
+              throw new NotSimpleException();
+            index = close + 1;
+          }
+          if (index < end && (pattern.charAt(index) == '?' || pattern.charAt(index) == '+')
+              && (min != 1 || max != 1))
+            throw new NotSimpleException();
+        }
+        if (max > 0)
+          result.add(new Term(chars, min, max));
+      }
+
+      return result;
+    }
+
+    private CharSet parseAtom() {
+      char ch = pattern.charAt(index);
+      switch (ch) {
+        case '.':
+          index = index + 1;
+          BitSet dot = new BitSet(128);
+          dot.set(0, 128);
+          dot.clear('\n');
+          dot.clear('\r');
+          return new CharSet(dot, NonAscii.ALL_BUT_LINE_TERMINATORS);
+        case '[':
+          return parseClass();
+        case '\\':
+          return parseEscape();
+        case '(':
+        case ')':
+        case '|':
+        case '^':
+        case '$':
+        case '*':
+        case '+':
+        case '?':
+        case '{':
+        case '}':
+        case ']':
+          throw new NotSimpleException();
+        default:
+          index = index + 1;
+          return literal(ch);
+      }
+    }
+
+    private CharSet parseClass() {
+      index = index + 1;
+      boolean negated = index < pattern.length() && pattern.charAt(index) == '^';
+      if (negated)
+        index = index + 1;
+
+      BitSet ascii = new BitSet(128);
+      NonAscii nonAscii = NonAscii.NONE;
+      boolean first = true;
+      while (true) {
+        if (index >= pattern.length())
+          throw new NotSimpleException();
+        char ch = pattern.charAt(index);
+        if (ch == ']' && !first) {
+          index = index + 1;
+          break;
+        }
+        if (ch == '[' || ch == ']' || (ch == '&' && pattern.startsWith("&&", index)))
+          throw new NotSimpleException();
+
+        CharSet chars;
+        if (ch == '\\') {
+          chars = parseEscape();
+        } else {
+          index = index + 1;
+          chars = literal(ch);
+        }
+
+        int low = chars.singleChar();
+        if (low != -1 && index + 1 < pattern.length() && pattern.charAt(index) == '-'
+            && pattern.charAt(index + 1) != ']') {
+          index = index + 1;
+          CharSet upper;
+          if (pattern.charAt(index) == '\\') {
+            upper = parseEscape();
+          } else {
+            upper = literal(pattern.charAt(index));
+            index = index + 1;
+          }
+          int high = upper.singleChar();
+          if (high == -1 || high < low)
+            throw new NotSimpleException();
+          ascii.set(low, high + 1);
+        } else {
+          ascii.or(chars.ascii);
+          if (chars.nonAscii != NonAscii.NONE)
+            nonAscii = NonAscii.ALL;
+        }
+        first = false;
+      }
+
+      if (negated) {
+        if (nonAscii != NonAscii.NONE)
+          throw new NotSimpleException();
+        ascii.flip(0, 128);
+        nonAscii = NonAscii.ALL;
+      }
+
+      return new CharSet(ascii, nonAscii);
+    }
+
+    private CharSet parseEscape() {
+      if (index + 1 >= pattern.length())
+        throw new NotSimpleException();
+      char ch = pattern.charAt(index + 1);
+      index = index + 2;
+
+      BitSet ascii = new BitSet(128);
+      switch (ch) {
+        case 'd':
+          ascii.set('0', '9' + 1);
+          return new CharSet(ascii, NonAscii.NONE);
+        case 'D':
+          ascii.set(0, 128);
+          ascii.clear('0', '9' + 1);
+          return new CharSet(ascii, NonAscii.ALL);
+        case 'w':
+          setWordChars(ascii);
+          return new CharSet(ascii, NonAscii.NONE);
+        case 'W':
+          ascii.set(0, 128);
+          BitSet word = new BitSet(128);
+          setWordChars(word);
+          ascii.andNot(word);
+          return new CharSet(ascii, NonAscii.ALL);
+        case 's':
+          setSpaceChars(ascii);
+          return new CharSet(ascii, NonAscii.NONE);
+        case 'S':
+          ascii.set(0, 128);
+          BitSet space = new BitSet(128);
+          setSpaceChars(space);
+          ascii.andNot(space);
+          return new CharSet(ascii, NonAscii.ALL);
+        case 't':
+          return literal('\t');
+        case 'n':
+          return literal('\n');
+        case 'r':
+          return literal('\r');
+        case 'f':
+          return literal('\f');
+        default:
+          // Any other escaped ASCII punctuation is a literal
+          if (ch < 128 && !Character.isLetterOrDigit(ch))
+            return literal(ch);
+          throw new NotSimpleException();
+      }
+    }
+
+    private boolean isEscaped(int position) {
+      int backslashes = 0;
+      for (int i = position - 1; i >= 0 && pattern.charAt(i) == '\\'; i--)
+        backslashes = backslashes + 1;
+      return backslashes % 2 == 1;
+    }
+
+    private static CharSet literal(char ch) {
+      if (ch >= 128)
+        throw new NotSimpleException();
+      BitSet ascii = new BitSet(128);
+      ascii.set(ch);
+      return new CharSet(ascii, NonAscii.NONE);
+    }
+
+    private static int parseCount(String s) {
+      if (s.isEmpty() || s.length() > 6 || !s.chars().allMatch(c -> c >= '0' && c <= '9'))
+        throw new NotSimpleException();
+      return Integer.parseInt(s);
+    }
+
+    private static void setWordChars(BitSet ascii) {
+      ascii.set('a', 'z' + 1);
+      ascii.set('A', 'Z' + 1);
+      ascii.set('0', '9' + 1);
+      ascii.set('_');
+    }
+
+    private static void setSpaceChars(BitSet ascii) {
+      ascii.set(' ');
+      ascii.set('\t');
+      ascii.set('\n');
+      ascii.set(0x0B);
+      ascii.set('\f');
+      ascii.set('\r');
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+import io.toolforge.spi.model.ContainerSize;
+
+/**
+ * The CPU and memory budget of a ToolForge container size, and the JVM and thread pool settings
+ * that fit it. Inside a container the JVM sizes its heap, its GC and its common pool from the host
+ * unless told otherwise, so tools either starve their heap or oversubscribe their CPUs.
+ *
+ * <p>
+ * The CPU and memory budget of each size is this plugin's own assumption, modelled on the one
+ * CPU per 2 GiB of memory of common general-purpose container and instance sizes, and not a value
+ * published by the platform. Keep {@link #forSize(ContainerSize)} in step with the limits the
+ * platform actually enforces.
+ */
+public class RuntimeTuning {
+  /**
+   * The share of container memory given to the heap, leaving the rest for metaspace, code cache,
+   * thread stacks, and direct buffers
+   */
+  public static final int HEAP_PERCENT = 75;
+
+  /**
+   * The number of I/O threads per CPU, since I/O threads mostly wait on the network
+   */
+  public static final int IO_THREADS_PER_CPU = 4;
+
+  /**
+   * @return the tuning for the given container size
+   * @throws IllegalArgumentException if the size is not known
+   */
+  public static RuntimeTuning forSize(ContainerSize size) {
+    switch (size) {
+      case SMALL:
+        return new RuntimeTuning(size, 1, 2048);
+      case MEDIUM:
+        return new RuntimeTuning(size, 2, 4096);
+      case LARGE:
+        return new RuntimeTuning(size, 4, 8192);
+      case XLARGE:
+        return new RuntimeTuning(size, 8, 16384);
+      default:
+        throw new IllegalArgumentException("Unknown container size " + size);
+    }
+  }
+
+  private final ContainerSize size;
+  private final int cpus;
+  private final int memoryMegabytes;
+
+  public RuntimeTuning(ContainerSize size, int cpus, int memoryMegabytes) {
+    this.size = size;
+    this.cpus = cpus;
+    this.memoryMegabytes = memoryMegabytes;
+  }
+
+  /**
+   * @return the size
+   */
+  public ContainerSize getSize() {
+    return size;
+  }
+
+  /**
+   * @return the cpus
+   */
+  public int getCpus() {
+    return cpus;
+  }
+
+  /**
+   * @return the memoryMegabytes
+   */
+  public int getMemoryMegabytes() {
+    return memoryMegabytes;
+  }
+
+  /**
+   * @return the maximum heap size
+   */
+  public int getHeapMegabytes() {
+    return memoryMegabytes * HEAP_PERCENT / 100;
+  }
+
+  /**
+   * @return the number of threads for CPU-bound work, which is one per CPU
+   */
+  public int getComputePoolSize() {
+    return cpus;
+  }
+
+  /**
+   * @return the number of threads for blocking I/O
+   */
+  public int getIoPoolSize() {
+    return cpus * IO_THREADS_PER_CPU;
+  }
+
+  /**
+   * @return the JVM option that selects the garbage collector. Tools are batch jobs, so the
+   *         throughput collectors are preferred: serial on one CPU, where parallel GC threads would
+   *         only contend, and parallel otherwise.
+   */
+  public String getGarbageCollectorOption() {
+    return cpus == 1 ? "-XX:+UseSerialGC" : "-XX:+UseParallelGC";
+  }
+
+  /**
+   * @return the JVM options for this budget, one per element
+   */
+  public List<String> getJvmOptions() {
+    List<String> result = new ArrayList<>();
+    result.add("-Xms" + getHeapMegabytes() + "m");
+    result.add("-Xmx" + getHeapMegabytes() + "m");
+    result.add("-XX:ActiveProcessorCount=" + cpus);
+    result.add(getGarbageCollectorOption());
+    result.add("-Djava.util.concurrent.ForkJoinPool.common.parallelism=" + getComputePoolSize());
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "RuntimeTuning [size=" + size + ", cpus=" + cpus + ", memoryMegabytes="
+        + memoryMegabytes + "]";
+  }
+}
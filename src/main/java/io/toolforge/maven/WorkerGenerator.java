@@ -0,0 +1,257 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import static java.util.Objects.requireNonNull;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.lang.model.element.Modifier;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import io.toolforge.toolforge4j.io.InputSource;
+import io.toolforge.toolforge4j.io.OutputSink;
+
+/**
+ * Generates a worker entrypoint for a configuration class that has a generated {@code parse}
+ * method. The worker reads newline-delimited JSON job requests, binds and validates a fresh
+ * configuration for each one, passes it to a handler, and writes one JSON response line per
+ * request, so that one warm JVM can serve many invocations. The generated code needs
+ * jackson-databind at runtime.
+ *
+ * <p>
+ * A request is an object with an optional {@code id}, which is echoed in the response, and any of
+ * {@code args} (an array of command line arguments), {@code parameters}, {@code inputs}, and
+ * {@code outputs} (objects from option names to values or locations), and {@code env} (an object
+ * of environment variables, which overrides the worker's environment). A response has
+ * {@code ok: true} and the handler's {@code result}, or {@code ok: false} with the {@code error}
+ * class and {@code message}.
+ */
+public class WorkerGenerator {
+  private static final TypeName INPUTS =
+      ParameterizedTypeName.get(Function.class, String.class, InputSource.class);
+
+  private static final TypeName OUTPUTS =
+      ParameterizedTypeName.get(Function.class, String.class, OutputSink.class);
+
+  private static final TypeName ENV =
+      ParameterizedTypeName.get(Map.class, String.class, String.class);
+
+  private final ClassName configurationName;
+
+  public WorkerGenerator(ClassName configurationName) {
+    this.configurationName = requireNonNull(configurationName);
+  }
+
+  /**
+   * @return the name of the generated worker class, a peer of the configuration class
+   */
+  public ClassName getWorkerName() {
+    return getConfigurationName().peerClass(getConfigurationName().simpleName() + "Worker");
+  }
+
+  public TypeSpec generateWorker() {
+    ClassName workerName = getWorkerName();
+    ClassName handlerName = workerName.nestedClass("Handler");
+
+    return TypeSpec.classBuilder(workerName).addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .addJavadoc("Serves newline-delimited JSON job requests for {@link $T} from one JVM.\n",
+            getConfigurationName())
+        .addType(TypeSpec.interfaceBuilder(handlerName)
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC).addAnnotation(FunctionalInterface.class)
+            .addMethod(MethodSpec.methodBuilder("handle")
+                .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT).returns(Object.class)
+                .addParameter(getConfigurationName(), "configuration")
+                .addException(Exception.class).build())
+            .build())
+        .addField(FieldSpec
+            .builder(ObjectMapper.class, "MAPPER", Modifier.PRIVATE, Modifier.STATIC,
+                Modifier.FINAL)
+            .initializer("new $T()", ObjectMapper.class).build())
+        .addField(handlerName, "handler", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(ENV, "env", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(INPUTS, "inputs", Modifier.PRIVATE, Modifier.FINAL)
+        .addField(OUTPUTS, "outputs", Modifier.PRIVATE, Modifier.FINAL)
+        .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+            .addParameter(handlerName, "handler").addParameter(ENV, "env")
+            .addParameter(INPUTS, "inputs").addParameter(OUTPUTS, "outputs")
+            .addStatement("this.handler = handler").addStatement("this.env = env")
+            .addStatement("this.inputs = inputs").addStatement("this.outputs = outputs").build())
+        .addMethod(generateRunMethod(workerName, handlerName))
+        .addMethod(generateServePortMethod())
+        .addMethod(generateServeSocketMethod())
+        .addMethod(generateServeStreamMethod())
+        .addMethod(generateHandleMethod())
+        .addMethod(generateArgsMethod())
+        .addMethod(generateEnvMethod())
+        .build();
+  }
+
+  /**
+   * Generates the {@code run} method a tool calls from its {@code main}: with
+   * {@code --port <port>}, the worker serves connections on a loopback port, and otherwise it
+   * serves standard input until it ends.
+   */
+  protected MethodSpec generateRunMethod(ClassName workerName, ClassName handlerName) {
+    return MethodSpec.methodBuilder("run").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+        .addParameter(String[].class, "args").addParameter(handlerName, "handler")
+        .addParameter(INPUTS, "inputs").addParameter(OUTPUTS, "outputs")
+        .addException(IOException.class)
+        .addStatement("$T worker = new $T(handler, $T.getenv(), inputs, outputs)", workerName,
+            workerName, System.class)
+        .beginControlFlow("if(args.length == 2 && args[0].equals($S))", "--port")
+        .addStatement("worker.serve($T.parseInt(args[1]))", Integer.class)
+        .nextControlFlow("else").addStatement("worker.serve($T.in, $T.out)", System.class,
+            System.class)
+        .endControlFlow().build();
+  }
+
+  protected MethodSpec generateServePortMethod() {
+    return MethodSpec.methodBuilder("serve").addModifiers(Modifier.PUBLIC)
+        .addParameter(int.class, "port").addException(IOException.class)
+        .beginControlFlow("try ($T server = new $T(port, 50, $T.getLoopbackAddress()))",
+            ServerSocket.class, ServerSocket.class, InetAddress.class)
+        .addStatement("serve(server)").endControlFlow().build();
+  }
+
+  /**
+   * Generates the method that serves the connections of the given server one at a time until the
+   * server is closed.
+   */
+  protected MethodSpec generateServeSocketMethod() {
+    return MethodSpec.methodBuilder("serve").addModifiers(Modifier.PUBLIC)
+        .addParameter(ServerSocket.class, "server").addException(IOException.class)
+        .beginControlFlow("while(true)").addStatement("$T socket", Socket.class)
+        .beginControlFlow("try").addStatement("socket = server.accept()")
+        .nextControlFlow("catch($T e)", SocketException.class)
+        .beginControlFlow("if(server.isClosed())").addStatement("return").endControlFlow()
+        .addStatement("throw e").endControlFlow()
+        .beginControlFlow("try ($T connection = socket)", Socket.class)
+        .addStatement("serve(connection.getInputStream(), connection.getOutputStream())")
+        .endControlFlow().endControlFlow().build();
+  }
+
+  protected MethodSpec generateServeStreamMethod() {
+    return MethodSpec.methodBuilder("serve").addModifiers(Modifier.PUBLIC)
+        .addParameter(InputStream.class, "in").addParameter(OutputStream.class, "out")
+        .addException(IOException.class)
+        .addStatement("$T reader = new $T(new $T(in, $T.UTF_8))", BufferedReader.class,
+            BufferedReader.class, InputStreamReader.class, StandardCharsets.class)
+        .addStatement("$T writer = new $T(new $T(out, $T.UTF_8))", Writer.class,
+            BufferedWriter.class, OutputStreamWriter.class, StandardCharsets.class)
+        .beginControlFlow(
+            "for(String line = reader.readLine(); line != null; line = reader.readLine())")
+        .beginControlFlow("if(line.trim().isEmpty())").addStatement("continue").endControlFlow()
+        .addStatement("writer.write(handle(line))").addStatement("writer.write('\\n')")
+        .addStatement("writer.flush()").endControlFlow().build();
+  }
+
+  /**
+   * Generates the method that handles one request line and returns its response line. Failures
+   * to parse the request, bind or validate the configuration, or run the handler are all reported
+   * in the response.
+   */
+  protected MethodSpec generateHandleMethod() {
+    return MethodSpec.methodBuilder("handle").addModifiers(Modifier.PUBLIC)
+        .returns(String.class).addParameter(String.class, "request")
+        .addStatement("$T response = MAPPER.createObjectNode()", ObjectNode.class)
+        .beginControlFlow("try")
+        .addStatement("$T json = MAPPER.readTree(request)", JsonNode.class)
+        .beginControlFlow("if(json.has($S))", "id")
+        .addStatement("response.set($S, json.get($S))", "id", "id").endControlFlow()
+        .addStatement("$T configuration = $T.parse(args(json), env(json), inputs, outputs)",
+            getConfigurationName(), getConfigurationName())
+        .addStatement("configuration.validate()")
+        .addStatement("$T result = MAPPER.valueToTree(handler.handle(configuration))",
+            JsonNode.class)
+        .addStatement("response.put($S, true)", "ok")
+        .addStatement("response.set($S, result)", "result")
+        .nextControlFlow("catch($T e)", Exception.class)
+        .addStatement("response.put($S, false)", "ok")
+        .addStatement("response.put($S, e.getClass().getName())", "error")
+        .addStatement("response.put($S, e.getMessage())", "message").endControlFlow()
+        .beginControlFlow("try").addStatement("return MAPPER.writeValueAsString(response)")
+        .nextControlFlow("catch($T e)", JsonProcessingException.class)
+        .addStatement("throw new $T(e)", UncheckedIOException.class).endControlFlow().build();
+  }
+
+  protected MethodSpec generateArgsMethod() {
+    TypeName entry = ParameterizedTypeName.get(ClassName.get(Map.Entry.class),
+        ClassName.get(String.class), ClassName.get(JsonNode.class));
+    return MethodSpec.methodBuilder("args").addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+        .returns(String[].class).addParameter(JsonNode.class, "request")
+        .addStatement("$T result = new $T<>()",
+            ParameterizedTypeName.get(List.class, String.class), ArrayList.class)
+        .beginControlFlow("for($T arg : request.path($S))", JsonNode.class, "args")
+        .addStatement("result.add(arg.asText())").endControlFlow()
+        .beginControlFlow("for(String field : new String[] {$S, $S, $S})", "parameters",
+            "inputs", "outputs")
+        .addStatement("$T options = request.path(field).fields()",
+            ParameterizedTypeName.get(ClassName.get(Iterator.class), entry))
+        .beginControlFlow("while(options.hasNext())")
+        .addStatement("$T option = options.next()", entry)
+        .addStatement("result.add($S + option.getKey())", "--")
+        .addStatement("result.add(option.getValue().asText())").endControlFlow()
+        .endControlFlow().addStatement("return result.toArray(new String[0])").build();
+  }
+
+  protected MethodSpec generateEnvMethod() {
+    TypeName entry = ParameterizedTypeName.get(ClassName.get(Map.Entry.class),
+        ClassName.get(String.class), ClassName.get(JsonNode.class));
+    return MethodSpec.methodBuilder("env").addModifiers(Modifier.PRIVATE).returns(ENV)
+        .addParameter(JsonNode.class, "request")
+        .addStatement("$T result = new $T<>(env)", ENV, HashMap.class)
+        .addStatement("$T variables = request.path($S).fields()",
+            ParameterizedTypeName.get(ClassName.get(Iterator.class), entry), "env")
+        .beginControlFlow("while(variables.hasNext())")
+        .addStatement("$T variable = variables.next()", entry)
+        .addStatement("result.put(variable.getKey(), variable.getValue().asText())")
+        .endControlFlow().addStatement("return result").build();
+  }
+
+  private ClassName getConfigurationName() {
+    return configurationName;
+  }
+}
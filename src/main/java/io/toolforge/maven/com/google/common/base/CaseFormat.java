@@ -35,7 +35,6 @@ package io.toolforge.maven.com.google.common.base;
 
 import static java.util.Objects.requireNonNull;
 import java.io.Serializable;
-import java.util.function.Predicate;
 
 /**
  * Utility class for converting between various ASCII case formats. Behavior is undefined for
@@ -48,8 +47,8 @@ public enum CaseFormat {
   /** Hyphenated variable naming convention, e.g., "lower-hyphen". */
   LOWER_HYPHEN(CharMatcher.is('-'), "-") {
     @Override
-    String normalizeWord(String word) {
-      return word.toLowerCase();
+    void normalizeWord(StringBuilder out, String s, int start, int end) {
+      appendLowerCase(out, s, start, end);
     }
 
     @Override
@@ -67,8 +66,8 @@ public enum CaseFormat {
   /** C++ variable naming convention, e.g., "lower_underscore". */
   LOWER_UNDERSCORE(CharMatcher.is('_'), "_") {
     @Override
-    String normalizeWord(String word) {
-      return word.toLowerCase();
+    void normalizeWord(StringBuilder out, String s, int start, int end) {
+      appendLowerCase(out, s, start, end);
     }
 
     @Override
@@ -86,29 +85,29 @@ public enum CaseFormat {
   /** Java variable naming convention, e.g., "lowerCamel". */
   LOWER_CAMEL(CharMatcher.inRange('A', 'Z'), "") {
     @Override
-    String normalizeWord(String word) {
-      return firstCharOnlyToUpper(word);
+    void normalizeWord(StringBuilder out, String s, int start, int end) {
+      appendFirstCharOnlyToUpper(out, s, start, end);
     }
 
     @Override
-    String normalizeFirstWord(String word) {
-      return word.toLowerCase();
+    void normalizeFirstWord(StringBuilder out, String s, int start, int end) {
+      appendLowerCase(out, s, start, end);
     }
   },
 
   /** Java and C++ class naming convention, e.g., "UpperCamel". */
   UPPER_CAMEL(CharMatcher.inRange('A', 'Z'), "") {
     @Override
-    String normalizeWord(String word) {
-      return firstCharOnlyToUpper(word);
+    void normalizeWord(StringBuilder out, String s, int start, int end) {
+      appendFirstCharOnlyToUpper(out, s, start, end);
     }
   },
 
   /** Java and C++ constant naming convention, e.g., "UPPER_UNDERSCORE". */
   UPPER_UNDERSCORE(CharMatcher.is('_'), "_") {
     @Override
-    String normalizeWord(String word) {
-      return word.toUpperCase();
+    void normalizeWord(StringBuilder out, String s, int start, int end) {
+      appendUpperCase(out, s, start, end);
     }
 
     @Override
@@ -123,8 +122,11 @@ public enum CaseFormat {
     }
   };
 
+  /**
+   * Matches primitive {@code char} values, so that scanning a string never boxes a character.
+   */
   @FunctionalInterface
-  private static interface CharMatcher extends Predicate<Character> {
+  private static interface CharMatcher {
     public static CharMatcher is(char ch) {
       return x -> ch == x;
     }
@@ -133,10 +135,12 @@ public enum CaseFormat {
       return x -> x >= from && x <= to;
     }
 
+    public boolean matches(char c);
+
     default int indexIn(CharSequence sequence, int start) {
       int length = sequence.length();
-      if (start >= length)
-        throw new IndexOutOfBoundsException(start);
+      if (start < 0 || start > length)
+        throw new IndexOutOfBoundsException("start: " + start + ", length: " + length);
       for (int i = start; i < length; i++) {
         if (matches(sequence.charAt(i))) {
           return i;
@@ -144,10 +148,6 @@ public enum CaseFormat {
       }
       return -1;
     }
-
-    default boolean matches(char c) {
-      return test(c);
-    }
   }
 
   private static interface Converter<A, B> {
@@ -175,25 +175,34 @@ public enum CaseFormat {
     return (format == this) ? str : convert(format, str);
   }
 
-  /** Enum values can override for performance reasons. */
+  /**
+   * Enum values can override for performance reasons. Converts in a single pass, normalizing each
+   * word straight into the output buffer rather than through intermediate substrings.
+   */
   String convert(CaseFormat format, String s) {
     // deal with camel conversion
-    StringBuilder out = null;
+    // include some extra space for separators
+    StringBuilder out = new StringBuilder(s.length() + 4 * format.wordSeparator.length());
     int i = 0;
     int j = -1;
     while ((j = wordBoundary.indexIn(s, ++j)) != -1) {
       if (i == 0) {
-        // include some extra space for separators
-        out = new StringBuilder(s.length() + 4 * format.wordSeparator.length());
-        out.append(format.normalizeFirstWord(s.substring(i, j)));
+        // A boundary at the start of the string produces an empty first word, which is dropped
+        out.setLength(0);
+        format.normalizeFirstWord(out, s, i, j);
       } else {
-        requireNonNull(out).append(format.normalizeWord(s.substring(i, j)));
+        format.normalizeWord(out, s, i, j);
       }
       out.append(format.wordSeparator);
       i = j + wordSeparator.length();
     }
-    return (i == 0) ? format.normalizeFirstWord(s)
-        : requireNonNull(out).append(format.normalizeWord(s.substring(i))).toString();
+    if (i == 0) {
+      out.setLength(0);
+      format.normalizeFirstWord(out, s, 0, s.length());
+    } else {
+      format.normalizeWord(out, s, i, s.length());
+    }
+    return out.toString();
   }
 
   /**
@@ -247,14 +256,37 @@ public enum CaseFormat {
     private static final long serialVersionUID = 0L;
   }
 
-  abstract String normalizeWord(String word);
+  /**
+   * Appends the word {@code s[start, end)} to {@code out} in this format.
+   */
+  abstract void normalizeWord(StringBuilder out, String s, int start, int end);
+
+  void normalizeFirstWord(StringBuilder out, String s, int start, int end) {
+    normalizeWord(out, s, start, end);
+  }
+
+  private static void appendFirstCharOnlyToUpper(StringBuilder out, String s, int start, int end) {
+    if (start < end) {
+      out.append(toUpperCase(s.charAt(start)));
+      appendLowerCase(out, s, start + 1, end);
+    }
+  }
+
+  private static void appendLowerCase(StringBuilder out, String s, int start, int end) {
+    for (int i = start; i < end; i++)
+      out.append(toLowerCase(s.charAt(i)));
+  }
+
+  private static void appendUpperCase(StringBuilder out, String s, int start, int end) {
+    for (int i = start; i < end; i++)
+      out.append(toUpperCase(s.charAt(i)));
+  }
 
-  String normalizeFirstWord(String word) {
-    return normalizeWord(word);
+  private static char toLowerCase(char c) {
+    return c >= 'A' && c <= 'Z' ? (char) (c ^ 0x20) : c;
   }
 
-  private static String firstCharOnlyToUpper(String word) {
-    return word.isEmpty() ? word
-        : Character.toUpperCase(word.charAt(0)) + word.substring(1, word.length()).toLowerCase();
+  private static char toUpperCase(char c) {
+    return c >= 'a' && c <= 'z' ? (char) (c ^ 0x20) : c;
   }
 }
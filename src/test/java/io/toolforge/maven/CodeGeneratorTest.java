@@ -21,11 +21,41 @@ package io.toolforge.maven;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
 import org.junit.Test;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Resources;
+import com.sigpwned.discourse.core.annotation.OptionParameter;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.TypeSpec;
@@ -44,9 +74,15 @@ import io.toolforge.spi.model.Slot;
 import io.toolforge.spi.model.StringDomainType;
 import io.toolforge.spi.model.StringParameterDefinition;
 import io.toolforge.spi.model.ToolManifest;
+import io.toolforge.spi.model.expr.date.AbsoluteDateExpr;
 import io.toolforge.spi.model.expr.date.RelativeDateExpr;
 import io.toolforge.spi.model.expr.date.RelativeDateExpr.DateUnit;
 import io.toolforge.spi.model.expr.date.TodayDateExpr;
+import io.toolforge.toolforge4j.io.InputSource;
+import io.toolforge.toolforge4j.io.OutputSink;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 public class CodeGeneratorTest {
   /**
@@ -56,7 +92,706 @@ public class CodeGeneratorTest {
   public void smokeTest() throws IOException {
     ClassName className = ClassName.get("com.example", "Configuration");
 
-    ToolManifest manifest = (ToolManifest) new ToolManifest()
+    ToolManifest manifest = exampleManifest();
+
+    TypeSpec configurationType = new CodeGenerator(className).generateConfiguration(manifest);
+
+    JavaFile javaFile = JavaFile.builder("com.example", configurationType).build();
+
+    String observed;
+    try (StringWriter w = new StringWriter()) {
+      javaFile.writeTo(w);
+      observed = w.toString();
+    }
+
+    String expected = Resources.toString(Resources.getResource("com/example/Configuration.java"),
+        StandardCharsets.UTF_8);
+
+    assertThat(observed, is(expected));
+  }
+
+  /**
+   * The generated parse method should bind options and environment variables without reflection
+   */
+  @Test
+  public void parseTest() throws Exception {
+    ToolManifest manifest = exampleManifest();
+    manifest.getInputs().clear();
+    manifest.getOutputs().clear();
+
+    Class<?> configurationClass =
+        compile(manifest, new GeneratorOptions().parser(true));
+    Method parse = configurationClass.getMethod("parse", String[].class, Map.class,
+        Function.class, Function.class);
+
+    Object configuration = parse.invoke(null,
+        new String[] {"--exampleBoolean", "false", "--exampleInt=42", "--exampleFloat", "1.5",
+            "--exampleEnumString", "bravo", "--examplePatternString", "hello", "--exampleDate",
+            LocalDate.now(ZoneOffset.UTC).toString()},
+        Collections.singletonMap("EXAMPLE_SECRET_1", "shh"), null, null);
+    configurationClass.getMethod("validate").invoke(configuration);
+
+    assertThat(configurationClass.getField("exampleBoolean").get(configuration), is(false));
+    assertThat(configurationClass.getField("exampleInt").get(configuration), is(42L));
+    assertThat(configurationClass.getField("exampleFloat").get(configuration), is(1.5));
+    assertThat(configurationClass.getField("exampleEnumString").get(configuration), is("bravo"));
+    assertThat(configurationClass.getField("exampleVariable1").get(configuration), is("hello"));
+    assertThat(configurationClass.getField("exampleSecret1").get(configuration), is("shh"));
+
+    assertThat(parseFailure(parse, new String[] {"--nope", "1"}), is("Unknown option --nope"));
+    assertThat(parseFailure(parse, new String[] {"--exampleInt", "ten"}),
+        is("Invalid value for option --exampleInt: ten"));
+    assertThat(parseFailure(parse, new String[] {"--exampleBoolean", "yes"}),
+        is("Invalid value for option --exampleBoolean: yes"));
+    assertThat(parseFailure(parse, new String[] {"--exampleInt"}),
+        is("Missing value for option --exampleInt"));
+  }
+
+  /**
+   * Slot values should be handed to the given functions under their option names
+   */
+  @Test
+  public void parseSlotsTest() throws Exception {
+    Class<?> configurationClass =
+        compile(exampleManifest(), new GeneratorOptions().parser(true));
+    Method parse = configurationClass.getMethod("parse", String[].class, Map.class,
+        Function.class, Function.class);
+
+    List<String> locations = new ArrayList<>();
+    Function<String, Object> slots = location -> {
+      locations.add(location);
+      return null;
+    };
+
+    try {
+      parse.invoke(null, new String[] {"--input", "in.csv", "--output.csv", "out.csv",
+          "--output.xlsx", "out.xlsx"}, Collections.emptyMap(), slots, slots);
+      throw new AssertionError("parse should fail");
+    } catch (InvocationTargetException e) {
+      assertThat(e.getCause().getMessage(), is("Missing required option --input"));
+    }
+
+    assertThat(locations, is(Arrays.asList("in.csv", "out.csv", "out.xlsx")));
+  }
+
+  /**
+   * Primitive parameters should be bound through their setters and report their presence, with
+   * optional parameters absent until they are set
+   */
+  @Test
+  public void primitivesTest() throws Exception {
+    ToolManifest manifest = exampleManifest();
+    manifest.getInputs().clear();
+    manifest.getOutputs().clear();
+    manifest.addParametersItem(new IntParameterDefinition().minimum(0L).maximum(100L)
+        .type(ParameterType.INT).name("optionalInt").description("This is an optional int field.")
+        .required(false));
+
+    Class<?> configurationClass =
+        compile(manifest, new GeneratorOptions().parser(true).primitives(true));
+    assertThat(configurationClass.getDeclaredField("exampleInt").getType() == long.class, is(true));
+    assertThat(configurationClass.getMethod("setExampleInt", long.class)
+        .isAnnotationPresent(OptionParameter.class), is(true));
+
+    Object defaults = configurationClass.getConstructor().newInstance();
+    assertThat(configurationClass.getMethod("getExampleInt").invoke(defaults), is(10L));
+    assertThat(configurationClass.getMethod("hasExampleInt").invoke(defaults), is(true));
+    assertThat(configurationClass.getMethod("hasOptionalInt").invoke(defaults), is(false));
+    configurationClass.getMethod("validate").invoke(defaults);
+
+    Method parse = configurationClass.getMethod("parse", String[].class, Map.class,
+        Function.class, Function.class);
+    Object configuration = parse.invoke(null,
+        new String[] {"--exampleBoolean", "false", "--optionalInt", "7", "--exampleFloat", "1.5"},
+        Collections.emptyMap(), null, null);
+    configurationClass.getMethod("validate").invoke(configuration);
+
+    assertThat(configurationClass.getMethod("isExampleBoolean").invoke(configuration), is(false));
+    assertThat(configurationClass.getMethod("getExampleFloat").invoke(configuration), is(1.5));
+    assertThat(configurationClass.getMethod("getOptionalInt").invoke(configuration), is(7L));
+    assertThat(configurationClass.getMethod("hasOptionalInt").invoke(configuration), is(true));
+
+    configurationClass.getMethod("setOptionalInt", long.class).invoke(defaults, 101L);
+    try {
+      configurationClass.getMethod("validate").invoke(defaults);
+      throw new AssertionError("validate should fail");
+    } catch (InvocationTargetException e) {
+      assertThat(e.getCause() instanceof IllegalArgumentException, is(true));
+    }
+  }
+
+  /**
+   * Enumeration parameters should be typed as nested enums that map manifest values to constants
+   */
+  @Test
+  public void enumsTest() throws Exception {
+    ToolManifest manifest = exampleManifest();
+    manifest.getInputs().clear();
+    manifest.getOutputs().clear();
+    manifest.addParametersItem(new StringParameterDefinition()
+        .domain(new EnumerationStringDomain().addValuesItem("camelCase").addValuesItem("with-dash")
+            .addValuesItem("with_dash").addValuesItem("1st").addValuesItem("")
+            .addValuesItem("-").type(StringDomainType.ENUMERATION))
+        .type(ParameterType.STRING).name("oddEnumString")
+        .description("This is an enum string field with odd values.").required(false));
+    // Enums named after these would hide the class itself, another enum, or java.lang.String
+    for (String name : new String[] {"configuration", "configurationEnum", "string"}) {
+      manifest.addParametersItem(new StringParameterDefinition()
+          .domain(new EnumerationStringDomain().addValuesItem("a").addValuesItem("b")
+              .type(StringDomainType.ENUMERATION))
+          .type(ParameterType.STRING).name(name).description("This is an enum string field.")
+          .required(false));
+    }
+
+    Class<?> configurationClass =
+        compile(manifest, new GeneratorOptions().parser(true).enums(true));
+    Class<?> enumClass = configurationClass.getField("exampleEnumString").getType();
+    assertThat(enumClass.isEnum(), is(true));
+
+    Class<?> oddEnumClass = configurationClass.getField("oddEnumString").getType();
+    List<String> constants = new ArrayList<>();
+    for (Object constant : oddEnumClass.getEnumConstants())
+      constants.add(((Enum<?>) constant).name());
+    assertThat(constants, is(Arrays.asList("CAMEL_CASE", "WITH_DASH", "WITH_DASH_2", "VALUE_1ST",
+        "EMPTY", "VALUE__")));
+    assertThat(configurationClass.getField("configuration").getType().getSimpleName(),
+        is("ConfigurationEnum"));
+    assertThat(configurationClass.getField("configurationEnum").getType().getSimpleName(),
+        is("ConfigurationEnumEnum"));
+    assertThat(configurationClass.getField("string").getType().getSimpleName(), is("String"));
+
+    Object configuration = configurationClass.getConstructor().newInstance();
+    assertThat(configurationClass.getField("exampleEnumString").get(configuration).toString(),
+        is("alpha"));
+    configurationClass.getMethod("setExampleEnumString", String.class).invoke(configuration,
+        "bravo");
+    assertThat(configurationClass.getField("exampleEnumString").get(configuration),
+        is(enumClass.getMethod("fromValue", String.class).invoke(null, "bravo")));
+    configurationClass.getMethod("validate").invoke(configuration);
+
+    Method parse = configurationClass.getMethod("parse", String[].class, Map.class,
+        Function.class, Function.class);
+    assertThat(parseFailure(parse, new String[] {"--exampleEnumString", "charlie"}),
+        is("exampleEnumString must be one of: alpha, bravo"));
+  }
+
+  /**
+   * In clock mode, date bounds and defaults should follow the given clock
+   */
+  @Test
+  public void clockTest() throws Exception {
+    ToolManifest manifest = exampleManifest();
+    manifest.addParametersItem(new DateParameterDefinition()
+        ._default(AbsoluteDateExpr.of(LocalDate.of(2020, 2, 29)))
+        .minimum(AbsoluteDateExpr.of(LocalDate.of(2020, 1, 1)))
+        .maximum(RelativeDateExpr.of(0, DateUnit.DAY)).type(ParameterType.DATE)
+        .name("absoluteDate").description("This is an absolute date field.").required(true));
+
+    Class<?> configurationClass = compile(manifest, new GeneratorOptions().clock(true));
+    Clock clock = Clock.fixed(Instant.parse("2021-06-15T12:00:00Z"), ZoneOffset.UTC);
+    Object configuration = configurationClass.getConstructor(Clock.class).newInstance(clock);
+
+    assertThat(configurationClass.getField("exampleDate").get(configuration),
+        is(LocalDate.of(2021, 6, 15)));
+    assertThat(configurationClass.getField("absoluteDate").get(configuration),
+        is(LocalDate.of(2020, 2, 29)));
+    configurationClass.getField("input").set(configuration, null);
+    configurationClass.getMethod("validate").invoke(configuration);
+
+    configurationClass.getField("exampleDate").set(configuration, LocalDate.of(2021, 6, 7));
+    try {
+      configurationClass.getMethod("validate").invoke(configuration);
+      throw new AssertionError("validate should fail");
+    } catch (InvocationTargetException e) {
+      assertThat(e.getCause().getMessage(),
+          is("exampleDate must be greater than or equal to 2021-06-08"));
+    }
+
+    Object system = configurationClass.getConstructor().newInstance();
+    assertThat(configurationClass.getField("exampleDate").get(system),
+        is(LocalDate.now(ZoneOffset.UTC)));
+  }
+
+  /**
+   * Lazy constants should move every prepared constant into a holder class, leaving the
+   * configuration class with no static state, and validate against the holders
+   */
+  @Test
+  public void lazyConstantsTest() throws Exception {
+    Class<?> configurationClass =
+        compile(exampleManifest(), new GeneratorOptions().lazyConstants(true));
+    assertThat(Arrays.stream(configurationClass.getDeclaredFields())
+        .anyMatch(f -> java.lang.reflect.Modifier.isStatic(f.getModifiers())), is(false));
+    assertThat(
+        Arrays.stream(configurationClass.getDeclaredClasses()).map(Class::getSimpleName).sorted()
+            .collect(Collectors.toList()),
+        is(Arrays.asList("ExampleDateBoundsHolder", "ExampleEnumStringEnumerationHolder",
+            "ExamplePatternStringPatternHolder", "TodayHolder")));
+
+    Object configuration = configurationClass.getConstructor().newInstance();
+    assertThat(configurationClass.getField("exampleDate").get(configuration),
+        is(LocalDate.now(ZoneOffset.UTC)));
+    configurationClass.getMethod("validate").invoke(configuration);
+
+    for (String[] failure : new String[][] {{"exampleEnumString", "charlie"},
+        {"examplePatternString", "help"}}) {
+      Object invalid = configurationClass.getConstructor().newInstance();
+      configurationClass.getField(failure[0]).set(invalid, failure[1]);
+      try {
+        configurationClass.getMethod("validate").invoke(invalid);
+        throw new AssertionError("validate should fail");
+      } catch (InvocationTargetException e) {
+        assertThat(e.getCause() instanceof IllegalArgumentException, is(true));
+      }
+    }
+  }
+
+  /**
+   * Enumeration domains above the threshold should be validated against a binary table resource
+   * instead of a set, and smaller domains should be unchanged
+   */
+  @Test
+  public void enumerationTableTest() throws Exception {
+    EnumerationStringDomain domain =
+        new EnumerationStringDomain().type(StringDomainType.ENUMERATION);
+    for (int i = 0; i < 5000; i++)
+      domain.addValuesItem("SYM" + Integer.toString(i * 7919, 36).toUpperCase());
+    domain.addValuesItem("caf\u00e9").addValuesItem("\ud83d\ude00").addValuesItem("");
+    ToolManifest manifest = exampleManifest();
+    manifest.addParametersItem(new StringParameterDefinition().domain(domain)._default("SYM0")
+        .type(ParameterType.STRING).name("symbol").description("This is a large enum field.")
+        .required(true));
+
+    ClassName className = ClassName.get("com.example", "Configuration");
+    CodeGenerator generator =
+        new CodeGenerator(className, new GeneratorOptions().enumerationTableThreshold(100));
+    Map<String, byte[]> resources = generator.generateResources(manifest);
+    assertThat(resources.keySet(),
+        is(Collections.singleton("com/example/Configuration-symbol.values")));
+    Class<?> configurationClass = InMemoryCompiler
+        .compile(resources,
+            JavaFile.builder("com.example", generator.generateConfiguration(manifest)).build())
+        .loadClass(className.reflectionName());
+    assertThat(Arrays.stream(configurationClass.getDeclaredFields()).map(Field::getName)
+        .filter(n -> n.endsWith("_ENUMERATION")).collect(Collectors.toList()),
+        is(Arrays.asList("EXAMPLE_ENUM_STRING_ENUMERATION")));
+
+    Method validate = configurationClass.getMethod("validate");
+    for (String value : domain.getValues()) {
+      Object configuration = configurationClass.getConstructor().newInstance();
+      configurationClass.getField("symbol").set(configuration, value);
+      validate.invoke(configuration);
+    }
+    for (String value : new String[] {"SYM", "SYM0 ", "sym0", "caf", "\ud83d", "ZZZZZZZ"}) {
+      Object configuration = configurationClass.getConstructor().newInstance();
+      configurationClass.getField("symbol").set(configuration, value);
+      try {
+        validate.invoke(configuration);
+        throw new AssertionError("validate should fail for " + value);
+      } catch (InvocationTargetException e) {
+        assertThat(e.getCause().getMessage(), is(
+            "symbol must be one of the 5003 values in Configuration-symbol.values"));
+      }
+    }
+  }
+
+  /**
+   * Validation result mode should record violations cheapest first without throwing, stop once the
+   * result is full, and keep validate as a throwing wrapper
+   */
+  @Test
+  public void validationResultTest() throws Exception {
+    Class<?> configurationClass =
+        compile(exampleManifest(), new GeneratorOptions().validationResult(true));
+    Class<?> resultClass = Arrays.stream(configurationClass.getDeclaredClasses())
+        .filter(c -> c.getSimpleName().equals("ValidationResult")).findFirst().get();
+    Method validateInto = configurationClass.getMethod("validateInto", resultClass);
+    Method getViolations = resultClass.getMethod("getViolations");
+
+    Object valid = configurationClass.getConstructor().newInstance();
+    Object result = resultClass.getConstructor().newInstance();
+    assertThat(validateInto.invoke(valid, result), is(true));
+    assertThat(getViolations.invoke(result), is(Collections.emptyList()));
+    configurationClass.getMethod("validate").invoke(valid);
+
+    Object invalid = configurationClass.getConstructor().newInstance();
+    configurationClass.getField("examplePatternString").set(invalid, "help");
+    configurationClass.getField("exampleInt").set(invalid, 101L);
+    configurationClass.getField("exampleFloat").set(invalid, null);
+    assertThat(validateInto.invoke(invalid, result), is(false));
+    assertThat(getViolations.invoke(result),
+        is(Arrays.asList("exampleInt must be less than or equal to 100", "exampleFloat is required",
+            "examplePatternString must match the pattern `^hel*o$'")));
+
+    Object first = resultClass.getConstructor(int.class).newInstance(1);
+    assertThat(validateInto.invoke(invalid, first), is(false));
+    assertThat(resultClass.getMethod("getViolationCount").invoke(first), is(1));
+
+    try {
+      configurationClass.getMethod("validate").invoke(invalid);
+      throw new AssertionError("validate should fail");
+    } catch (InvocationTargetException e) {
+      assertThat(e.getCause().getMessage(), is("exampleInt must be less than or equal to 100"));
+    }
+  }
+
+  /**
+   * Fingerprints should depend only on the values, in a fixed encoding that never changes, and the
+   * input fingerprint should cover the content of the inputs
+   */
+  @Test
+  public void fingerprintTest() throws Exception {
+    ToolManifest manifest = exampleManifest();
+    manifest.getParameters().removeIf(p -> p.getType() == ParameterType.DATE);
+    Class<?> configurationClass =
+        compile(manifest, new GeneratorOptions().configurationFingerprint(true));
+    Class<?> primitiveClass = compile(manifest,
+        new GeneratorOptions().configurationFingerprint(true).primitives(true).enums(true));
+    Method fingerprint = configurationClass.getMethod("fingerprint");
+
+    Object configuration = configurationClass.getConstructor().newInstance();
+    String defaults = (String) fingerprint.invoke(configuration);
+    assertThat(defaults, is("005a3b05b4dd3fd079e65cbac1cac7fe"));
+    assertThat(primitiveClass.getMethod("fingerprint")
+        .invoke(primitiveClass.getConstructor().newInstance()), is(defaults));
+
+    configurationClass.getField("exampleInt").set(configuration, 11L);
+    assertThat(fingerprint.invoke(configuration).equals(defaults), is(false));
+    configurationClass.getField("exampleInt").set(configuration, 10L);
+    assertThat(fingerprint.invoke(configuration), is(defaults));
+
+    Method fingerprintWithInputs = configurationClass.getMethod("fingerprintWithInputs");
+    String[] content = {"a,b\n1,2\n"};
+    configurationClass.getField("input").set(configuration,
+        Proxy.newProxyInstance(InputSource.class.getClassLoader(),
+            new Class<?>[] {InputSource.class}, (proxy, method, args) -> new ByteArrayInputStream(
+                content[0].getBytes(StandardCharsets.UTF_8))));
+    String withInputs = (String) fingerprintWithInputs.invoke(configuration);
+    assertThat(withInputs.equals(defaults), is(false));
+    assertThat(fingerprintWithInputs.invoke(configuration), is(withInputs));
+    content[0] = "a,b\n1,3\n";
+    assertThat(fingerprintWithInputs.invoke(configuration).equals(withInputs), is(false));
+  }
+
+  /**
+   * Static initialization, parse, validate and slot opens should each record a flight recorder
+   * event with the configuration class name and counts
+   */
+  @Test
+  public void flightRecorderTest() throws Exception {
+    ToolManifest manifest = exampleManifest();
+    manifest.getOutputs().clear();
+    Class<?> configurationClass =
+        compile(manifest, new GeneratorOptions().parser(true).flightRecorder(true));
+    Method parse = configurationClass.getMethod("parse", String[].class, Map.class,
+        Function.class, Function.class);
+    InputSource input = (InputSource) Proxy.newProxyInstance(InputSource.class.getClassLoader(),
+        new Class<?>[] {InputSource.class}, (proxy, method, args) -> new ByteArrayInputStream(
+            new byte[0]));
+
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      for (String event : new String[] {"ConfigurationInitialize", "ConfigurationParse",
+          "ConfigurationValidate", "SlotOpen"})
+        recording.enable(configurationClass.getName() + "$" + event);
+      recording.start();
+
+      Object configuration = parse.invoke(null,
+          new String[] {"--exampleDate", LocalDate.now(ZoneOffset.UTC).toString(), "--input",
+              "in.csv"},
+          Collections.emptyMap(), (Function<String, InputSource>) name -> input, null);
+      configurationClass.getMethod("validate").invoke(configuration);
+      ((InputStream) configurationClass.getMethod("openInput").invoke(configuration)).close();
+
+      recording.stop();
+      Path file = Files.createTempFile("configuration", ".jfr");
+      try {
+        recording.dump(file);
+        events = RecordingFile.readAllEvents(file);
+      } finally {
+        Files.delete(file);
+      }
+    }
+
+    Map<String, RecordedEvent> eventsByName = events.stream().collect(Collectors.toMap(
+        e -> e.getEventType().getName().substring(configurationClass.getName().length() + 1),
+        e -> e));
+    assertThat(eventsByName.keySet(), is(new HashSet<>(Arrays.asList("ConfigurationInitialize",
+        "ConfigurationParse", "ConfigurationValidate", "SlotOpen"))));
+    for (RecordedEvent event : events)
+      assertThat(event.getString("configuration"), is("com.example.Configuration"));
+    assertThat(eventsByName.get("ConfigurationParse").getInt("argumentCount"), is(4));
+    assertThat(eventsByName.get("ConfigurationParse").getInt("parameterCount"),
+        is(manifest.getParameters().size()));
+    assertThat(eventsByName.get("ConfigurationValidate").getInt("parameterCount"),
+        is(manifest.getParameters().size()));
+    assertThat(eventsByName.get("SlotOpen").getString("slot"), is("input"));
+    assertThat(eventsByName.get("SlotOpen").getString("direction"), is("input"));
+  }
+
+  /**
+   * The runtime class should hold the budget of the manifest's container size
+   */
+  @Test
+  public void runtimeTest() throws Exception {
+    Class<?> configurationClass =
+        compile(exampleManifest(), new GeneratorOptions().runtime(true));
+    Class<?> runtimeClass = Arrays.stream(configurationClass.getDeclaredClasses())
+        .filter(c -> c.getSimpleName().equals("Runtime")).findFirst().get();
+
+    assertThat(runtimeClass.getField("CONTAINER_SIZE").get(null), is("MEDIUM"));
+    assertThat(runtimeClass.getField("CPUS").get(null), is(2));
+    assertThat(runtimeClass.getField("MEMORY_BYTES").get(null), is(4L << 30));
+    assertThat(runtimeClass.getField("HEAP_BYTES").get(null), is(3L << 30));
+    assertThat(runtimeClass.getField("COMPUTE_POOL_SIZE").get(null), is(2));
+    assertThat(runtimeClass.getField("IO_POOL_SIZE").get(null), is(8));
+  }
+
+  /**
+   * The CSV cursor should stream quoted, multi-line and multi-byte fields across buffer
+   * boundaries, and read any number of rows without growing its buffer
+   */
+  @Test
+  public void csvReadersTest() throws Exception {
+    Class<?> configurationClass =
+        compile(exampleManifest(), new GeneratorOptions().csvReaders(true));
+    Class<?> cursorClass = Arrays.stream(configurationClass.getDeclaredClasses())
+        .filter(c -> c.getSimpleName().equals("CsvCursor")).findFirst().get();
+
+    String content = "\uFEFFname,count\r\nalpha,1\n\"b,\"\"c\"\"\nd\",-42\n,\n"
+        + "\u00e9t\u00e9,\ud83d\ude00\nlast,9223372036854775807";
+    List<List<String>> expected = Arrays.asList(Arrays.asList("name", "count"),
+        Arrays.asList("alpha", "1"), Arrays.asList("b,\"c\"\nd", "-42"), Arrays.asList("", ""),
+        Arrays.asList("\u00e9t\u00e9", "\ud83d\ude00"),
+        Arrays.asList("last", "9223372036854775807"));
+
+    Object configuration = configurationClass.getConstructor().newInstance();
+    configurationClass.getField("input").set(configuration,
+        Proxy.newProxyInstance(InputSource.class.getClassLoader(),
+            new Class<?>[] {InputSource.class}, (proxy, method, args) -> new ByteArrayInputStream(
+                content.getBytes(StandardCharsets.UTF_8))));
+    try (Closeable cursor =
+        (Closeable) configurationClass.getMethod("readInputCsv").invoke(configuration)) {
+      assertThat(readCsvRows(cursor), is(expected));
+    }
+
+    for (int bufferSize : new int[] {2, 3, 5, 8}) {
+      try (Closeable cursor = (Closeable) cursorClass
+          .getConstructor(InputStream.class, char.class, int.class).newInstance(
+              new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), ',',
+              bufferSize)) {
+        assertThat(readCsvRows(cursor), is(expected));
+      }
+    }
+
+    Method next = cursorClass.getMethod("next");
+    Method getLong = cursorClass.getMethod("getLong", int.class);
+    try (Closeable cursor = (Closeable) cursorClass
+        .getConstructor(InputStream.class, char.class, int.class)
+        .newInstance(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), ',', 4)) {
+      for (int i = 0; i < 3; i++)
+        next.invoke(cursor);
+      assertThat(getLong.invoke(cursor, 1), is(-42L));
+      for (int i = 0; i < 3; i++)
+        next.invoke(cursor);
+      assertThat(getLong.invoke(cursor, 1), is(Long.MAX_VALUE));
+    }
+
+    final int rows = 1000000;
+    byte[] row = "12345,some text,\"quoted, text\"\n".getBytes(StandardCharsets.UTF_8);
+    InputStream large = new InputStream() {
+      private long position = 0;
+
+      @Override
+      public int read() {
+        return position == (long) rows * row.length ? -1
+            : row[(int) (position++ % row.length)] & 0xFF;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+        long remaining = (long) rows * row.length - position;
+        if (remaining == 0)
+          return -1;
+        int n = (int) Math.min(len, remaining);
+        for (int i = 0; i < n; i++)
+          b[off + i] = row[(int) (position++ % row.length)];
+        return n;
+      }
+    };
+    try (Closeable cursor = (Closeable) cursorClass
+        .getConstructor(InputStream.class, char.class, int.class)
+        .newInstance(large, ',', 4096)) {
+      long count = 0;
+      while ((boolean) next.invoke(cursor)) {
+        count = count + 1;
+        assertThat(getLong.invoke(cursor, 0), is(12345L));
+      }
+      assertThat(count, is((long) rows));
+      Field chars = cursorClass.getDeclaredField("chars");
+      chars.setAccessible(true);
+      assertThat(((char[]) chars.get(cursor)).length, is(4096));
+    }
+  }
+
+  private static List<List<String>> readCsvRows(Object cursor) throws Exception {
+    Method next = cursor.getClass().getMethod("next");
+    Method getFieldCount = cursor.getClass().getMethod("getFieldCount");
+    Method getField = cursor.getClass().getMethod("getField", int.class);
+    List<List<String>> result = new ArrayList<>();
+    while ((boolean) next.invoke(cursor)) {
+      List<String> fields = new ArrayList<>();
+      for (int i = 0; i < (int) getFieldCount.invoke(cursor); i++)
+        fields.add(getField.invoke(cursor, i).toString());
+      result.add(fields);
+    }
+    return result;
+  }
+
+  /**
+   * The generated writers should quote CSV fields as RFC 4180 requires, and should stream XLSX
+   * rows into as many worksheets as the row limit requires
+   */
+  @Test
+  public void rowWritersTest() throws Exception {
+    Class<?> configurationClass =
+        compile(exampleManifest(), new GeneratorOptions().rowWriters(true));
+    Class<?> xlsxWriterClass = Arrays.stream(configurationClass.getDeclaredClasses())
+        .filter(c -> c.getSimpleName().equals("XlsxWriter")).findFirst().get();
+
+    ByteArrayOutputStream csv = new ByteArrayOutputStream();
+    Object configuration = configurationClass.getConstructor().newInstance();
+    configurationClass.getField("outputCsv").set(configuration,
+        Proxy.newProxyInstance(OutputSink.class.getClassLoader(),
+            new Class<?>[] {OutputSink.class}, (proxy, method, args) -> csv));
+    try (Closeable writer =
+        (Closeable) configurationClass.getMethod("writeOutputCsv").invoke(configuration)) {
+      writeRows(writer);
+    }
+    assertThat(new String(csv.toByteArray(), StandardCharsets.UTF_8),
+        is("name,count,ratio,flag\n\"b,\"\"c\"\"\nd\",-42,0.5,true\n<&>\u00e9\u0001,"
+            + "-9223372036854775808,NaN,false\n"));
+
+    ByteArrayOutputStream xlsx = new ByteArrayOutputStream();
+    try (Closeable writer = (Closeable) xlsxWriterClass
+        .getConstructor(OutputStream.class, int.class).newInstance(xlsx, 2)) {
+      writeRows(writer);
+    }
+    Map<String, String> entries = new HashMap<>();
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(xlsx.toByteArray()))) {
+      for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry())
+        entries.put(entry.getName(),
+            new String(ByteStreams.toByteArray(zip), StandardCharsets.UTF_8));
+    }
+    assertThat(entries.keySet(),
+        is(new HashSet<>(Arrays.asList("[Content_Types].xml", "_rels/.rels", "xl/workbook.xml",
+            "xl/_rels/workbook.xml.rels", "xl/worksheets/sheet1.xml",
+            "xl/worksheets/sheet2.xml"))));
+    assertThat(entries.get("xl/worksheets/sheet1.xml").contains("<sheetData><row r=\"1\">"
+        + "<c r=\"A1\" t=\"inlineStr\"><is><t xml:space=\"preserve\">name</t></is></c>"), is(true));
+    assertThat(entries.get("xl/worksheets/sheet1.xml").contains("<row r=\"2\">"
+        + "<c r=\"A2\" t=\"inlineStr\"><is><t xml:space=\"preserve\">b,\"c\"\nd</t></is></c>"
+        + "<c r=\"B2\"><v>-42</v></c><c r=\"C2\"><v>0.5</v></c>"
+        + "<c r=\"D2\" t=\"b\"><v>1</v></c></row></sheetData>"), is(true));
+    assertThat(entries.get("xl/worksheets/sheet2.xml").contains("<sheetData><row r=\"1\">"
+        + "<c r=\"A1\" t=\"inlineStr\"><is><t xml:space=\"preserve\">&lt;&amp;&gt;\u00e9</t>"
+        + "</is></c><c r=\"B1\"><v>-9223372036854775808</v></c>"
+        + "<c r=\"C1\" t=\"inlineStr\"><is><t xml:space=\"preserve\">NaN</t></is></c>"
+        + "<c r=\"D1\" t=\"b\"><v>0</v></c></row></sheetData>"), is(true));
+    assertThat(entries.get("xl/workbook.xml").contains(
+        "<sheet name=\"Sheet2\" sheetId=\"2\" r:id=\"rId2\"/></sheets>"), is(true));
+    DocumentBuilder parser = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+    for (String xml : entries.values())
+      parser.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static void writeRows(Object writer) throws Exception {
+    Method writeString = writer.getClass().getMethod("writeField", CharSequence.class);
+    Method writeLong = writer.getClass().getMethod("writeField", long.class);
+    Method writeDouble = writer.getClass().getMethod("writeField", double.class);
+    Method writeBoolean = writer.getClass().getMethod("writeField", boolean.class);
+    Method endRow = writer.getClass().getMethod("endRow");
+    for (String name : new String[] {"name", "count", "ratio", "flag"})
+      writeString.invoke(writer, name);
+    endRow.invoke(writer);
+    writeString.invoke(writer, "b,\"c\"\nd");
+    writeLong.invoke(writer, -42L);
+    writeDouble.invoke(writer, 0.5);
+    writeBoolean.invoke(writer, true);
+    endRow.invoke(writer);
+    writeString.invoke(writer, "<&>\u00e9\u0001");
+    writeLong.invoke(writer, Long.MIN_VALUE);
+    writeDouble.invoke(writer, Double.NaN);
+    writeBoolean.invoke(writer, false);
+    endRow.invoke(writer);
+  }
+
+  /**
+   * A manifest with 1,000 parameters should split validation into helper methods small enough to
+   * compile, and validation should still reach every parameter. HugeManifestBenchmark times the
+   * same shape of manifest at 10,000 parameters.
+   */
+  @Test
+  public void hugeManifestTest() throws Exception {
+    ToolManifest manifest = new ToolManifest();
+    for (int i = 0; i < 1000; i++) {
+      if (i % 4 == 0)
+        manifest.addParametersItem(new IntParameterDefinition().minimum(0L).maximum(100L)
+            .type(ParameterType.INT).name("parameter" + i).description("An int.")
+            .required(false));
+      else
+        manifest.addParametersItem(new BooleanParameterDefinition().type(ParameterType.BOOLEAN)
+            .name("parameter" + i).description("A boolean.").required(false));
+    }
+
+    Class<?> configurationClass = compile(manifest, new GeneratorOptions());
+    Object configuration = configurationClass.getConstructor().newInstance();
+    Method validate = configurationClass.getMethod("validate");
+    validate.invoke(configuration);
+
+    long helpers = Arrays.stream(configurationClass.getDeclaredMethods())
+        .filter(m -> m.getName().matches("validate\\d+")).count();
+    assertThat(helpers > 1, is(true));
+
+    Field last = configurationClass.getField("parameter996");
+    last.set(configuration, 100L);
+    validate.invoke(configuration);
+    last.set(configuration, -1L);
+    try {
+      validate.invoke(configuration);
+      throw new AssertionError("validate should fail");
+    } catch (InvocationTargetException e) {
+      assertThat(e.getCause().getMessage(), is("parameter996 must be greater than or equal to 0"));
+    }
+  }
+
+  private static String parseFailure(Method parse, String[] args) throws IllegalAccessException {
+    try {
+      parse.invoke(null, args, Collections.emptyMap(), null, null);
+      throw new AssertionError("parse should fail");
+    } catch (InvocationTargetException e) {
+      assertThat(e.getCause() instanceof IllegalArgumentException, is(true));
+      return e.getCause().getMessage();
+    }
+  }
+
+  /**
+   * Generates, compiles, and loads the configuration class for the given manifest
+   */
+  static Class<?> compile(ToolManifest manifest, GeneratorOptions options)
+      throws ClassNotFoundException {
+    ClassName className = ClassName.get("com.example", "Configuration");
+    TypeSpec configurationType =
+        new CodeGenerator(className, options).generateConfiguration(manifest);
+    return InMemoryCompiler.compile(JavaFile.builder("com.example", configurationType).build())
+        .loadClass(className.reflectionName());
+  }
+
+  /**
+   * A manifest with one of every kind of parameter, slot, and environment variable
+   */
+  static ToolManifest exampleManifest() {
+    return (ToolManifest) new ToolManifest()
         .addParametersItem(new BooleanParameterDefinition()._default(true)
             .type(ParameterType.BOOLEAN).name("exampleBoolean")
             .description("This is an example boolean field.").required(true))
@@ -88,20 +823,5 @@ public class CodeGeneratorTest {
                 .required(true).description("This is variable 1.")._default("hello"))
             .addSecretsItem(new ContainerVersionSecret().name("EXAMPLE_SECRET_1").required(false)
                 .description("This is secret 1.").example("world")));
-
-    TypeSpec configurationType = new CodeGenerator(className).generateConfiguration(manifest);
-
-    JavaFile javaFile = JavaFile.builder("com.example", configurationType).build();
-
-    String observed;
-    try (StringWriter w = new StringWriter()) {
-      javaFile.writeTo(w);
-      observed = w.toString();
-    }
-
-    String expected = Resources.toString(Resources.getResource("com/example/Configuration.java"),
-        StandardCharsets.UTF_8);
-
-    assertThat(observed, is(expected));
   }
 }
@@ -0,0 +1,209 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import javax.tools.ToolProvider;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import io.toolforge.spi.model.BooleanParameterDefinition;
+import io.toolforge.spi.model.ContainerVersionSecret;
+import io.toolforge.spi.model.ContainerVersionVariable;
+import io.toolforge.spi.model.DateParameterDefinition;
+import io.toolforge.spi.model.EnumerationStringDomain;
+import io.toolforge.spi.model.IntParameterDefinition;
+import io.toolforge.spi.model.ManifestEnvironment;
+import io.toolforge.spi.model.ParameterType;
+import io.toolforge.spi.model.PatternStringDomain;
+import io.toolforge.spi.model.Slot;
+import io.toolforge.spi.model.StringDomainType;
+import io.toolforge.spi.model.StringParameterDefinition;
+import io.toolforge.spi.model.ToolManifest;
+import io.toolforge.spi.model.expr.date.AbsoluteDateExpr;
+
+public class GenerateCdsArchiveMojoTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  /**
+   * Parameters should get their defaults, overrides, or a plausible value if required, and slots
+   * should be bound to local files
+   */
+  @Test
+  public void trainingArgumentsTest() throws Exception {
+    File basedir = temp.newFolder("module");
+    GenerateCdsArchiveMojo mojo = mojo(basedir);
+    GenerateConfigurationMojoTest.set(mojo, "trainingArguments",
+        Collections.singletonMap("override", "7"));
+    File trainingDirectory = new File(basedir, "target/toolforge/cds");
+
+    List<String> arguments = mojo.getTrainingArguments(manifest(), trainingDirectory);
+
+    String inputs = new File(trainingDirectory, "inputs").getAbsolutePath() + File.separator;
+    String outputs = new File(trainingDirectory, "outputs").getAbsolutePath() + File.separator;
+    assertThat(arguments,
+        is(Arrays.asList("--flag", "true", "--count", "5", "--override", "7", "--mode", "alpha",
+            "--since", "2020-01-01", "--input", inputs + "input.csv", "--output.csv",
+            outputs + "output.csv", "--output.xlsx", outputs + "output.xlsx")));
+    assertThat(new File(inputs, "input.csv").length(), is(0L));
+
+    assertThat(mojo.getTrainingEnvironment(manifest()).toString(),
+        is("{EXAMPLE_VARIABLE=hello, EXAMPLE_SECRET=training}"));
+  }
+
+  /**
+   * A required pattern parameter without a default has no safe value, so it must be given
+   */
+  @Test(expected = MojoExecutionException.class)
+  public void requiredPatternTest() throws Exception {
+    File basedir = temp.newFolder("module");
+    ToolManifest manifest = manifest();
+    manifest.getParameters().stream().filter(p -> p.getName().equals("pattern")).findFirst()
+        .get().setRequired(true);
+    mojo(basedir).getTrainingArguments(manifest, new File(basedir, "target/toolforge/cds"));
+  }
+
+  /**
+   * The training run should see its slot files, write an archive, and leave the JVM flags for it
+   */
+  @Test
+  public void archiveTest() throws Exception {
+    String version = System.getProperty("java.specification.version");
+    Assume.assumeTrue("Dynamic CDS archives need JDK 13 or later",
+        !version.startsWith("1.") && Integer.parseInt(version) >= 13);
+
+    File basedir = temp.newFolder("module");
+    ToolManifest manifest = manifest();
+    manifest.getParameters().removeIf(p -> p.getType() == ParameterType.DATE);
+    Files.write(new File(basedir, "manifest.yml").toPath(),
+        AbstractConfigurationMojo.YAML.writeValueAsBytes(manifest));
+
+    GenerateCdsArchiveMojo mojo = mojo(basedir);
+    mojo.project.getArtifact().setFile(jar(basedir));
+    GenerateConfigurationMojoTest.set(mojo, "runtimeArchivePath", "/app/app.jsa");
+    mojo.execute();
+
+    assertThat(new File(basedir, "target/toolforge/app.jsa").length() > 0L, is(true));
+    assertThat(new String(
+        Files.readAllBytes(new File(basedir, "target/toolforge/cds.jvmflags").toPath()),
+        StandardCharsets.UTF_8), is("-XX:SharedArchiveFile=/app/app.jsa\n-Xshare:auto\n"));
+    assertThat(new String(
+        Files.readAllBytes(
+            new File(basedir, "target/toolforge/cds/outputs/output.csv").toPath()),
+        StandardCharsets.UTF_8), is("hello"));
+  }
+
+  private static ToolManifest manifest() {
+    return (ToolManifest) new ToolManifest()
+        .addParametersItem(new BooleanParameterDefinition()._default(true)
+            .type(ParameterType.BOOLEAN).name("flag").description("Flag.").required(true))
+        .addParametersItem(new IntParameterDefinition().minimum(5L).maximum(10L)
+            .type(ParameterType.INT).name("count").description("Count.").required(true))
+        .addParametersItem(new IntParameterDefinition()._default(1L).type(ParameterType.INT)
+            .name("override").description("Override.").required(false))
+        .addParametersItem(new IntParameterDefinition().type(ParameterType.INT)
+            .name("optional").description("Optional.").required(false))
+        .addParametersItem(new StringParameterDefinition()
+            .domain(new EnumerationStringDomain().addValuesItem("alpha").addValuesItem("bravo")
+                .type(StringDomainType.ENUMERATION))
+            .type(ParameterType.STRING).name("mode").description("Mode.").required(true))
+        .addParametersItem(new StringParameterDefinition()
+            .domain(new PatternStringDomain().pattern("^x+$").type(StringDomainType.PATTERN))
+            .type(ParameterType.STRING).name("pattern").description("Pattern.")
+            .required(false))
+        .addParametersItem(new DateParameterDefinition()
+            .minimum(AbsoluteDateExpr.of(LocalDate.of(2020, 1, 1))).type(ParameterType.DATE)
+            .name("since").description("Since.").required(true))
+        .addInputsItem(
+            new Slot().name("input").description("Input.").addExtensionsItem("csv"))
+        .addOutputsItem(new Slot().name("output").description("Output.").addExtensionsItem("csv")
+            .addExtensionsItem("xlsx"))
+        .environment(new ManifestEnvironment()
+            .addVariablesItem(new ContainerVersionVariable().name("EXAMPLE_VARIABLE")
+                .description("Variable.")._default("hello").required(true))
+            .addSecretsItem(new ContainerVersionSecret().name("EXAMPLE_SECRET")
+                .description("Secret.").required(true)));
+  }
+
+  /**
+   * Packages a tool that writes the value of its variable to its csv output
+   */
+  private File jar(File basedir) throws IOException {
+    File sourceDirectory = temp.newFolder("tool-sources");
+    File classesDirectory = temp.newFolder("tool-classes");
+    File source = new File(sourceDirectory, "Tool.java");
+    Files.write(source.toPath(),
+        ("public class Tool {\n" + "  public static void main(String[] args) throws Exception {\n"
+            + "    for(int i = 0; i < args.length; i++)\n"
+            + "      if(args[i].equals(\"--output.csv\"))\n"
+            + "        java.nio.file.Files.write(java.nio.file.Paths.get(args[i + 1]),\n"
+            + "            System.getenv(\"EXAMPLE_VARIABLE\").getBytes(\"UTF-8\"));\n"
+            + "  }\n" + "}\n").getBytes(StandardCharsets.UTF_8));
+    assertThat(ToolProvider.getSystemJavaCompiler().run(null, null, null, "-d",
+        classesDirectory.getPath(), source.getPath()), is(0));
+
+    File result = new File(basedir, "target/tool.jar");
+    Files.createDirectories(result.getParentFile().toPath());
+    try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(result.toPath()))) {
+      jar.putNextEntry(new JarEntry("Tool.class"));
+      jar.write(Files.readAllBytes(new File(classesDirectory, "Tool.class").toPath()));
+      jar.closeEntry();
+    }
+    return result;
+  }
+
+  private static GenerateCdsArchiveMojo mojo(File basedir) throws ReflectiveOperationException {
+    MavenProject project = new MavenProject();
+    project.setFile(new File(basedir, "pom.xml"));
+    Build build = new Build();
+    build.setOutputDirectory(new File(basedir, "target/classes").getAbsolutePath());
+    project.setBuild(build);
+    project.setArtifact(new DefaultArtifact("com.example", "tool", "1.0", "compile", "jar", null,
+        new DefaultArtifactHandler("jar")));
+
+    GenerateCdsArchiveMojo result = new GenerateCdsArchiveMojo();
+    GenerateConfigurationMojoTest.set(result, "project", project);
+    GenerateConfigurationMojoTest.set(result, "manifestLocation", "manifest.yml");
+    GenerateConfigurationMojoTest.set(result, "mainClass", "Tool");
+    GenerateConfigurationMojoTest.set(result, "archiveLocation", "target/toolforge/app.jsa");
+    GenerateConfigurationMojoTest.set(result, "flagsLocation", "target/toolforge/cds.jvmflags");
+    GenerateConfigurationMojoTest.set(result, "trainingDirectory", "target/toolforge/cds");
+    GenerateConfigurationMojoTest.set(result, "timeoutSeconds", 120);
+    return result;
+  }
+}
@@ -0,0 +1,370 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.maven.project.MavenProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import io.toolforge.spi.model.BooleanParameterDefinition;
+import io.toolforge.spi.model.ContainerSize;
+import io.toolforge.spi.model.EnumerationStringDomain;
+import io.toolforge.spi.model.IntParameterDefinition;
+import io.toolforge.spi.model.ManifestEnvironment;
+import io.toolforge.spi.model.ParameterType;
+import io.toolforge.spi.model.PatternStringDomain;
+import io.toolforge.spi.model.Slot;
+import io.toolforge.spi.model.StringDomainType;
+import io.toolforge.spi.model.StringParameterDefinition;
+import io.toolforge.spi.model.ToolManifest;
+
+public class GenerateConfigurationMojoTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  /**
+   * Many modules generating at once should each get exactly their own configuration
+   */
+  @Test
+  public void concurrentExecutionTest() throws Exception {
+    final int modules = 32;
+
+    List<File> basedirs = new ArrayList<>();
+    List<GenerateConfigurationMojo> mojos = new ArrayList<>();
+    for (int i = 0; i < modules; i++) {
+      File basedir = temp.newFolder("module" + i);
+      writeManifest(basedir, manifest(i));
+      basedirs.add(basedir);
+      mojos.add(mojo(basedir));
+    }
+
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(modules);
+    try {
+      List<Future<Void>> results = new ArrayList<>();
+      for (GenerateConfigurationMojo mojo : mojos) {
+        results.add(executor.submit((Callable<Void>) () -> {
+          start.await();
+          mojo.execute();
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<Void> result : results)
+        result.get();
+    } finally {
+      executor.shutdown();
+    }
+
+    for (int i = 0; i < modules; i++) {
+      assertThat(new String(Files.readAllBytes(configurationFile(basedirs.get(i)).toPath()),
+          StandardCharsets.UTF_8), is(expected(manifest(i))));
+      assertThat(mojos.get(i).project.getCompileSourceRoots(),
+          hasItem(new File(basedirs.get(i), "target/generated-sources").getAbsolutePath()));
+    }
+  }
+
+  /**
+   * A second execution over an unchanged manifest should not touch the generated source
+   */
+  @Test
+  public void unchangedManifestTest() throws Exception {
+    File basedir = temp.newFolder("module");
+    writeManifest(basedir, manifest(0));
+
+    mojo(basedir).execute();
+
+    File configurationFile = configurationFile(basedir);
+    configurationFile.setLastModified(0L);
+
+    GenerateConfigurationMojo mojo = mojo(basedir);
+    mojo.execute();
+
+    assertThat(configurationFile.lastModified(), is(0L));
+    assertThat(mojo.project.getCompileSourceRoots(),
+        hasItem(new File(basedir, "target/generated-sources").getAbsolutePath()));
+
+    writeManifest(basedir, manifest(1));
+
+    mojo(basedir).execute();
+
+    assertThat(new String(Files.readAllBytes(configurationFile.toPath()), StandardCharsets.UTF_8),
+        is(expected(manifest(1))));
+  }
+
+  /**
+   * An incremental IDE build whose delta does not include the manifest should not regenerate
+   */
+  @Test
+  public void incrementalBuildTest() throws Exception {
+    File basedir = temp.newFolder("module");
+    writeManifest(basedir, manifest(0));
+
+    mojo(basedir).execute();
+
+    writeManifest(basedir, manifest(1));
+
+    GenerateConfigurationMojo mojo = mojo(basedir);
+    set(mojo, "buildContext", new DefaultBuildContext() {
+      @Override
+      public boolean isIncremental() {
+        return true;
+      }
+
+      @Override
+      public boolean hasDelta(File file) {
+        return false;
+      }
+    });
+    set(mojo, "writeMetrics", true);
+    mojo.execute();
+
+    assertThat(new String(Files.readAllBytes(configurationFile(basedir).toPath()),
+        StandardCharsets.UTF_8), is(expected(manifest(0))));
+    assertThat(AbstractConfigurationMojo.JSON
+        .readTree(new File(basedir, "target/toolforge/metrics/com.example.Configuration.json"))
+        .path("skipped").asBoolean(), is(true));
+  }
+
+  /**
+   * Metrics should record the phases and sizes of the generation
+   */
+  @Test
+  public void metricsTest() throws Exception {
+    File basedir = temp.newFolder("module");
+    writeManifest(basedir, manifest(0));
+
+    GenerateConfigurationMojo mojo = mojo(basedir);
+    set(mojo, "writeMetrics", true);
+    mojo.execute();
+
+    JsonNode metrics = AbstractConfigurationMojo.JSON.readTree(
+        new File(basedir, "target/toolforge/metrics/com.example.Configuration.json"));
+
+    assertThat(metrics.path("configurationClass").asText(), is("com.example.Configuration"));
+    assertThat(metrics.path("skipped").asBoolean(), is(false));
+    assertThat(metrics.path("written").asBoolean(), is(true));
+    assertThat(metrics.path("manifestBytes").asLong(),
+        is(new File(basedir, "manifest.yml").length()));
+    assertThat(metrics.path("parameterCount").asInt(), is(4));
+    assertThat(metrics.path("inputSlotCount").asInt(), is(1));
+    assertThat(metrics.path("outputSlotCount").asInt(), is(1));
+    assertThat(metrics.path("generatedSourceBytes").asLong(),
+        is(configurationFile(basedir).length()));
+    for (String phase : new String[] {GenerationMetrics.READ, GenerationMetrics.PARSE,
+        GenerationMetrics.GENERATE, GenerationMetrics.RENDER, GenerationMetrics.WRITE})
+      assertThat(phase, metrics.path("phaseNanos").has(phase), is(true));
+  }
+
+  @Test
+  public void nativeImageConfigTest() throws Exception {
+    File basedir = temp.newFolder("module");
+    writeManifest(basedir, manifest(0));
+
+    GenerateConfigurationMojo mojo = mojo(basedir);
+    mojo.project.setGroupId("com.example");
+    mojo.project.setArtifactId("tool");
+    set(mojo, "generateNativeImageConfig", true);
+    mojo.execute();
+
+    File reflectConfigFile = new File(basedir, "target/generated-resources/toolforge/"
+        + "META-INF/native-image/com.example/tool/reflect-config.json");
+    JsonNode reflectConfig = AbstractConfigurationMojo.JSON.readTree(reflectConfigFile);
+
+    List<String> names = new ArrayList<>();
+    reflectConfig.forEach(entry -> names.add(entry.path("name").asText()));
+    assertThat(names, hasItem("com.example.Configuration"));
+    assertThat(names, hasItem("io.toolforge.toolforge4j.io.InputSource"));
+    assertThat(names, hasItem("com.sigpwned.discourse.core.annotation.OptionParameter"));
+    assertThat(reflectConfig.get(0).path("allDeclaredFields").asBoolean(), is(true));
+
+    assertThat(mojo.project.getResources().size(), is(1));
+    assertThat(mojo.project.getResources().get(0).getDirectory(),
+        is(new File(basedir, "target/generated-resources/toolforge").getAbsolutePath()));
+
+    // An up-to-date run must not skip generation if the metadata has been deleted
+    Files.delete(reflectConfigFile.toPath());
+    mojo.execute();
+    assertThat(reflectConfigFile.isFile(), is(true));
+    assertThat(mojo.project.getResources().size(), is(1));
+  }
+
+  /**
+   * Enumeration tables are loaded from the classpath at runtime, so the resources directory must
+   * be packaged even without native image metadata, including when generation is skipped
+   */
+  @Test
+  public void enumerationTableResourceTest() throws Exception {
+    File basedir = temp.newFolder("module");
+    writeManifest(basedir, manifest(0));
+
+    GenerateConfigurationMojo mojo = mojo(basedir);
+    set(mojo, "generateNativeImageConfig", false);
+    set(mojo, "enumerationTableThreshold", 1);
+    mojo.execute();
+
+    assertThat(new File(basedir, "target/generated-resources/toolforge/com/example/"
+        + "Configuration-mode0.values").isFile(), is(true));
+    assertThat(mojo.project.getResources().size(), is(1));
+    assertThat(mojo.project.getResources().get(0).getDirectory(),
+        is(new File(basedir, "target/generated-resources/toolforge").getAbsolutePath()));
+
+    GenerateConfigurationMojo skipped = mojo(basedir);
+    set(skipped, "enumerationTableThreshold", 1);
+    skipped.execute();
+    assertThat(skipped.project.getResources().size(), is(1));
+
+    GenerateConfigurationMojo outsideDelta = mojo(basedir);
+    set(outsideDelta, "enumerationTableThreshold", 1);
+    set(outsideDelta, "buildContext", new DefaultBuildContext() {
+      @Override
+      public boolean isIncremental() {
+        return true;
+      }
+
+      @Override
+      public boolean hasDelta(File file) {
+        return false;
+      }
+    });
+    outsideDelta.execute();
+    assertThat(outsideDelta.project.getResources().size(), is(1));
+  }
+
+  /**
+   * The JVM options should match the container size declared in the manifest
+   */
+  @Test
+  public void runtimeTest() throws Exception {
+    File basedir = temp.newFolder("module");
+    ToolManifest manifest = manifest(0);
+    manifest.setEnvironment(new ManifestEnvironment().size(ContainerSize.LARGE));
+    writeManifest(basedir, manifest);
+
+    GenerateConfigurationMojo mojo = mojo(basedir);
+    set(mojo, "generateRuntime", true);
+    mojo.execute();
+
+    assertThat(
+        Files.readAllLines(
+            new File(basedir, "target/toolforge/jvm/com.example.Configuration.jvm.config")
+                .toPath(),
+            StandardCharsets.UTF_8),
+        is(Arrays.asList("-Xms6144m", "-Xmx6144m", "-XX:ActiveProcessorCount=4",
+            "-XX:+UseParallelGC", "-Djava.util.concurrent.ForkJoinPool.common.parallelism=4")));
+  }
+
+  private static ToolManifest manifest(int i) {
+    return new ToolManifest()
+        .addParametersItem(new BooleanParameterDefinition()._default(true)
+            .type(ParameterType.BOOLEAN).name("flag" + i).description("Flag " + i + ".")
+            .required(true))
+        .addParametersItem(new IntParameterDefinition()._default((long) i).minimum(0L)
+            .maximum(100L + i).type(ParameterType.INT).name("count" + i)
+            .description("Count " + i + ".").required(true))
+        .addParametersItem(new StringParameterDefinition()
+            .domain(new EnumerationStringDomain().addValuesItem("alpha" + i)
+                .addValuesItem("bravo" + i).type(StringDomainType.ENUMERATION))
+            ._default("alpha" + i).type(ParameterType.STRING).name("mode" + i)
+            .description("Mode " + i + ".").required(false))
+        .addParametersItem(new StringParameterDefinition()
+            .domain(new PatternStringDomain().pattern("^x{" + i + "}$")
+                .type(StringDomainType.PATTERN))
+            .type(ParameterType.STRING).name("pattern" + i).description("Pattern " + i + ".")
+            .required(false))
+        .addInputsItem(new Slot().name("input" + i).description("Input " + i + ".")
+            .addExtensionsItem("csv"))
+        .addOutputsItem(new Slot().name("output" + i).description("Output " + i + ".")
+            .addExtensionsItem("csv"));
+  }
+
+  private static void writeManifest(File basedir, ToolManifest manifest) throws IOException {
+    Files.write(new File(basedir, "manifest.yml").toPath(),
+        AbstractConfigurationMojo.YAML.writeValueAsBytes(manifest));
+  }
+
+  private static String expected(ToolManifest manifest) {
+    ClassName className = ClassName.get("com.example", "Configuration");
+    return JavaFile
+        .builder("com.example", new CodeGenerator(className).generateConfiguration(manifest))
+        .build().toString();
+  }
+
+  private static File configurationFile(File basedir) {
+    return new File(basedir, "target/generated-sources/com/example/Configuration.java");
+  }
+
+  private static GenerateConfigurationMojo mojo(File basedir) throws ReflectiveOperationException {
+    MavenProject project = new MavenProject();
+    project.setFile(new File(basedir, "pom.xml"));
+
+    GenerateConfigurationMojo result = new GenerateConfigurationMojo();
+    set(result, "project", project);
+    set(result, "buildContext", new DefaultBuildContext());
+    set(result, "outputDirectory", "target/generated-sources");
+    set(result, "manifestLocation", "manifest.yml");
+    set(result, "outputPackage", "com.example");
+    set(result, "outputClassName", "Configuration");
+    set(result, "fingerprintLocation", "target/toolforge/configuration.fingerprint");
+    set(result, "metricsDirectory", "target/toolforge/metrics");
+    set(result, "resourcesDirectory", "target/generated-resources/toolforge");
+    set(result, "jvmOptionsDirectory", "target/toolforge/jvm");
+    return result;
+  }
+
+  /**
+   * Sets a mojo parameter the way Maven would, since parameters have no setters. Shared by the
+   * mojo tests.
+   */
+  static void set(Object mojo, String name, Object value)
+      throws ReflectiveOperationException {
+    for (Class<?> type = mojo.getClass(); type != null; type = type.getSuperclass()) {
+      try {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(mojo, value);
+        return;
+      } catch (NoSuchFieldException e) {
+        // Try the superclass
+      }
+    }
+    throw new NoSuchFieldException(name);
+  }
+}
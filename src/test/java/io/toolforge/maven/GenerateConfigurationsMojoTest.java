@@ -0,0 +1,175 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonatype.plexus.build.incremental.BuildContext;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+import org.sonatype.plexus.build.incremental.ThreadBuildContext;
+import io.toolforge.spi.model.BooleanParameterDefinition;
+import io.toolforge.spi.model.ParameterType;
+import io.toolforge.spi.model.ToolManifest;
+
+public class GenerateConfigurationsMojoTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  /**
+   * Classes are named after the manifest file, or its directory for a plain manifest.yml
+   */
+  @Test
+  public void defaultClassNameTest() {
+    assertThat(GenerateConfigurationsMojo.defaultClassName("tools/word-count/manifest.yml"),
+        is("WordCountConfiguration"));
+    assertThat(GenerateConfigurationsMojo.defaultClassName("manifests/fast_variant.yaml"),
+        is("FastVariantConfiguration"));
+    assertThat(GenerateConfigurationsMojo.defaultClassName("manifest.yml"),
+        is("ManifestConfiguration"));
+    assertThat(GenerateConfigurationsMojo.defaultClassName("manifests/2023.yml"),
+        is("Tool2023Configuration"));
+  }
+
+  /**
+   * IDEs bind their BuildContext to the thread that runs the mojo, so the delta checks, writes, and
+   * markers must all happen on that thread, not on the threads that render the configurations
+   */
+  @Test
+  public void threadBuildContextTest() throws Exception {
+    File basedir = temp.newFolder("module");
+    writeManifest(basedir, "changed", "before");
+    writeManifest(basedir, "unchanged", "before");
+    mojo(basedir, new DefaultBuildContext()).execute();
+
+    writeManifest(basedir, "changed", "after");
+    writeManifest(basedir, "unchanged", "after");
+    Files.write(new File(basedir, "manifests/broken.yml").toPath(),
+        "type: tool\nparameters: [".getBytes());
+
+    RecordingBuildContext buildContext = new RecordingBuildContext();
+    buildContext.delta.add(new File(basedir, "manifests/changed.yml"));
+    buildContext.delta.add(new File(basedir, "manifests/broken.yml"));
+    ThreadBuildContext.setThreadBuildContext(buildContext);
+    try {
+      mojo(basedir, new ThreadBuildContext()).execute();
+      fail("The broken manifest should fail the build");
+    } catch (MojoExecutionException e) {
+      // Expected
+    } finally {
+      ThreadBuildContext.setThreadBuildContext(null);
+    }
+
+    assertThat(buildContext.checked,
+        is(Arrays.asList(new File(basedir, "manifests/broken.yml"),
+            new File(basedir, "manifests/changed.yml"),
+            new File(basedir, "manifests/unchanged.yml"))));
+    assertThat(buildContext.written, is(Collections.singletonList(
+        new File(basedir, "target/generated-sources/com/example/ChangedConfiguration.java"))));
+    assertThat(buildContext.marked,
+        is(Collections.singletonList(new File(basedir, "manifests/broken.yml"))));
+  }
+
+  private static void writeManifest(File basedir, String name, String parameterName)
+      throws IOException {
+    File manifestFile = new File(basedir, "manifests/" + name + ".yml");
+    Files.createDirectories(manifestFile.getParentFile().toPath());
+    Files.write(manifestFile.toPath(),
+        AbstractConfigurationMojo.YAML.writeValueAsBytes(new ToolManifest()
+            .addParametersItem(new BooleanParameterDefinition()._default(true)
+                .type(ParameterType.BOOLEAN).name(parameterName)
+                .description("Parameter " + parameterName + ".").required(true))));
+  }
+
+  private static GenerateConfigurationsMojo mojo(File basedir, BuildContext buildContext)
+      throws ReflectiveOperationException {
+    MavenProject project = new MavenProject();
+    project.setFile(new File(basedir, "pom.xml"));
+
+    ManifestSet manifests = new ManifestSet();
+    manifests.setLocation("manifests/*.yml");
+    manifests.setOutputPackage("com.example");
+
+    GenerateConfigurationsMojo result = new GenerateConfigurationsMojo();
+    GenerateConfigurationMojoTest.set(result, "project", project);
+    GenerateConfigurationMojoTest.set(result, "buildContext", buildContext);
+    GenerateConfigurationMojoTest.set(result, "outputDirectory", "target/generated-sources");
+    GenerateConfigurationMojoTest.set(result, "manifests", Collections.singletonList(manifests));
+    GenerateConfigurationMojoTest.set(result, "fingerprintDirectory",
+        "target/toolforge/fingerprints");
+    GenerateConfigurationMojoTest.set(result, "resourcesDirectory",
+        "target/generated-resources/toolforge");
+    GenerateConfigurationMojoTest.set(result, "threads", 2);
+    return result;
+  }
+
+  /**
+   * An incremental build context that records how the mojo uses it
+   */
+  private static class RecordingBuildContext extends DefaultBuildContext {
+    private final Set<File> delta = new HashSet<>();
+    private final List<File> checked = new ArrayList<>();
+    private final List<File> written = new ArrayList<>();
+    private final List<File> marked = new ArrayList<>();
+
+    @Override
+    public boolean isIncremental() {
+      return true;
+    }
+
+    @Override
+    public boolean hasDelta(File file) {
+      checked.add(file);
+      return delta.contains(file);
+    }
+
+    @Override
+    public OutputStream newFileOutputStream(File file) throws IOException {
+      written.add(file);
+      return super.newFileOutputStream(file);
+    }
+
+    @Override
+    public void addMessage(File file, int line, int column, String message, int severity,
+        Throwable cause) {
+      marked.add(file);
+    }
+
+    @Override
+    public void removeMessages(File file) {
+      // Nothing to remove
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import com.squareup.javapoet.JavaFile;
+
+/**
+ * Compiles generated sources in memory against the test classpath and loads the result, so tests
+ * and benchmarks can exercise generated code directly.
+ */
+public final class InMemoryCompiler {
+  private InMemoryCompiler() {}
+
+  /**
+   * Compiles the given files and returns a class loader that defines the resulting classes.
+   *
+   * @throws IllegalArgumentException if the sources do not compile
+   */
+  public static ClassLoader compile(JavaFile... javaFiles) {
+    return compile(Collections.emptyMap(), javaFiles);
+  }
+
+  /**
+   * Compiles the given files and returns a class loader that defines the resulting classes and
+   * serves the given resources, by path relative to the classpath root.
+   *
+   * @throws IllegalArgumentException if the sources do not compile
+   */
+  public static ClassLoader compile(Map<String, byte[]> resources, JavaFile... javaFiles) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null)
+      throw new IllegalStateException("No system Java compiler is available");
+
+    List<JavaFileObject> sources = new ArrayList<>();
+    for (JavaFile javaFile : javaFiles)
+      sources.add(javaFile.toJavaFileObject());
+
+    Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    JavaFileManager fileManager =
+        new ForwardingJavaFileManager<JavaFileManager>(
+            compiler.getStandardFileManager(diagnostics, null, null)) {
+          @Override
+          public JavaFileObject getJavaFileForOutput(Location location, String className,
+              JavaFileObject.Kind kind, FileObject sibling) {
+            if (location != StandardLocation.CLASS_OUTPUT)
+              throw new IllegalArgumentException(location.getName());
+            return new SimpleJavaFileObject(
+                URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+              @Override
+              public OutputStream openOutputStream() {
+                ByteArrayOutputStream result = new ByteArrayOutputStream();
+                classes.put(className, result);
+                return result;
+              }
+            };
+          }
+        };
+
+    List<String> options = Arrays.asList("-proc:none", "-nowarn", "-classpath",
+        System.getProperty("java.class.path"));
+    if (!compiler.getTask(null, fileManager, diagnostics, options, null, sources).call()) {
+      StringBuilder message = new StringBuilder("Generated sources do not compile:");
+      for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+        if (diagnostic.getKind() == Diagnostic.Kind.ERROR)
+          message.append("\n  ").append(diagnostic);
+      }
+      throw new IllegalArgumentException(message.toString());
+    }
+
+    return new ClassLoader(InMemoryCompiler.class.getClassLoader()) {
+      @Override
+      protected Class<?> findClass(String name) throws ClassNotFoundException {
+        ByteArrayOutputStream bytes = classes.get(name);
+        if (bytes == null)
+          throw new ClassNotFoundException(name);
+        byte[] b = bytes.toByteArray();
+        return defineClass(name, b, 0, b.length);
+      }
+
+      @Override
+      public InputStream getResourceAsStream(String name) {
+        byte[] resource = resources.get(name);
+        if (resource != null)
+          return new ByteArrayInputStream(resource);
+        return super.getResourceAsStream(name);
+      }
+    };
+  }
+}
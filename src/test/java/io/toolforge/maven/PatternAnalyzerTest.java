@@ -0,0 +1,110 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import io.toolforge.spi.model.ParameterType;
+import io.toolforge.spi.model.PatternStringDomain;
+import io.toolforge.spi.model.StringDomainType;
+import io.toolforge.spi.model.StringParameterDefinition;
+import io.toolforge.spi.model.ToolManifest;
+
+public class PatternAnalyzerTest {
+  /**
+   * Patterns that the analyzer should accept
+   */
+  private static final String[] SIMPLE = {"^hel*o$", "^[A-Z]{1,5}$", "\\d{4}-\\d{2}-\\d{2}",
+      "^[a-zA-Z_][a-zA-Z0-9_]*$", "^v\\d+\\.\\d+\\.\\d+$", "^[0-9a-f]{32}$",
+      "^s3://[a-z0-9.-]+/.*$", "^[^/]+$", "^x?y*$", "^\\w+\\s\\S{0,2}$", "^[-a]{2,}b$", "^$",
+      "^a.b$", "^a\\$$", "^[^a]$", "^.{2}$", "^[^,]{1,3}$", "^\\D\\W\\S?$"};
+
+  /**
+   * Patterns that the analyzer should reject, either because they use unsupported syntax or
+   * because a greedy scan would need to backtrack
+   */
+  private static final String[] COMPLEX = {"^(foo|bar)$", "^a|b$", "^a*a$", "^\\d{1,3}\\d$",
+      "^a*b?a$", "^a*?$", "^a++$", "^\\p{L}+$", "^[a-z&&[^e]]$", "^\u00e9$", "^\\bx$",
+      "^.*\\.csv$"};
+
+  @Test
+  public void analyzeTest() {
+    for (String pattern : SIMPLE)
+      assertThat(pattern, PatternAnalyzer.analyze(pattern).isPresent(), is(true));
+    for (String pattern : COMPLEX)
+      assertThat(pattern, PatternAnalyzer.analyze(pattern).isPresent(), is(false));
+  }
+
+  /**
+   * The generated matchers should agree with {@link Pattern} on random strings over an alphabet
+   * that exercises every character class in the corpus, including surrogate pairs, which
+   * {@link Pattern} matches as one character
+   */
+  @Test
+  public void generatedMatchersTest() throws Exception {
+    ToolManifest manifest = new ToolManifest();
+    for (int i = 0; i < SIMPLE.length; i++)
+      manifest.addParametersItem(new StringParameterDefinition()
+          .domain(new PatternStringDomain().pattern(SIMPLE[i]).type(StringDomainType.PATTERN))
+          .type(ParameterType.STRING).name("pattern" + i).description("Pattern " + i + ".")
+          .required(true));
+    manifest.addParametersItem(new StringParameterDefinition()
+        .domain(new PatternStringDomain().pattern(COMPLEX[0]).type(StringDomainType.PATTERN))
+        .type(ParameterType.STRING).name("complexPattern").description("Complex pattern.")
+        .required(true));
+    Class<?> configurationClass =
+        CodeGeneratorTest.compile(manifest, new GeneratorOptions().matchers(true));
+    assertThat(configurationClass.getDeclaredClasses().length, is(1));
+    assertThat(configurationClass.getDeclaredClasses()[0].getSimpleName(),
+        is("ComplexPatternPatternHolder"));
+
+    Random random = new Random(0L);
+    String[] alphabet = {"a", "A", "b", "h", "e", "l", "o", "v", "x", "y", "z", "Z", "0", "5",
+        "9", "-", "_", ".", "/", ":", "$", ",", " ", "\t", "\n", "\r", "\u0085", "\u00e9",
+        "\u2028", "\ud83d\ude00", "\ud83d\ude00", "\ud83d", "\ude00"};
+    for (int i = 0; i < SIMPLE.length; i++) {
+      Pattern pattern = Pattern.compile(SIMPLE[i]);
+      Method matches = configurationClass.getDeclaredMethod("matchesPattern" + i, String.class);
+      matches.setAccessible(true);
+
+      List<String> values = new ArrayList<>();
+      for (int n = 0; n < 2000; n++) {
+        StringBuilder value = new StringBuilder();
+        for (int length = random.nextInt(12); length > 0; length--)
+          value.append(alphabet[random.nextInt(alphabet.length)]);
+        values.add(value.toString());
+      }
+      values.add(SIMPLE[i].equals("^[0-9a-f]{32}$") ? "0123456789abcdef0123456789abcdef"
+          : "s3://bucket.name/key");
+      values.add("2022-01-31");
+      values.add("v1.22.333");
+
+      for (String value : values)
+        assertThat(SIMPLE[i] + " on " + value, matches.invoke(null, value),
+            is(pattern.matcher(value).matches()));
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.junit.Before;
+import org.junit.Test;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import io.toolforge.spi.model.ToolManifest;
+import io.toolforge.toolforge4j.io.InputSource;
+import io.toolforge.toolforge4j.io.OutputSink;
+
+public class WorkerGeneratorTest {
+  private static final ClassName CLASS_NAME = ClassName.get("com.example", "Configuration");
+
+  private Object worker;
+
+  private List<String> locations;
+
+  /**
+   * Compiles the example configuration and its worker, with a handler that answers with the bound
+   * int parameter and slot functions that record the locations they open
+   */
+  @Before
+  public void setupWorker() throws Exception {
+    ToolManifest manifest = CodeGeneratorTest.exampleManifest();
+    WorkerGenerator workerGenerator = new WorkerGenerator(CLASS_NAME);
+    ClassLoader classLoader = InMemoryCompiler.compile(
+        JavaFile.builder(CLASS_NAME.packageName(),
+            new CodeGenerator(CLASS_NAME, new GeneratorOptions().worker(true))
+                .generateConfiguration(manifest))
+            .build(),
+        JavaFile.builder(CLASS_NAME.packageName(), workerGenerator.generateWorker()).build());
+    Class<?> configurationClass = classLoader.loadClass(CLASS_NAME.reflectionName());
+    Class<?> workerClass = classLoader.loadClass(workerGenerator.getWorkerName().reflectionName());
+    Class<?> handlerClass = classLoader.loadClass(
+        workerGenerator.getWorkerName().nestedClass("Handler").reflectionName());
+
+    Object handler = Proxy.newProxyInstance(classLoader, new Class<?>[] {handlerClass},
+        (proxy, method, args) -> Collections.singletonMap("exampleInt",
+            configurationClass.getField("exampleInt").get(args[0])));
+
+    locations = new ArrayList<>();
+    Function<String, InputSource> inputs = location -> {
+      locations.add(location);
+      return slot(InputSource.class);
+    };
+    Function<String, OutputSink> outputs = location -> {
+      locations.add(location);
+      return slot(OutputSink.class);
+    };
+
+    worker = workerClass
+        .getConstructor(handlerClass, Map.class, Function.class, Function.class)
+        .newInstance(handler, Collections.singletonMap("EXAMPLE_VARIABLE_1", "hi"), inputs,
+            outputs);
+  }
+
+  /**
+   * @return a slot value that is never opened
+   */
+  private static <T> T slot(Class<T> type) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        (proxy, method, args) -> {
+          throw new UnsupportedOperationException(method.getName());
+        }));
+  }
+
+  @Test
+  public void streamTest() throws Exception {
+    String requests = String.join("\n",
+        "{\"id\":1,\"parameters\":{\"exampleInt\":42},\"inputs\":{\"input\":\"in.csv\"},"
+            + "\"outputs\":{\"output.csv\":\"out.csv\",\"output.xlsx\":\"out.xlsx\"}}",
+        "",
+        "{\"id\":\"two\",\"args\":[\"--exampleInt\",\"101\",\"--input\",\"in.csv\","
+            + "\"--output.csv\",\"out.csv\",\"--output.xlsx\",\"out.xlsx\"]}",
+        "{\"id\":3,\"parameters\":{\"exampleInt\":1}}", "not json");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    worker.getClass().getMethod("serve", InputStream.class, OutputStream.class).invoke(worker,
+        new ByteArrayInputStream(requests.getBytes(StandardCharsets.UTF_8)), out);
+
+    String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    assertThat(lines.length, is(4));
+
+    JsonNode ok = AbstractConfigurationMojo.JSON.readTree(lines[0]);
+    assertThat(ok.path("id").asInt(), is(1));
+    assertThat(ok.path("ok").asBoolean(), is(true));
+    assertThat(ok.path("result").path("exampleInt").asLong(), is(42L));
+
+    JsonNode invalid = AbstractConfigurationMojo.JSON.readTree(lines[1]);
+    assertThat(invalid.path("id").asText(), is("two"));
+    assertThat(invalid.path("ok").asBoolean(), is(false));
+    assertThat(invalid.path("error").asText(), is(IllegalArgumentException.class.getName()));
+    assertThat(invalid.path("message").asText(),
+        is("exampleInt must be less than or equal to 100"));
+
+    JsonNode missing = AbstractConfigurationMojo.JSON.readTree(lines[2]);
+    assertThat(missing.path("message").asText(), is("Missing required option --input"));
+
+    JsonNode malformed = AbstractConfigurationMojo.JSON.readTree(lines[3]);
+    assertThat(malformed.has("id"), is(false));
+    assertThat(malformed.path("ok").asBoolean(), is(false));
+
+    assertThat(locations.subList(0, 3), is(Arrays.asList("in.csv", "out.csv", "out.xlsx")));
+  }
+
+  @Test
+  public void socketTest() throws Exception {
+    Thread serving;
+    try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      serving = new Thread(() -> {
+        try {
+          worker.getClass().getMethod("serve", ServerSocket.class).invoke(worker, server);
+        } catch (ReflectiveOperationException e) {
+          throw new AssertionError(e);
+        }
+      });
+      serving.start();
+
+      for (int connection = 0; connection < 2; connection++) {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort())) {
+          Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+          BufferedReader reader = new BufferedReader(
+              new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+          for (int request = 0; request < 2; request++) {
+            writer.write("{\"id\":" + request + ",\"parameters\":{\"exampleInt\":" + connection
+                + "},\"inputs\":{\"input\":\"in.csv\"},\"outputs\":{\"output.csv\":\"out.csv\","
+                + "\"output.xlsx\":\"out.xlsx\"}}\n");
+            writer.flush();
+            JsonNode response = AbstractConfigurationMojo.JSON.readTree(reader.readLine());
+            assertThat(response.path("id").asInt(), is(request));
+            assertThat(response.path("result").path("exampleInt").asInt(), is(connection));
+          }
+        }
+      }
+    }
+
+    // Closing the server socket ends the serve loop
+    serving.join(10000L);
+    assertThat(serving.isAlive(), is(false));
+  }
+}
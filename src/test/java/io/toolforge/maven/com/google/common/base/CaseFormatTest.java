@@ -0,0 +1,49 @@
+/*-
+ * =================================LICENSE_START==================================
+ * toolforge-maven-plugin
+ * ====================================SECTION=====================================
+ * Copyright (C) 2022 ToolForge
+ * ====================================SECTION=====================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==================================LICENSE_END===================================
+ */
+package io.toolforge.maven.com.google.common.base;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.Test;
+
+public class CaseFormatTest {
+  private static final String[] NAMES = {"", "a", "A", "_", "-", "foo", "fooBar", "FooBar",
+      "fooBarBaz", "foo_bar", "FOO_BAR", "foo-bar", "_foo", "foo_", "__foo__", "-foo-", "x1Y2z3",
+      "exampleVariable1", "EXAMPLE_SECRET_1", "csv", "xlsx", "HTTPServer", "aB", "ab_cD-eF"};
+
+  /**
+   * The single-pass conversion should agree with the upstream Guava implementation it adapts
+   */
+  @Test
+  public void guavaEquivalenceTest() {
+    for (CaseFormat from : CaseFormat.values()) {
+      com.google.common.base.CaseFormat guavaFrom =
+          com.google.common.base.CaseFormat.valueOf(from.name());
+      for (CaseFormat to : CaseFormat.values()) {
+        com.google.common.base.CaseFormat guavaTo =
+            com.google.common.base.CaseFormat.valueOf(to.name());
+        for (String name : NAMES) {
+          assertThat(from + " to " + to + " of " + name, from.to(to, name),
+              is(guavaFrom.to(guavaTo, name)));
+        }
+      }
+    }
+  }
+}
@@ -30,6 +30,10 @@ public final class Configuration {
 
   private static final Pattern EXAMPLE_PATTERN_STRING_PATTERN = Pattern.compile("^hel*o$");
 
+  private static final LocalDate EXAMPLE_DATE_MINIMUM = TODAY.plusWeeks(-1);
+
+  private static final LocalDate EXAMPLE_DATE_MAXIMUM = TODAY.plusWeeks(1);
+
   @EnvironmentParameter(
       variableName = "EXAMPLE_VARIABLE_1",
       required = true,
@@ -121,18 +125,18 @@ public final class Configuration {
     if(exampleFloat > 100.0) {
       throw new IllegalArgumentException("exampleFloat must be less than or equal to 100.000000");
     }
+    if(exampleDate.isBefore(EXAMPLE_DATE_MINIMUM)) {
+      throw new IllegalArgumentException("exampleDate must be greater than or equal to " + EXAMPLE_DATE_MINIMUM);
+    }
+    if(exampleDate.isAfter(EXAMPLE_DATE_MAXIMUM)) {
+      throw new IllegalArgumentException("exampleDate must be less than or equal to " + EXAMPLE_DATE_MAXIMUM);
+    }
     if(!EXAMPLE_ENUM_STRING_ENUMERATION.contains(exampleEnumString)) {
       throw new IllegalArgumentException("exampleEnumString must be one of: alpha, bravo");
     }
     if(!EXAMPLE_PATTERN_STRING_PATTERN.matcher(examplePatternString).matches()) {
       throw new IllegalArgumentException("examplePatternString must match the pattern `^hel*o$'");
     }
-    if(exampleDate.isBefore(TODAY.plusWeeks(-1))) {
-      throw new IllegalArgumentException("exampleDate must be greater than or equal to " + TODAY.plusWeeks(-1));
-    }
-    if(exampleDate.isAfter(TODAY.plusWeeks(1))) {
-      throw new IllegalArgumentException("exampleDate must be less than or equal to " + TODAY.plusWeeks(1));
-    }
     return this;
   }
 }